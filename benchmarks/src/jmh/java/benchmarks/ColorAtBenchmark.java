@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import raytracer.Camera;
+import raytracer.Ray;
+import raytracer.World;
+
+// Benchmarks of World.colorAt() for primary rays of the project scenes.
+// Each invocation traces the rays of a coarse grid of pixels covering the scene's view.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ColorAtBenchmark {
+
+  private static final int GRID_WIDTH = 16;
+  private static final int GRID_HEIGHT = 16;
+  private static final int RAY_COUNT = GRID_WIDTH * GRID_HEIGHT;
+
+  @Param({"REFLECT", "REFRACT", "CUBES", "HEXAGON", "TEAPOT", "CSG", "COVER"})
+  public Scene scene;
+
+  private World world;
+  private Ray[] rays;
+
+  @Setup
+  public void setup() {
+    world = scene.createWorld();
+    Camera camera = scene.createCamera(GRID_WIDTH);
+    rays = new Ray[RAY_COUNT];
+    for (int i = 0; i < RAY_COUNT; ++i) {
+      // Spread over the whole view, whatever the camera's aspect ratio.
+      int x = i % GRID_WIDTH;
+      int y = (i / GRID_WIDTH) * camera.vPixels() / GRID_HEIGHT;
+      rays[i] = camera.rayForPixel(x, y);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RAY_COUNT)
+  public void colorAt(Blackhole blackhole) {
+    for (Ray ray : rays) {
+      blackhole.consume(world.colorAt(ray));
+    }
+  }
+}
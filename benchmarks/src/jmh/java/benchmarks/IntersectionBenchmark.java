@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import raytracer.Cone;
+import raytracer.Cube;
+import raytracer.Cylinder;
+import raytracer.HitRecord;
+import raytracer.Matrix;
+import raytracer.ObjFile;
+import raytracer.Ray;
+import raytracer.Shape;
+import raytracer.Sphere;
+import raytracer.Triangle;
+import raytracer.Tuple;
+
+// Benchmarks of intersecting rays with each kind of shape.
+// Each invocation fires a fixed fan of rays at the shape, of which some hit and some miss.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class IntersectionBenchmark {
+
+  // Rays per side of the square fan of rays.
+  private static final int FAN_SIZE = 8;
+  private static final int RAY_COUNT = FAN_SIZE * FAN_SIZE;
+
+  public enum ShapeKind {
+    SPHERE(Sphere::create),
+    CUBE(Cube::create),
+    CYLINDER(Cylinder::create),
+    CONE(Cone::create),
+    TRIANGLE(
+        () -> Triangle.create(Tuple.point(0, 1, 0), Tuple.point(-1, -1, 0), Tuple.point(1, -1, 0))),
+    CSG(
+        () -> {
+          Shape sphere = Sphere.create();
+          sphere.setTransform(Matrix.scaling(1.3));
+          return raytracer.CSG.createDifference(Cube.create(), sphere);
+        }),
+    TEAPOT_MESH(
+        () -> {
+          try {
+            Shape teapot = ObjFile.parseResource("/teapot-low.obj").asShape();
+            teapot.setTransform(Matrix.scaling(0.1).rotateX(-Math.PI / 2).translate(0, -0.5, 0));
+            return teapot;
+          } catch (IOException | ObjFile.ParsingException e) {
+            throw new RuntimeException("Error loading teapot file", e);
+          }
+        });
+
+    private final Supplier<Shape> factory;
+
+    ShapeKind(Supplier<Shape> factory) {
+      this.factory = factory;
+    }
+  }
+
+  @Param public ShapeKind shapeKind;
+
+  private Shape shape;
+  private Ray[] rays;
+
+  @Setup
+  public void setup() {
+    shape = shapeKind.factory.get();
+    // Rays from a point in front of the shape, spread over a square a bit larger than it.
+    rays = new Ray[RAY_COUNT];
+    Tuple origin = Tuple.point(0.1, 0.2, -5);
+    for (int y = 0; y < FAN_SIZE; ++y) {
+      for (int x = 0; x < FAN_SIZE; ++x) {
+        Tuple target = Tuple.point(-1.5 + 3.0 * x / FAN_SIZE, -1.5 + 3.0 * y / FAN_SIZE, 0);
+        rays[y * FAN_SIZE + x] = Ray.create(origin, target.minus(origin).normalize());
+      }
+    }
+  }
+
+  // All intersections, sorted.
+  @Benchmark
+  @OperationsPerInvocation(RAY_COUNT)
+  public void intersect(Blackhole blackhole) {
+    for (Ray ray : rays) {
+      blackhole.consume(shape.intersect(ray));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RAY_COUNT)
+  public void intersectClosest(Blackhole blackhole) {
+    HitRecord record = new HitRecord();
+    for (Ray ray : rays) {
+      record.reset(Double.POSITIVE_INFINITY);
+      blackhole.consume(shape.intersectClosest(ray, record));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RAY_COUNT)
+  public void hitsShadowCaster(Blackhole blackhole) {
+    for (Ray ray : rays) {
+      blackhole.consume(shape.hitsShadowCaster(ray, Double.POSITIVE_INFINITY, false));
+    }
+  }
+}
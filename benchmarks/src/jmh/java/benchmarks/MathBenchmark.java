@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import raytracer.Color;
+import raytracer.Matrix;
+import raytracer.Matrix4;
+import raytracer.Tuple;
+
+// Benchmarks of the math primitives used on every ray.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MathBenchmark {
+
+  // Non-final so that the JIT can't fold computations on them into constants.
+  private Tuple point = Tuple.point(1, -2, 3);
+  private Tuple vector = Tuple.vector(0.5, 0.25, -1);
+  private Tuple otherVector = Tuple.vector(-2, 1, 0.5);
+  private Matrix transform = Matrix.rotationX(0.3).scale(2, 3, 4).translate(1, 2, 3);
+  private Matrix otherTransform = Matrix.rotationY(-0.7).shear(0.1, 0, 0, 0.2, 0, 0);
+  private Matrix4 transform4 = Matrix4.from(transform);
+  private Color color = Color.create(0.9, 0.5, 0.1);
+  private Color otherColor = Color.create(0.2, 0.8, 1.0);
+
+  @Benchmark
+  public Tuple tuplePlus() {
+    return point.plus(vector);
+  }
+
+  @Benchmark
+  public double tupleDot() {
+    return vector.dot(otherVector);
+  }
+
+  @Benchmark
+  public Tuple tupleCross() {
+    return vector.cross(otherVector);
+  }
+
+  @Benchmark
+  public Tuple tupleNormalize() {
+    return vector.normalize();
+  }
+
+  @Benchmark
+  public Tuple tupleReflect() {
+    return vector.reflect(otherVector.normalize());
+  }
+
+  @Benchmark
+  public Tuple matrixTimesTuple() {
+    return transform.times(point);
+  }
+
+  @Benchmark
+  public Matrix matrixTimesMatrix() {
+    return transform.times(otherTransform);
+  }
+
+  @Benchmark
+  public Matrix matrixInvert() {
+    return transform.invert();
+  }
+
+  @Benchmark
+  public Tuple matrix4TimesTuple() {
+    return transform4.times(point);
+  }
+
+  @Benchmark
+  public Matrix4 matrix4TimesMatrix4() {
+    return transform4.times(transform4);
+  }
+
+  // Includes conversion, since Matrix4 caches its inverse.
+  @Benchmark
+  public Matrix4 matrix4Inverse() {
+    return Matrix4.from(transform).inverse();
+  }
+
+  @Benchmark
+  public Color colorPlus() {
+    return color.plus(otherColor);
+  }
+
+  @Benchmark
+  public Color colorTimesColor() {
+    return color.times(otherColor);
+  }
+
+  @Benchmark
+  public Color colorTimesScalar() {
+    return color.times(0.75);
+  }
+}
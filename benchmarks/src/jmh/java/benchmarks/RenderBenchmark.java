@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import raytracer.Camera;
+import raytracer.Canvas;
+import raytracer.RenderOptions;
+import raytracer.World;
+
+// End-to-end renders of the project scenes at a fixed small resolution.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+  // Width of the rendered images; heights follow each scene's aspect ratio.
+  private static final int WIDTH = 100;
+  // Width and height of the ray packets traced by renderPackets.
+  private static final int PACKET_SIZE = 8;
+  // Smallest weight of the reflected and refracted rays traced by renderPruned: half an 8-bit step.
+  private static final double MIN_CONTRIBUTION = 1.0 / 512;
+  // Times edge pixels are split into 2x2 subpixels by renderAntialiased.
+  private static final int ANTIALIASING_DEPTH = 2;
+
+  @Param public Scene scene;
+
+  private World world;
+  private Camera camera;
+  private RenderOptions singleThreaded;
+  private RenderOptions parallel;
+  private RenderOptions packets;
+  private RenderOptions pruned;
+  private RenderOptions antialiased;
+
+  @Setup
+  public void setup() {
+    world = scene.createWorld();
+    camera = scene.createCamera(WIDTH);
+    singleThreaded = RenderOptions.builder().setThreadCount(1).build();
+    parallel = RenderOptions.create();
+    packets = singleThreaded.toBuilder().setPacketSize(PACKET_SIZE).build();
+    pruned = singleThreaded.toBuilder().setMinContribution(MIN_CONTRIBUTION).build();
+    antialiased = singleThreaded.toBuilder().setAntialiasingDepth(ANTIALIASING_DEPTH).build();
+  }
+
+  @Benchmark
+  public Canvas renderSingleThreaded() {
+    return camera.render(world, singleThreaded);
+  }
+
+  @Benchmark
+  public Canvas renderParallel() {
+    return camera.render(world, parallel);
+  }
+
+  // As renderSingleThreaded, tracing camera and shadow rays in packets.
+  @Benchmark
+  public Canvas renderPackets() {
+    return camera.render(world, packets);
+  }
+
+  // As renderSingleThreaded, dropping reflected and refracted rays of little weight.
+  @Benchmark
+  public Canvas renderPruned() {
+    return camera.render(world, pruned);
+  }
+
+  // As renderSingleThreaded, supersampling the pixels on edges.
+  @Benchmark
+  public Canvas renderAntialiased() {
+    return camera.render(world, antialiased);
+  }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.function.Supplier;
+import projects.appendix1.CoverWorld;
+import projects.chapter11.ReflectScene;
+import projects.chapter11.RefractScene;
+import projects.chapter12.CubeScene;
+import projects.chapter13.ConeScene;
+import projects.chapter13.CylinderScene;
+import projects.chapter14.HexagonScene;
+import projects.chapter15.TeapotScene;
+import projects.chapter16.CsgScene;
+import projects.chapter7.SphereScene;
+import raytracer.Camera;
+import raytracer.World;
+
+// The project scenes used for benchmarking whole renders.
+public enum Scene {
+  SPHERES(SphereScene::createWorld, SphereScene::createCamera),
+  REFLECT(ReflectScene::createWorld, ReflectScene::createCamera),
+  REFRACT(RefractScene::createWorld, RefractScene::createCamera),
+  CUBES(CubeScene::createWorld, CubeScene::createCamera),
+  CYLINDERS(CylinderScene::createWorld, CylinderScene::createCamera),
+  CONES(ConeScene::createWorld, ConeScene::createCamera),
+  HEXAGON(HexagonScene::createWorld, HexagonScene::createCamera),
+  TEAPOT(TeapotScene::createWorld, TeapotScene::createCamera),
+  TEAPOT_DETAILED(TeapotScene::createDetailedWorld, TeapotScene::createCamera),
+  CSG(CsgScene::createWorld, CsgScene::createCamera),
+  COVER(CoverWorld::getWorld, CoverWorld::getCamera);
+
+  private final Supplier<World> world;
+  private final Supplier<Camera> camera;
+
+  Scene(Supplier<World> world, Supplier<Camera> camera) {
+    this.world = world;
+    this.camera = camera;
+  }
+
+  public World createWorld() {
+    return world.get();
+  }
+
+  // Returns the scene's camera, resized to the given width keeping its aspect ratio.
+  public Camera createCamera(int hPixels) {
+    Camera c = camera.get();
+    int vPixels = Math.max(1, hPixels * c.vPixels() / c.hPixels());
+    return Camera.create(hPixels, vPixels, c.fieldOfView(), c.transform());
+  }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import raytracer.Camera;
+import raytracer.Canvas;
+import raytracer.RenderOptions;
+import raytracer.TraversalOrder;
+import raytracer.World;
+
+// Renders of the detailed teapot mesh, from teapot.obj, with tiles and pixels visited in each
+// traversal order. The images are larger than those of RenderBenchmark so that a row of tiles
+// spans much of the mesh, and row-major order moves between distant parts of it.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class TraversalOrderBenchmark {
+
+  private static final int WIDTH = 400;
+  private static final int PACKET_SIZE = 8;
+
+  @Param({"TEAPOT_DETAILED"})
+  public Scene scene;
+
+  @Param public TraversalOrder order;
+
+  private World world;
+  private Camera camera;
+  private RenderOptions singleThreaded;
+  private RenderOptions parallel;
+  private RenderOptions packets;
+
+  @Setup
+  public void setup() {
+    world = scene.createWorld();
+    camera = scene.createCamera(WIDTH);
+    singleThreaded = RenderOptions.builder().setThreadCount(1).setTraversalOrder(order).build();
+    parallel = RenderOptions.builder().setTraversalOrder(order).build();
+    packets = singleThreaded.toBuilder().setPacketSize(PACKET_SIZE).build();
+  }
+
+  @Benchmark
+  public Canvas renderSingleThreaded() {
+    return camera.render(world, singleThreaded);
+  }
+
+  @Benchmark
+  public Canvas renderParallel() {
+    return camera.render(world, parallel);
+  }
+
+  // As renderSingleThreaded, tracing camera and shadow rays in packets.
+  @Benchmark
+  public Canvas renderPackets() {
+    return camera.render(world, packets);
+  }
+}
@@ -20,6 +20,14 @@ public class AppUtil {
     return saveCanvas(outFileBase, "png", fn -> canvas.writePngFile(fn));
   }
 
+  // Saves the given cost map as a false-color image, and its costs as text in a ".cost" file.
+  // See CostMap.toFalseColor() and CostMap.writeRawStream().
+  // Returns true on success, false on failure.
+  public static boolean saveCostMap(CostMap costMap, String outFileBase) {
+    return saveCanvasToPng(costMap.toFalseColor(), outFileBase)
+        && saveCanvas(outFileBase, "cost", fn -> costMap.writeRawFile(fn));
+  }
+
   @FunctionalInterface
   interface FileWriter {
     void write(File outFile) throws IOException;
@@ -0,0 +1,189 @@
+package raytracer;
+
+import java.util.function.IntToDoubleFunction;
+
+// An axis-aligned box, tested against rays with the slab method: a ray is inside the box over the
+// interval of t where it is between each of the three pairs of planes bounding the box.
+final class AxisAlignedBox {
+
+  // Flat boxes (e.g. around an axis-aligned triangle) are thickened to at least this size, so that
+  // rounding can't make rays through them miss.
+  private static final double MIN_SIZE = 1.0e-5;
+
+  private final double minX;
+  private final double minY;
+  private final double minZ;
+  private final double maxX;
+  private final double maxY;
+  private final double maxZ;
+
+  // Returns the box covering the given range, which must be non-empty and bounded.
+  static AxisAlignedBox create(Range3 range) {
+    return create(
+        range.min(0), range.min(1), range.min(2), range.max(0), range.max(1), range.max(2));
+  }
+
+  static AxisAlignedBox create(
+      double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    double padX = Math.max(0, MIN_SIZE - (maxX - minX)) / 2;
+    double padY = Math.max(0, MIN_SIZE - (maxY - minY)) / 2;
+    double padZ = Math.max(0, MIN_SIZE - (maxZ - minZ)) / 2;
+    return new AxisAlignedBox(
+        minX - padX, minY - padY, minZ - padZ, maxX + padX, maxY + padY, maxZ + padZ);
+  }
+
+  private AxisAlignedBox(
+      double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+    this.minX = minX;
+    this.minY = minY;
+    this.minZ = minZ;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.maxZ = maxZ;
+  }
+
+  // Returns true if the given ray is inside this box for some t with tMin <= t <= tMax.
+  // If so, stores the interval of such t in the ray's tEnter and tExit.
+  boolean intersect(SlabRay ray, double tMin, double tMax) {
+    double tEnter = tMin;
+    double tExit = tMax;
+    // Each slab is entered at the plane facing the ray. Along an axis the ray is parallel to, the
+    // inverse direction is infinite, making that slab's interval either everything or nothing
+    // (entered at t = +infinity, or left at t = -infinity). A ray starting exactly on such a plane
+    // gives NaN, which fails the comparisons and so leaves the interval unchanged.
+    double near =
+        ((ray.inverseDirectionX >= 0 ? minX : maxX) - ray.originX) * ray.inverseDirectionX;
+    double far = ((ray.inverseDirectionX >= 0 ? maxX : minX) - ray.originX) * ray.inverseDirectionX;
+    if (near > tEnter) {
+      tEnter = near;
+    }
+    if (far < tExit) {
+      tExit = far;
+    }
+    near = ((ray.inverseDirectionY >= 0 ? minY : maxY) - ray.originY) * ray.inverseDirectionY;
+    far = ((ray.inverseDirectionY >= 0 ? maxY : minY) - ray.originY) * ray.inverseDirectionY;
+    if (near > tEnter) {
+      tEnter = near;
+    }
+    if (far < tExit) {
+      tExit = far;
+    }
+    near = ((ray.inverseDirectionZ >= 0 ? minZ : maxZ) - ray.originZ) * ray.inverseDirectionZ;
+    far = ((ray.inverseDirectionZ >= 0 ? maxZ : minZ) - ray.originZ) * ray.inverseDirectionZ;
+    if (near > tEnter) {
+      tEnter = near;
+    }
+    if (far < tExit) {
+      tExit = far;
+    }
+    if (tEnter > tExit || tEnter == Double.POSITIVE_INFINITY) {
+      return false;
+    }
+    ray.tEnter = tEnter;
+    ray.tExit = tExit;
+    return true;
+  }
+
+  // Returns true if the given ray's line passes through this box.
+  boolean intersect(SlabRay ray) {
+    return intersect(ray, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+  }
+
+  // Sets hits[i] for each active ray i of packet that is inside this box for some t with
+  // 0 <= t <= tMax.applyAsDouble(i), clearing it for every other ray. Returns the smallest t at
+  // which such a ray enters the box, or NaN if there are none. Follows intersect(SlabRay).
+  double intersect(RayPacket packet, IntToDoubleFunction tMax, boolean[] hits) {
+    double closestEnter = Double.NaN;
+    for (int i = 0; i < packet.size(); ++i) {
+      hits[i] = false;
+      if (!packet.isActive(i)) {
+        continue;
+      }
+      double tEnter = 0;
+      double tExit = tMax.applyAsDouble(i);
+      double inverse = packet.inverseDirectionX[i];
+      double origin = packet.originX[i];
+      double near = ((inverse >= 0 ? minX : maxX) - origin) * inverse;
+      double far = ((inverse >= 0 ? maxX : minX) - origin) * inverse;
+      if (near > tEnter) {
+        tEnter = near;
+      }
+      if (far < tExit) {
+        tExit = far;
+      }
+      inverse = packet.inverseDirectionY[i];
+      origin = packet.originY[i];
+      near = ((inverse >= 0 ? minY : maxY) - origin) * inverse;
+      far = ((inverse >= 0 ? maxY : minY) - origin) * inverse;
+      if (near > tEnter) {
+        tEnter = near;
+      }
+      if (far < tExit) {
+        tExit = far;
+      }
+      inverse = packet.inverseDirectionZ[i];
+      origin = packet.originZ[i];
+      near = ((inverse >= 0 ? minZ : maxZ) - origin) * inverse;
+      far = ((inverse >= 0 ? maxZ : minZ) - origin) * inverse;
+      if (near > tEnter) {
+        tEnter = near;
+      }
+      if (far < tExit) {
+        tExit = far;
+      }
+      if (tEnter > tExit || tEnter == Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      hits[i] = true;
+      if (!(tEnter >= closestEnter)) {
+        closestEnter = tEnter;
+      }
+    }
+    return closestEnter;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "AxisAlignedBox(%s, %s, %s)-(%s, %s, %s)", minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  // A ray prepared for slab tests against any number of boxes: its origin and the inverse of its
+  // direction, so that each test only subtracts and multiplies.
+  // Also receives the interval of t found by the last successful test.
+  static final class SlabRay {
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+    private final double inverseDirectionX;
+    private final double inverseDirectionY;
+    private final double inverseDirectionZ;
+
+    // The interval over which the ray is inside the box of the last successful intersect().
+    private double tEnter;
+    private double tExit;
+
+    static SlabRay create(Ray ray) {
+      return new SlabRay(ray);
+    }
+
+    private SlabRay(Ray ray) {
+      Tuple origin = ray.origin();
+      Tuple direction = ray.direction();
+      originX = origin.x();
+      originY = origin.y();
+      originZ = origin.z();
+      inverseDirectionX = 1 / direction.x();
+      inverseDirectionY = 1 / direction.y();
+      inverseDirectionZ = 1 / direction.z();
+    }
+
+    double tEnter() {
+      return tEnter;
+    }
+
+    double tExit() {
+      return tExit;
+    }
+  }
+}
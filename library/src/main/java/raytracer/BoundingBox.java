@@ -9,6 +9,10 @@ public interface BoundingBox {
   // Used for optimizing expensive intersection tests.
   boolean maybeHits(Ray ray);
 
+  // Might the given ray hit this bounding box with tMin <= t <= tMax.
+  // Used for skipping geometry beyond a hit already found.
+  boolean maybeHits(Ray ray, double tMin, double tMax);
+
   // Range covered by this bounding box.
   // Used to combine bounding boxes.
   Range3 getRange();
@@ -0,0 +1,432 @@
+package raytracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ObjIntConsumer;
+import raytracer.AxisAlignedBox.SlabRay;
+
+// A bounding volume hierarchy (BVH) over a fixed set of items, each described by its bounding
+// range. Items are referred to by their index in the list of ranges used to build the hierarchy.
+//
+// The tree is built top-down. Each node's items are split in two along the axis and position
+// chosen by the surface area heuristic (SAH), which estimates the cost of a split as the number of
+// items on each side weighted by the chance that a ray hitting the parent also hits that side.
+// Items with unbounded ranges (e.g. planes) can't be placed in the tree and are always candidates.
+class BoundingVolumeHierarchy {
+
+  // Number of candidate split positions evaluated per axis.
+  private static final int BIN_COUNT = 16;
+  // Nodes with at most this many items are never split.
+  private static final int MAX_LEAF_SIZE = 2;
+  // Cost of testing a bounding box, relative to the cost of intersecting one item.
+  private static final double TRAVERSAL_COST = 0.5;
+
+  // Bounds of each item, in order minX, minY, minZ, maxX, maxY, maxZ.
+  private final double[] bounds;
+  private final int[] unboundedItems;
+  // Null if there are no bounded items.
+  private final Node root;
+  // Number of levels of nodes, 0 if there is no root.
+  private final int depth;
+
+  public static BoundingVolumeHierarchy build(List<Range3> itemRanges) {
+    return new BoundingVolumeHierarchy(itemRanges);
+  }
+
+  // Builds a hierarchy over items with the given bounds, in order minX, minY, minZ, maxX, maxY,
+  // maxZ for each item. All items must be bounded. Takes ownership of itemBounds.
+  public static BoundingVolumeHierarchy build(double[] itemBounds) {
+    return new BoundingVolumeHierarchy(itemBounds);
+  }
+
+  private BoundingVolumeHierarchy(double[] itemBounds) {
+    bounds = itemBounds;
+    unboundedItems = new int[0];
+    int[] items = new int[itemBounds.length / 6];
+    for (int i = 0; i < items.length; ++i) {
+      items[i] = i;
+    }
+    root = items.length == 0 ? null : buildNode(items, 0, items.length);
+    depth = root == null ? 0 : root.depth();
+  }
+
+  private BoundingVolumeHierarchy(List<Range3> itemRanges) {
+    int itemCount = itemRanges.size();
+    bounds = new double[6 * itemCount];
+    List<Integer> bounded = new ArrayList<>();
+    List<Integer> unbounded = new ArrayList<>();
+    for (int i = 0; i < itemCount; ++i) {
+      Range3 range = itemRanges.get(i);
+      if (range.isEmpty()) {
+        // Nothing to hit.
+        continue;
+      }
+      if (range.isUnbounded()) {
+        unbounded.add(i);
+        continue;
+      }
+      for (int axis = 0; axis < 3; ++axis) {
+        bounds[6 * i + axis] = range.min(axis);
+        bounds[6 * i + 3 + axis] = range.max(axis);
+      }
+      bounded.add(i);
+    }
+    unboundedItems = unbounded.stream().mapToInt(i -> i).toArray();
+    int[] items = bounded.stream().mapToInt(i -> i).toArray();
+    root = items.length == 0 ? null : buildNode(items, 0, items.length);
+    depth = root == null ? 0 : root.depth();
+  }
+
+  // Calls visitor with the index of each item whose bounding box the given ray might hit, at any
+  // t along the ray.
+  public void forEachCandidate(Ray ray, IntConsumer visitor) {
+    for (int item : unboundedItems) {
+      visitor.accept(item);
+    }
+    if (root != null) {
+      visit(root, SlabRay.create(ray), visitor);
+    }
+  }
+
+  // Calls visitor with the index of each item whose bounding box the given ray might hit with
+  // 0 <= t <= tMax. tMax is read again before each subtree is visited, so that a visitor finding
+  // a hit can lower it to skip everything beyond. Nearer subtrees are visited first.
+  public void forEachCandidate(Ray ray, DoubleSupplier tMax, IntConsumer visitor) {
+    for (int item : unboundedItems) {
+      visitor.accept(item);
+    }
+    SlabRay slabRay = SlabRay.create(ray);
+    if (root != null && root.box.intersect(slabRay, 0, tMax.getAsDouble())) {
+      visitNearestFirst(root, slabRay, tMax, visitor);
+    }
+  }
+
+  // Calls visitor with the index of each item whose bounding box any active ray i of packet might
+  // hit with 0 <= t <= tMax.applyAsDouble(i), along with the form of packet in which only those
+  // rays are active. Limits are read again before each subtree is visited, as for single rays,
+  // and subtrees nearer to the packet are visited first.
+  public void forEachCandidate(
+      RayPacket packet, IntToDoubleFunction tMax, ObjIntConsumer<RayPacket> visitor) {
+    for (int item : unboundedItems) {
+      visitor.accept(packet, item);
+    }
+    if (root == null) {
+      return;
+    }
+    // Each level of the tree uses its own pair of masks of the rays hitting a node's children.
+    boolean[][] masks = new boolean[2 * depth + 1][packet.size()];
+    boolean[] rootMask = masks[2 * depth];
+    if (!Double.isNaN(root.box.intersect(packet, tMax, rootMask))) {
+      visitNearestFirst(root, packet.withActive(rootMask), tMax, visitor, masks, 0);
+    }
+  }
+
+  // Visits the items under node, whose box the active rays of packet are known to hit.
+  private static void visitNearestFirst(
+      Node node,
+      RayPacket packet,
+      IntToDoubleFunction tMax,
+      ObjIntConsumer<RayPacket> visitor,
+      boolean[][] masks,
+      int level) {
+    if (node.isLeaf()) {
+      for (int item : node.items) {
+        visitor.accept(packet, item);
+      }
+      return;
+    }
+    boolean[] leftMask = masks[2 * level];
+    boolean[] rightMask = masks[2 * level + 1];
+    double leftEnter = node.left.box.intersect(packet, tMax, leftMask);
+    double rightEnter = node.right.box.intersect(packet, tMax, rightMask);
+    boolean leftFirst = Double.isNaN(rightEnter) || leftEnter <= rightEnter;
+    Node near = leftFirst ? node.left : node.right;
+    Node far = leftFirst ? node.right : node.left;
+    boolean[] nearMask = leftFirst ? leftMask : rightMask;
+    boolean[] farMask = leftFirst ? rightMask : leftMask;
+    if (!Double.isNaN(leftFirst ? leftEnter : rightEnter)) {
+      visitNearestFirst(near, packet.withActive(nearMask), tMax, visitor, masks, level + 1);
+    }
+    if (Double.isNaN(leftFirst ? rightEnter : leftEnter)) {
+      return;
+    }
+    // Test the farther child again, as hits found in the nearer one may now exclude it.
+    if (!Double.isNaN(far.box.intersect(packet, tMax, farMask))) {
+      visitNearestFirst(far, packet.withActive(farMask), tMax, visitor, masks, level + 1);
+    }
+  }
+
+  // Returns true if predicate holds for any item whose bounding box the given ray might hit, at
+  // any t along the ray. Stops visiting items as soon as one is found.
+  public boolean anyCandidate(Ray ray, IntPredicate predicate) {
+    return anyCandidate(ray, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, predicate);
+  }
+
+  // Returns true if predicate holds for any item whose bounding box the given ray might hit with
+  // 0 <= t <= tMax. Stops visiting items as soon as one is found.
+  public boolean anyCandidate(Ray ray, double tMax, IntPredicate predicate) {
+    return anyCandidate(ray, 0, tMax, predicate);
+  }
+
+  private boolean anyCandidate(Ray ray, double tMin, double tMax, IntPredicate predicate) {
+    for (int item : unboundedItems) {
+      if (predicate.test(item)) {
+        return true;
+      }
+    }
+    return root != null && any(root, SlabRay.create(ray), tMin, tMax, predicate);
+  }
+
+  private static boolean any(
+      Node node, SlabRay ray, double tMin, double tMax, IntPredicate predicate) {
+    if (!node.box.intersect(ray, tMin, tMax)) {
+      return false;
+    }
+    if (node.isLeaf()) {
+      for (int item : node.items) {
+        if (predicate.test(item)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return any(node.left, ray, tMin, tMax, predicate)
+        || any(node.right, ray, tMin, tMax, predicate);
+  }
+
+  private static void visit(Node node, SlabRay ray, IntConsumer visitor) {
+    if (!node.box.intersect(ray)) {
+      return;
+    }
+    if (node.isLeaf()) {
+      for (int item : node.items) {
+        visitor.accept(item);
+      }
+    } else {
+      visit(node.left, ray, visitor);
+      visit(node.right, ray, visitor);
+    }
+  }
+
+  // Visits the items under node, whose box the ray is known to hit.
+  private static void visitNearestFirst(
+      Node node, SlabRay ray, DoubleSupplier tMax, IntConsumer visitor) {
+    if (node.isLeaf()) {
+      for (int item : node.items) {
+        visitor.accept(item);
+      }
+      return;
+    }
+    double limit = tMax.getAsDouble();
+    boolean hitsLeft = node.left.box.intersect(ray, 0, limit);
+    double leftEnter = ray.tEnter();
+    boolean hitsRight = node.right.box.intersect(ray, 0, limit);
+    double rightEnter = ray.tEnter();
+    if (hitsLeft && hitsRight) {
+      boolean leftFirst = leftEnter <= rightEnter;
+      visitNearestFirst(leftFirst ? node.left : node.right, ray, tMax, visitor);
+      // The farther child is skipped if a hit was found before it is entered.
+      if ((leftFirst ? rightEnter : leftEnter) <= tMax.getAsDouble()) {
+        visitNearestFirst(leftFirst ? node.right : node.left, ray, tMax, visitor);
+      }
+    } else if (hitsLeft) {
+      visitNearestFirst(node.left, ray, tMax, visitor);
+    } else if (hitsRight) {
+      visitNearestFirst(node.right, ray, tMax, visitor);
+    }
+  }
+
+  // VisibleForTesting
+  int nodeCount() {
+    return root == null ? 0 : root.nodeCount();
+  }
+
+  // VisibleForTesting
+  int depth() {
+    return root == null ? 0 : root.depth();
+  }
+
+  // Builds the subtree for items[start..end), reordering that part of items as needed.
+  private Node buildNode(int[] items, int start, int end) {
+    Range3 range = spanItems(items, start, end);
+    int count = end - start;
+    if (count <= MAX_LEAF_SIZE) {
+      return Node.createLeaf(range, items, start, end);
+    }
+
+    // Split positions are chosen among bins evenly dividing the range of item centroids.
+    double[] centroidMin = {
+      Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY
+    };
+    double[] centroidMax = {
+      Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+    for (int i = start; i < end; ++i) {
+      for (int axis = 0; axis < 3; ++axis) {
+        double centroid = centroid(items[i], axis);
+        centroidMin[axis] = Math.min(centroidMin[axis], centroid);
+        centroidMax[axis] = Math.max(centroidMax[axis], centroid);
+      }
+    }
+
+    double parentArea = range.surfaceArea();
+    double bestCost = Double.POSITIVE_INFINITY;
+    int bestAxis = -1;
+    int bestSplit = -1;
+    for (int axis = 0; axis < 3; ++axis) {
+      if (centroidMax[axis] <= centroidMin[axis]) {
+        // All centroids coincide along this axis.
+        continue;
+      }
+      Bin[] bins = new Bin[BIN_COUNT];
+      for (int b = 0; b < BIN_COUNT; ++b) {
+        bins[b] = new Bin();
+      }
+      for (int i = start; i < end; ++i) {
+        bins[binIndex(items[i], axis, centroidMin[axis], centroidMax[axis])].add(items[i]);
+      }
+      // Splitting after bin b puts bins [0..b] on the left and [b+1..] on the right.
+      double[] rightAreas = new double[BIN_COUNT];
+      int[] rightCounts = new int[BIN_COUNT];
+      Bin right = new Bin();
+      for (int b = BIN_COUNT - 1; b > 0; --b) {
+        right.add(bins[b]);
+        rightAreas[b - 1] = right.surfaceArea();
+        rightCounts[b - 1] = right.count;
+      }
+      Bin left = new Bin();
+      for (int b = 0; b < BIN_COUNT - 1; ++b) {
+        left.add(bins[b]);
+        if (left.count == 0 || rightCounts[b] == 0) {
+          continue;
+        }
+        double cost =
+            parentArea > 0
+                ? TRAVERSAL_COST
+                    + (left.surfaceArea() * left.count + rightAreas[b] * rightCounts[b])
+                        / parentArea
+                : TRAVERSAL_COST + Math.max(left.count, rightCounts[b]);
+        if (cost < bestCost) {
+          bestCost = cost;
+          bestAxis = axis;
+          bestSplit = b;
+        }
+      }
+    }
+
+    if (bestAxis < 0 || bestCost >= count) {
+      // No split is cheaper than intersecting every item.
+      return Node.createLeaf(range, items, start, end);
+    }
+
+    // Partition items so those left of the split come first.
+    int middle = start;
+    for (int i = start; i < end; ++i) {
+      int bin = binIndex(items[i], bestAxis, centroidMin[bestAxis], centroidMax[bestAxis]);
+      if (bin <= bestSplit) {
+        int swap = items[i];
+        items[i] = items[middle];
+        items[middle] = swap;
+        ++middle;
+      }
+    }
+    return Node.createInterior(
+        range, buildNode(items, start, middle), buildNode(items, middle, end));
+  }
+
+  private double centroid(int item, int axis) {
+    return (bounds[6 * item + axis] + bounds[6 * item + 3 + axis]) / 2;
+  }
+
+  private int binIndex(int item, int axis, double centroidMin, double centroidMax) {
+    double fraction = (centroid(item, axis) - centroidMin) / (centroidMax - centroidMin);
+    return Math.min(BIN_COUNT - 1, (int) (fraction * BIN_COUNT));
+  }
+
+  // Returns the range covering items[start..end).
+  private Range3 spanItems(int[] items, int start, int end) {
+    Bin bin = new Bin();
+    for (int i = start; i < end; ++i) {
+      bin.add(items[i]);
+    }
+    return Range3.create(bin.min[0], bin.max[0], bin.min[1], bin.max[1], bin.min[2], bin.max[2]);
+  }
+
+  // Accumulates the count and bounds of a set of items.
+  private class Bin {
+    int count = 0;
+    final double[] min = {
+      Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY
+    };
+    final double[] max = {
+      Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    void add(int item) {
+      ++count;
+      for (int axis = 0; axis < 3; ++axis) {
+        min[axis] = Math.min(min[axis], bounds[6 * item + axis]);
+        max[axis] = Math.max(max[axis], bounds[6 * item + 3 + axis]);
+      }
+    }
+
+    void add(Bin other) {
+      count += other.count;
+      for (int axis = 0; axis < 3; ++axis) {
+        min[axis] = Math.min(min[axis], other.min[axis]);
+        max[axis] = Math.max(max[axis], other.max[axis]);
+      }
+    }
+
+    double surfaceArea() {
+      if (count == 0) {
+        return 0;
+      }
+      double dx = max[0] - min[0];
+      double dy = max[1] - min[1];
+      double dz = max[2] - min[2];
+      return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+  }
+
+  // A node of the hierarchy. Leaves hold items, interior nodes hold two children.
+  private static class Node {
+    final AxisAlignedBox box;
+    final Node left;
+    final Node right;
+    final int[] items;
+
+    static Node createLeaf(Range3 range, int[] items, int start, int end) {
+      int[] leafItems = new int[end - start];
+      System.arraycopy(items, start, leafItems, 0, leafItems.length);
+      return new Node(range, null, null, leafItems);
+    }
+
+    static Node createInterior(Range3 range, Node left, Node right) {
+      return new Node(range, left, right, null);
+    }
+
+    private Node(Range3 range, Node left, Node right, int[] items) {
+      this.box = AxisAlignedBox.create(range);
+      this.left = left;
+      this.right = right;
+      this.items = items;
+    }
+
+    boolean isLeaf() {
+      return items != null;
+    }
+
+    int nodeCount() {
+      return isLeaf() ? 1 : 1 + left.nodeCount() + right.nodeCount();
+    }
+
+    int depth() {
+      return isLeaf() ? 1 : 1 + Math.max(left.depth(), right.depth());
+    }
+  }
+}
@@ -3,6 +3,7 @@ package raytracer;
 import static java.util.Comparator.comparing;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,12 +29,28 @@ public class CSG implements Shape {
   private Operation operation;
   private Shape left;
   private Shape right;
+  // Cached box bounding both shapes, in the combination's own coordinates.
+  // Volatile so that render threads computing it concurrently publish it safely.
+  private volatile BoundingBox boundingBox = null;
+  private final boolean frozen;
 
   private CSG(Operation operation, Shape left, Shape right) {
     this.operation = operation;
     this.left = left;
     this.right = right;
     this.transformed = new TransformedIntersectable(new CSGIntersectable());
+    this.frozen = false;
+  }
+
+  // Creates a frozen copy of the given combination.
+  private CSG(CSG csg) {
+    this.operation = csg.operation;
+    this.left = csg.left.freeze();
+    this.right = csg.right.freeze();
+    CSGIntersectable intersectable = new CSGIntersectable();
+    this.boundingBox = intersectable.boundingBox();
+    this.transformed = csg.transformed.freeze(intersectable);
+    this.frozen = true;
   }
 
   @Override
@@ -43,6 +60,7 @@ public class CSG implements Shape {
 
   @Override
   public void setTransform(Matrix transform) {
+    Preconditions.checkState(!frozen, "Can't transform a frozen shape");
     transformed.setTransform(transform);
   }
 
@@ -54,29 +72,77 @@ public class CSG implements Shape {
 
   @Override
   public void setMaterial(Material m) {
+    Preconditions.checkState(!frozen, "Can't change the material of a frozen shape");
     left.setMaterial(m);
     right.setMaterial(m);
   }
 
+  @Override
+  public boolean hasTransparency() {
+    return left.hasTransparency() || right.hasTransparency();
+  }
+
+  @Override
+  public CSG freeze() {
+    return frozen ? this : new CSG(this);
+  }
+
   @Override
   public BoundingBox boundingBox() {
     return transformed.boundingBox();
   }
 
+  // Resets the computed bounding box.
+  // To be used when a combined shape changes its bounding box.
+  public void resetBoundingBox() {
+    Preconditions.checkState(!frozen, "A frozen shape's bounding box can't change");
+    boundingBox = null;
+  }
+
   @Override
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
     return transformed.intersectStream(ray);
   }
 
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    return transformed.intersectClosest(ray, record);
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return transformed.hitsShadowCaster(ray, tMax, opaqueOnly);
+  }
+
+  @Override
+  public void intersectClosest(RayPacket packet) {
+    transformed.intersectClosest(packet);
+  }
+
+  @Override
+  public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    transformed.terminateShadowed(packet, opaqueOnly);
+  }
+
   // Intersects a raw CSG combination.
   public class CSGIntersectable implements Intersectable {
     @Override
     public BoundingBox boundingBox() {
-      return left.boundingBox().getRange().span(right.boundingBox().getRange()).createBoundingBox();
+      BoundingBox box = boundingBox;
+      if (box == null) {
+        box =
+            left.boundingBox().getRange().span(right.boundingBox().getRange()).createBoundingBox();
+        boundingBox = box;
+      }
+      return box;
     }
 
     @Override
     public Stream<MaterialIntersection> intersectStream(Ray ray) {
+      // The combined surfaces all lie within the two shapes' bounds.
+      if (!boundingBox().maybeHits(ray)) {
+        return Stream.empty();
+      }
       List<CSGIntersection> is =
           Stream.concat(
                   left.intersectStream(ray).map(i -> CSGIntersection.createLeft(i)),
@@ -98,6 +164,29 @@ public class CSG implements Shape {
       }
       return outputIntersections.build();
     }
+
+    @Override
+    public boolean intersectClosest(Ray ray, HitRecord record) {
+      if (!boundingBox().maybeHits(ray, 0, record.t())) {
+        return false;
+      }
+      return Intersectable.super.intersectClosest(ray, record);
+    }
+
+    @Override
+    public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+      if (!boundingBox().maybeHits(ray, 0, tMax)) {
+        return false;
+      }
+      // The combined surfaces are a subset of the two sides' surfaces, so if neither side casts a
+      // shadow neither does the combination. Otherwise which surfaces survive depends on every
+      // hit along the ray.
+      if (!left.hitsShadowCaster(ray, tMax, opaqueOnly)
+          && !right.hitsShadowCaster(ray, tMax, opaqueOnly)) {
+        return false;
+      }
+      return Intersectable.super.hitsShadowCaster(ray, tMax, opaqueOnly);
+    }
   }
 
   // CSG combiner operation -- decides whether a given intersection is
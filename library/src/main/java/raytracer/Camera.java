@@ -37,29 +37,82 @@ public abstract class Camera {
   public abstract Matrix transform();
 
   @Memoized
-  protected Matrix inverseTransform() {
-    return transform().invert();
+  protected Matrix4 inverseTransform() {
+    return Matrix4.from(transform()).inverse();
+  }
+
+  // The camera position in world coordinates.
+  @Memoized
+  protected Tuple origin() {
+    return inverseTransform().times(CAMERA_POS);
   }
 
   // Renders a view of the given World onto a canvas of the configured size using the
   // configured camera view.
   public Canvas render(World world) {
+    // A frozen copy knows up front whether it has transparent materials, and has its bounding
+    // boxes and hierarchies built, rather than checking them for every ray.
+    World frozen = world.freeze();
     Canvas c = new Canvas(hPixels(), vPixels());
     c.forEachIndex(
         (x, y) -> {
-          c.setPixel(x, y, world.colorAt(rayForPixel(x, y)));
+          c.setPixel(x, y, frozen.colorAt(rayForPixel(x, y)));
         });
     return c;
   }
 
+  // Renders a view of the given World as render(world) does, but splits the canvas into tiles
+  // that are rendered concurrently as described by the given options.
+  // The World is frozen when rendering starts, so later changes don't affect the image.
+  public Canvas render(World world, RenderOptions options) {
+    return renderWithReport(world, options).canvas();
+  }
+
+  // Renders a view of the given World as render(world, options) does, reporting what it took.
+  public RenderResult renderWithReport(World world, RenderOptions options) {
+    return new TileRenderer(this, world.freeze(), options).render();
+  }
+
+  // Starts rendering a view of the given World as renderWithReport(world, options) does, on a
+  // background thread. The returned job reports progress, and can be cancelled.
+  public RenderJob startRender(World world, RenderOptions options) {
+    return RenderJob.start(this, world.freeze(), options);
+  }
+
+  // Renders a view of the given World as renderWithReport(world, options) does, but in passes
+  // that show the whole image early at coarse resolution, then refine it. The first pass traces
+  // one ray per block of options.progressiveBlockSize() pixels on a side, and fills the block with
+  // its color. Each later pass halves the block size, tracing only the rays not already traced, so
+  // the last pass completes an image identical to renderWithReport()'s with no extra rays.
+  // Antialiasing, if enabled, is a final pass. Returns the image of the last pass done.
+  public RenderResult renderProgressively(
+      World world, RenderOptions options, PassListener listener) {
+    return new TileRenderer(this, world.freeze(), options).renderProgressively(listener);
+  }
+
+  // Receives the images of a progressive render as its passes are done.
+  @FunctionalInterface
+  public interface PassListener {
+    // Called with a copy of the image once the given pass, counting from 0, of passCount passes
+    // is done, on the thread that started the render. Returns false to stop rendering, skipping
+    // any later passes.
+    boolean passDone(Canvas snapshot, int pass, int passCount);
+  }
+
   private static final Tuple CAMERA_POS = Tuple.point(0, 0, 0);
 
   // Returns the camera ray that passes from the camera through the pixel at the given coordinates.
   public Ray rayForPixel(int x, int y) {
+    return rayForPixel((double) x, (double) y);
+  }
+
+  // Returns the camera ray that passes from the camera through the given point on the canvas, in
+  // pixel coordinates. Pixel (x, y) covers the points within 0.5 of (x, y) on either axis.
+  public Ray rayForPixel(double x, double y) {
     Tuple filmPoint = filmPointForPixel(x, y);
     Tuple direction = filmPoint.minus(CAMERA_POS).normalize();
 
-    return Ray.create(inverseTransform().times(CAMERA_POS), inverseTransform().times(direction));
+    return Ray.create(origin(), inverseTransform().times(direction));
   }
 
   // Returns how big each pixel should be in x/y-space units.
@@ -75,6 +128,11 @@ public abstract class Camera {
   // pixels [0..hPixels-1, 0..vPixels-1] map onto film of fieldOfView.
   // Film is at z=-1, width and height set by fieldOfView from camera at origin.
   public Tuple filmPointForPixel(int x, int y) {
+    return filmPointForPixel((double) x, (double) y);
+  }
+
+  // Returns the point on the film for the given point on the canvas, in pixel coordinates.
+  public Tuple filmPointForPixel(double x, double y) {
     // film Z plane.
     final double PZ = -1.0;
     final double pixelScale = pixelScale();
@@ -1,38 +1,49 @@
 package raytracer;
 
-import com.google.common.collect.ArrayTable;
+import com.google.common.base.Preconditions;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import javax.imageio.ImageIO;
 
 // A film canvas onto which images will be rendered.
 public class Canvas {
-  // Index is [0..width-1][0..height-1]
-  private int width;
-  private int height;
-  private ArrayTable<Integer, Integer, Color> pixels;
+  // Number of channels stored per pixel (red, green, blue).
+  public static final int CHANNELS = 3;
 
-  public Canvas(int width, int height) {
-    initialize(width, height);
-  }
+  private final int width;
+  private final int height;
+  // Pixel channel values, CHANNELS per pixel, in row-major order from (0,0).
+  private final double[] pixels;
 
-  private void initialize(int width, int height) {
+  public Canvas(int width, int height) {
     this.width = width;
     this.height = height;
-    List<Integer> xRange = IntStream.range(0, width).boxed().collect(Collectors.toList());
-    List<Integer> yRange = IntStream.range(0, height).boxed().collect(Collectors.toList());
-    this.pixels = ArrayTable.create(xRange, yRange);
-    forEachIndex((x, y) -> pixels.set(x, y, Color.BLACK));
+    this.pixels = new double[CHANNELS * width * height];
+  }
+
+  // Returns a copy of this canvas, which changes to this canvas don't affect.
+  public Canvas copy() {
+    Canvas copy = new Canvas(width, height);
+    System.arraycopy(pixels, 0, copy.pixels, 0, pixels.length);
+    return copy;
   }
 
   public int width() {
@@ -43,27 +54,29 @@ public class Canvas {
     return height;
   }
 
-  private IntStream xIndexStream() {
-    return IntStream.range(0, width);
-  }
-
-  private IntStream yIndexStream() {
-    return IntStream.range(0, height);
-  }
-
   // Calls callback for each pixel (x,y).
   public void forEachIndex(BiConsumer<Integer, Integer> callback) {
-    yIndexStream().forEach(y -> xIndexStream().forEach(x -> callback.accept(x, y)));
+    for (int y = 0; y < height; ++y) {
+      for (int x = 0; x < width; ++x) {
+        callback.accept(x, y);
+      }
+    }
   }
 
   private boolean indexInRange(int x, int y) {
     return (x >= 0 && x < width && y >= 0 && y < height);
   }
 
+  // Returns the index in pixels of the first channel of the given pixel.
+  private int index(int x, int y) {
+    return CHANNELS * (y * width + x);
+  }
+
   // Returns the color of the given pixel.
   public Color pixel(int x, int y) {
     if (indexInRange(x, y)) {
-      return pixels.get(x, y);
+      int i = index(x, y);
+      return Color.create(pixels[i], pixels[i + 1], pixels[i + 2]);
     } else {
       return Color.BLACK;
     }
@@ -71,13 +84,35 @@ public class Canvas {
 
   // Sets the color of the given pixel.
   public void setPixel(int x, int y, Color c) {
+    setPixel(x, y, c.red(), c.green(), c.blue());
+  }
+
+  // Sets the color channels of the given pixel.
+  public void setPixel(int x, int y, double red, double green, double blue) {
     if (indexInRange(x, y)) {
-      pixels.set(x, y, c);
+      int i = index(x, y);
+      pixels[i] = red;
+      pixels[i + 1] = green;
+      pixels[i + 2] = blue;
     }
   }
 
+  // Copies the channels of row y into rowOut, CHANNELS values per pixel from x = 0.
+  // rowOut must hold at least CHANNELS * width() values.
+  public void getRow(int y, double[] rowOut) {
+    Preconditions.checkElementIndex(y, height, "row");
+    System.arraycopy(pixels, index(0, y), rowOut, 0, CHANNELS * width);
+  }
+
+  // Sets the channels of row y from row, CHANNELS values per pixel from x = 0.
+  // row must hold at least CHANNELS * width() values.
+  public void setRow(int y, double[] row) {
+    Preconditions.checkElementIndex(y, height, "row");
+    System.arraycopy(row, 0, pixels, index(0, y), CHANNELS * width);
+  }
+
   // Returns the ppm value for the given color channel value.
-  private int toChannelByte(double channel) {
+  private static int toChannelByte(double channel) {
     if (channel <= 0.0) {
       return 0;
     }
@@ -89,13 +124,15 @@ public class Canvas {
 
   // Writes the contents of this Canvas to the given raster image.
   private void writeToRaster(WritableRaster raster) {
-    forEachIndex(
-        (x, y) -> {
-          Color c = pixels.get(x, y);
-          int[] colorArray =
-              new int[] {toChannelByte(c.red()), toChannelByte(c.green()), toChannelByte(c.blue())};
-          raster.setPixel(x, y, colorArray);
-        });
+    double[] row = new double[CHANNELS * width];
+    int[] rowBytes = new int[CHANNELS * width];
+    for (int y = 0; y < height; ++y) {
+      getRow(y, row);
+      for (int i = 0; i < row.length; ++i) {
+        rowBytes[i] = toChannelByte(row[i]);
+      }
+      raster.setPixels(0, y, width, 1, rowBytes);
+    }
   }
 
   private RenderedImage toImage() {
@@ -110,55 +147,193 @@ public class Canvas {
     ImageIO.write(image, "png", outFile);
   }
 
-  // Returns the ppm string format of the given color.
-  private String toPpmPixel(Color c) {
-    return String.format(
-        "%d %d %d", toChannelByte(c.red()), toChannelByte(c.green()), toChannelByte(c.blue()));
-  }
-
-  // Writes this canvas to the given file in PPM format.
+  // Writes this canvas to the given file in ASCII (P3) PPM format.
   public void writePpmFile(File outFile) throws IOException {
     FileOutputStream outfile = new FileOutputStream(outFile);
     writePpmStream(outfile);
     outfile.close();
   }
 
-  // Writes this canvas to the given PPM stream.
+  // Maximum length of lines in ASCII PPM files.
+  private static final int PPM_LINE_LIMIT = 70;
+
+  // Writes this canvas to the given stream in ASCII (P3) PPM format.
+  // Each row starts a new line, and lines are wrapped to no longer than 70 characters.
   public void writePpmStream(OutputStream outStream) {
-    PrintStream out = new PrintStream(outStream);
-    out.println("P3");
-    out.println(String.format("%d %d", width(), height()));
-    out.println("255");
-
-    yIndexStream()
-        .forEach(
-            y ->
-                out.println(
-                    addLinebreaksToLongLines(
-                        xIndexStream()
-                            .mapToObj(x -> pixels.get(x, y))
-                            .map(c -> toPpmPixel(c))
-                            .collect(Collectors.joining(" ")))));
+    PrintStream out = new PrintStream(new BufferedOutputStream(outStream));
+    out.print(ppmHeader("P3"));
+
+    double[] row = new double[CHANNELS * width];
+    // Room for a full line and its newline.
+    byte[] line = new byte[PPM_LINE_LIMIT + 1];
+    for (int y = 0; y < height; ++y) {
+      getRow(y, row);
+      int length = 0;
+      for (double channel : row) {
+        int value = toChannelByte(channel);
+        int digits = value >= 100 ? 3 : value >= 10 ? 2 : 1;
+        if (length > 0 && length + 1 + digits > PPM_LINE_LIMIT) {
+          line[length++] = '\n';
+          out.write(line, 0, length);
+          length = 0;
+        }
+        if (length > 0) {
+          line[length++] = ' ';
+        }
+        for (int d = digits - 1; d >= 0; --d) {
+          line[length + d] = (byte) ('0' + value % 10);
+          value /= 10;
+        }
+        length += digits;
+      }
+      line[length++] = '\n';
+      out.write(line, 0, length);
+    }
     out.flush();
   }
 
-  // Split line into multiple lines no longer than 70 characters.
-  private String addLinebreaksToLongLines(String input) {
-    final int lengthLimit = 70;
-    StringBuilder output = new StringBuilder();
-    int currentIndex = 0;
-    int lastIndex = input.length();
-    while (lastIndex - currentIndex > lengthLimit) {
-      // find last whole word at < lengthLimit characters
-      int spaceIndex = currentIndex + lengthLimit;
-      while (input.charAt(spaceIndex) != ' ') {
-        --spaceIndex;
+  // Writes this canvas to the given file in binary (P6) PPM format.
+  public void writePpmBinaryFile(File outFile) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            outFile.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      writePpmBinary(channel);
+    }
+  }
+
+  // Writes this canvas to the given stream in binary (P6) PPM format.
+  public void writePpmBinaryStream(OutputStream outStream) throws IOException {
+    writePpmBinary(Channels.newChannel(outStream));
+    outStream.flush();
+  }
+
+  // Size of the buffer in which rows are collected before writing.
+  private static final int PPM_BUFFER_SIZE = 1 << 16;
+
+  private void writePpmBinary(WritableByteChannel channel) throws IOException {
+    byte[] header = ppmHeader("P6").getBytes(StandardCharsets.US_ASCII);
+    int rowBytes = CHANNELS * width;
+    ByteBuffer buffer = ByteBuffer.allocate(Math.max(PPM_BUFFER_SIZE, rowBytes + header.length));
+    buffer.put(header);
+    double[] row = new double[rowBytes];
+    for (int y = 0; y < height; ++y) {
+      if (buffer.remaining() < rowBytes) {
+        writeFully(channel, buffer);
+      }
+      getRow(y, row);
+      for (double channelValue : row) {
+        buffer.put((byte) toChannelByte(channelValue));
+      }
+    }
+    writeFully(channel, buffer);
+  }
+
+  // Writes and clears the contents of the given buffer.
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  // Returns the PPM header with the given magic number for this canvas.
+  private String ppmHeader(String magic) {
+    return String.format("%s\n%d %d\n255\n", magic, width(), height());
+  }
+
+  // Reads a canvas from the given file in ASCII (P3) or binary (P6) PPM format.
+  public static Canvas readPpmFile(File inFile) throws IOException {
+    try (InputStream in = new FileInputStream(inFile)) {
+      return readPpmStream(in);
+    }
+  }
+
+  // Reads a canvas from the given stream in ASCII (P3) or binary (P6) PPM format.
+  // Channel values are scaled by the file's maximum value into 0..1, so canvases written by
+  // this class read back to the same PPM bytes.
+  public static Canvas readPpmStream(InputStream inStream) throws IOException {
+    return new PpmReader(inStream).read();
+  }
+
+  // Parses PPM files.
+  private static class PpmReader {
+    private final InputStream in;
+
+    PpmReader(InputStream in) {
+      this.in = new BufferedInputStream(in, PPM_BUFFER_SIZE);
+    }
+
+    Canvas read() throws IOException {
+      if (in.read() != 'P') {
+        throw new IOException("Not a PPM file");
+      }
+      int format = in.read();
+      if (format != '3' && format != '6') {
+        throw new IOException("Unsupported PPM format P" + (char) format);
+      }
+      int width = readInt();
+      int height = readInt();
+      int maxValue = readInt();
+      if (maxValue <= 0 || maxValue > 65535) {
+        throw new IOException("Invalid PPM maximum value " + maxValue);
+      }
+      // Reading maxValue also consumed the single whitespace character ending the header.
+      Canvas canvas = new Canvas(width, height);
+      double[] row = new double[CHANNELS * width];
+      for (int y = 0; y < height; ++y) {
+        for (int i = 0; i < row.length; ++i) {
+          int value = format == '3' ? readInt() : readBinarySample(maxValue);
+          row[i] = (double) value / maxValue;
+        }
+        canvas.setRow(y, row);
+      }
+      return canvas;
+    }
+
+    // Returns the next byte, failing at the end of the stream.
+    private int readByte() throws IOException {
+      int c = in.read();
+      if (c < 0) {
+        throw new EOFException("Unexpected end of PPM file");
+      }
+      return c;
+    }
+
+    // Reads a binary sample, which is two bytes (most significant first) if maxValue > 255.
+    private int readBinarySample(int maxValue) throws IOException {
+      int value = readByte();
+      if (maxValue > 255) {
+        value = (value << 8) | readByte();
+      }
+      return value;
+    }
+
+    // Reads a decimal integer, skipping leading whitespace and comments.
+    private int readInt() throws IOException {
+      int c = readByte();
+      while (Character.isWhitespace(c) || c == '#') {
+        if (c == '#') {
+          // Comments run to the end of the line.
+          while (c != '\n' && c != '\r') {
+            c = readByte();
+          }
+        }
+        c = readByte();
+      }
+      if (c < '0' || c > '9') {
+        throw new IOException("Expected number in PPM file, found '" + (char) c + "'");
+      }
+      int value = 0;
+      while (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        c = in.read();
       }
-      output.append(input.substring(currentIndex, spaceIndex));
-      output.append("\n");
-      currentIndex = spaceIndex + 1;
+      return value;
     }
-    output.append(input.substring(currentIndex));
-    return output.toString();
   }
 }
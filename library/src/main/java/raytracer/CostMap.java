@@ -0,0 +1,138 @@
+package raytracer;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// The cost of rendering each pixel of an image, for finding what makes a scene slow.
+// Costs include any antialiasing samples. Pixels traced together in a packet share its cost
+// evenly.
+public class CostMap {
+
+  // What the cost of a pixel is measured in.
+  public enum Metric {
+    // Elapsed time in nanoseconds.
+    NANOS,
+    // Ray-primitive intersection tests, as counted for RenderStatistics. Requires the system
+    // property raytracer.statistics=true.
+    INTERSECTION_TESTS
+  }
+
+  // The share of pixels whose costs are shown with distinct colors by toFalseColor(). The most
+  // costly remaining ones all show the hottest color, so that a few outliers, such as pixels
+  // rendered while the JIT compiler warms up, don't leave the rest of the map dark.
+  private static final double FALSE_COLOR_PERCENTILE = 0.99;
+
+  // Colors of costs from none to the highest shown, evenly spaced.
+  private static final Color[] FALSE_COLORS = {
+    Color.BLACK,
+    Color.create(0, 0, 1),
+    Color.create(1, 0, 1),
+    Color.create(1, 0, 0),
+    Color.create(1, 1, 0),
+    Color.WHITE
+  };
+
+  private final Metric metric;
+  private final int width;
+  private final int height;
+  // Pixel costs in row-major order from (0,0).
+  private final long[] costs;
+
+  CostMap(Metric metric, int width, int height) {
+    this.metric = metric;
+    this.width = width;
+    this.height = height;
+    this.costs = new long[width * height];
+  }
+
+  public Metric metric() {
+    return metric;
+  }
+
+  public int width() {
+    return width;
+  }
+
+  public int height() {
+    return height;
+  }
+
+  public long cost(int x, int y) {
+    return costs[index(x, y)];
+  }
+
+  // Adds to the cost of the pixel at (x, y).
+  void addCost(int x, int y, long cost) {
+    costs[index(x, y)] += cost;
+  }
+
+  private int index(int x, int y) {
+    Preconditions.checkElementIndex(x, width, "x");
+    Preconditions.checkElementIndex(y, height, "y");
+    return y * width + x;
+  }
+
+  public long totalCost() {
+    return Arrays.stream(costs).sum();
+  }
+
+  // Returns an image of this map, coloring pixels from black for no cost, through blue, magenta,
+  // red and yellow, to white for the FALSE_COLOR_PERCENTILE'th highest cost and above.
+  public Canvas toFalseColor() {
+    long[] sorted = costs.clone();
+    Arrays.sort(sorted);
+    long top =
+        sorted.length > 0
+            ? sorted[(int) Math.ceil(sorted.length * FALSE_COLOR_PERCENTILE) - 1]
+            : 0;
+    Canvas canvas = new Canvas(width, height);
+    for (int y = 0; y < height; ++y) {
+      for (int x = 0; x < width; ++x) {
+        double level = top > 0 ? Math.min(1.0, (double) cost(x, y) / top) : 0;
+        canvas.setPixel(x, y, falseColor(level));
+      }
+    }
+    return canvas;
+  }
+
+  // Returns the color for a level within [0, 1], interpolating between FALSE_COLORS.
+  private static Color falseColor(double level) {
+    double position = level * (FALSE_COLORS.length - 1);
+    int i = Math.min((int) position, FALSE_COLORS.length - 2);
+    double fraction = position - i;
+    return FALSE_COLORS[i].times(1 - fraction).plus(FALSE_COLORS[i + 1].times(fraction));
+  }
+
+  // Writes this map to the given file in the text format of writeRawStream().
+  public void writeRawFile(File outFile) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(outFile)) {
+      writeRawStream(out);
+    }
+  }
+
+  // Writes this map to the given stream as text: a line naming the metric, a line with the width
+  // and height, then a line of space-separated costs for each row of pixels from the top.
+  public void writeRawStream(OutputStream outStream) {
+    PrintStream out = new PrintStream(new BufferedOutputStream(outStream));
+    out.println(metric);
+    out.println(width + " " + height);
+    StringBuilder line = new StringBuilder();
+    for (int y = 0; y < height; ++y) {
+      line.setLength(0);
+      for (int x = 0; x < width; ++x) {
+        if (x > 0) {
+          line.append(' ');
+        }
+        line.append(costs[y * width + x]);
+      }
+      out.println(line);
+    }
+    out.flush();
+  }
+}
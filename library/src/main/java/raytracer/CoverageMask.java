@@ -0,0 +1,89 @@
+package raytracer;
+
+import com.google.common.base.Preconditions;
+
+// Which pixels of an image have been rendered at full resolution, for renders that are stopped
+// before they are done. Pixels are covered a tile at a time. With antialiasing, a covered pixel
+// may still be missing the extra samples of the antialiasing pass, which also runs a tile at a
+// time.
+public class CoverageMask {
+
+  private final int width;
+  private final int height;
+  // Whether each pixel is covered, in row-major order from (0,0).
+  private final boolean[] covered;
+  // Whether each pixel has been through the antialiasing pass, or null without antialiasing.
+  private final boolean[] antialiased;
+
+  CoverageMask(int width, int height, boolean antialiasing) {
+    this.width = width;
+    this.height = height;
+    this.covered = new boolean[width * height];
+    this.antialiased = antialiasing ? new boolean[width * height] : null;
+  }
+
+  public int width() {
+    return width;
+  }
+
+  public int height() {
+    return height;
+  }
+
+  public boolean isCovered(int x, int y) {
+    Preconditions.checkElementIndex(x, width, "x");
+    Preconditions.checkElementIndex(y, height, "y");
+    return covered[y * width + x];
+  }
+
+  // Returns true if the given pixel has been through the antialiasing pass, which only refines
+  // the pixels on edges. Always false without antialiasing.
+  public boolean isAntialiased(int x, int y) {
+    Preconditions.checkElementIndex(x, width, "x");
+    Preconditions.checkElementIndex(y, height, "y");
+    return antialiased != null && antialiased[y * width + x];
+  }
+
+  // Marks the pixels of the given tile as covered.
+  void cover(Tile tile) {
+    tile.forEachPixel((x, y) -> covered[y * width + x] = true);
+  }
+
+  // Marks the pixels of the given tile as antialiased.
+  void coverAntialiased(Tile tile) {
+    tile.forEachPixel((x, y) -> antialiased[y * width + x] = true);
+  }
+
+  public int coveredPixelCount() {
+    return count(covered);
+  }
+
+  public int antialiasedPixelCount() {
+    return antialiased == null ? 0 : count(antialiased);
+  }
+
+  // Returns true if every pixel is covered, and antialiased if antialiasing was asked for.
+  public boolean isComplete() {
+    return coveredPixelCount() == covered.length
+        && (antialiased == null || antialiasedPixelCount() == antialiased.length);
+  }
+
+  private static int count(boolean[] flags) {
+    int count = 0;
+    for (boolean f : flags) {
+      count += f ? 1 : 0;
+    }
+    return count;
+  }
+
+  // Returns an image of this mask, white where covered and black elsewhere.
+  public Canvas toCanvas() {
+    Canvas canvas = new Canvas(width, height);
+    for (int y = 0; y < height; ++y) {
+      for (int x = 0; x < width; ++x) {
+        canvas.setPixel(x, y, covered[y * width + x] ? Color.WHITE : Color.BLACK);
+      }
+    }
+    return canvas;
+  }
+}
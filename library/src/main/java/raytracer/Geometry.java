@@ -1,12 +1,16 @@
 package raytracer;
 
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
 
 // Describes a shape that we can render.
 public abstract class Geometry {
 
+  // Unique among all shapes, unlike identity hash codes.
+  private final int shapeId = ShapeIds.next();
+
   // Returns stream of t values where given ray intersects this shape.
   protected abstract DoubleStream intersect(Ray ray);
 
@@ -14,15 +18,47 @@ public abstract class Geometry {
   public abstract Range3 getRange();
 
   // Returns the locations at which the given ray intersects this shape.
+  // Normals are only computed for intersections that are shaded.
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
+    int shapeId = shapeId();
     return intersect(ray)
         .mapToObj(
-            t -> {
-              Tuple normalv = normalAt(ray.position(t));
-              Material material = null;
-              int shapeId = System.identityHashCode(Geometry.this);
-              return MaterialIntersection.create(ray, t, normalv, material, shapeId);
-            });
+            t ->
+                MaterialIntersection.createDeferred(
+                    ray, t, () -> normalAt(ray.position(t)), null, shapeId));
+  }
+
+  // Records in record the closest intersection with the given ray, if it is closer than the
+  // record's current hit. Only the closest hit's normal is computed.
+  // Returns true if record was updated.
+  public boolean intersectClosest(Ray ray, Material material, HitRecord record) {
+    PrimitiveIterator.OfDouble ts = intersect(ray).iterator();
+    double closestT = Double.NaN;
+    while (ts.hasNext()) {
+      double t = ts.nextDouble();
+      if (record.accepts(t) && (Double.isNaN(closestT) || t < closestT)) {
+        closestT = t;
+      }
+    }
+    return !Double.isNaN(closestT) && offer(ray, closestT, material, record);
+  }
+
+  // Returns true if the given ray hits this shape with 0 <= t < tMax.
+  public boolean hitsWithin(Ray ray, double tMax) {
+    return intersectClosest(ray, null, new HitRecord(tMax));
+  }
+
+  // Records a hit at t on this shape in record, if it is closer than the record's current hit.
+  protected boolean offer(Ray ray, double t, Material material, HitRecord record) {
+    if (!record.accepts(t)) {
+      return false;
+    }
+    return record.offer(t, normalAt(ray.position(t)), material, shapeId());
+  }
+
+  // Id used to couple intersections of this shape.
+  protected int shapeId() {
+    return shapeId;
   }
 
   // Returns the vector normal at the given point on this shape.
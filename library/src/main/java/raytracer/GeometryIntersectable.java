@@ -33,9 +33,25 @@ public class GeometryIntersectable implements Intersectable {
 
   @Override
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
+    RenderCounters.countIntersectionTest(geometry.getClass());
     return geometry.intersectStream(ray).map(i -> i.copyWithMaterial(material));
   }
 
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    RenderCounters.countIntersectionTest(geometry.getClass());
+    return geometry.intersectClosest(ray, material, record);
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    if (!material.castsShadow(opaqueOnly)) {
+      return false;
+    }
+    RenderCounters.countIntersectionTest(geometry.getClass());
+    return geometry.hitsWithin(ray, tMax);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == null) {
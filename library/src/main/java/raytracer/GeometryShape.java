@@ -1,5 +1,6 @@
 package raytracer;
 
+import com.google.common.base.Preconditions;
 import java.util.stream.Stream;
 
 // The Shape form of a given Geometry.
@@ -7,10 +8,19 @@ public class GeometryShape implements Shape {
 
   private TransformedIntersectable transformed;
   private GeometryIntersectable geometry;
+  private final boolean frozen;
 
   public GeometryShape(Geometry geometry) {
     this.geometry = new GeometryIntersectable(geometry);
     this.transformed = new TransformedIntersectable(this.geometry);
+    this.frozen = false;
+  }
+
+  private GeometryShape(GeometryShape shape) {
+    this.geometry = new GeometryIntersectable(shape.geometry());
+    this.geometry.setMaterial(shape.material());
+    this.transformed = shape.transformed.freeze(this.geometry);
+    this.frozen = true;
   }
 
   // VisibleForTesting
@@ -25,6 +35,7 @@ public class GeometryShape implements Shape {
 
   @Override
   public void setTransform(Matrix transform) {
+    Preconditions.checkState(!frozen, "Can't transform a frozen shape");
     transformed.setTransform(transform);
   }
 
@@ -35,9 +46,15 @@ public class GeometryShape implements Shape {
 
   @Override
   public void setMaterial(Material m) {
+    Preconditions.checkState(!frozen, "Can't change the material of a frozen shape");
     geometry.setMaterial(m);
   }
 
+  @Override
+  public GeometryShape freeze() {
+    return frozen ? this : new GeometryShape(this);
+  }
+
   @Override
   public BoundingBox boundingBox() {
     return transformed.boundingBox();
@@ -47,4 +64,24 @@ public class GeometryShape implements Shape {
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
     return transformed.intersectStream(ray);
   }
+
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    return transformed.intersectClosest(ray, record);
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return transformed.hitsShadowCaster(ray, tMax, opaqueOnly);
+  }
+
+  @Override
+  public void intersectClosest(RayPacket packet) {
+    transformed.intersectClosest(packet);
+  }
+
+  @Override
+  public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    transformed.terminateShadowed(packet, opaqueOnly);
+  }
 }
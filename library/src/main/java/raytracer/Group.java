@@ -1,5 +1,7 @@
 package raytracer;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -10,8 +12,19 @@ public class Group implements Shape {
   // Wraps group of shapes with single transform.
   private TransformedIntersectable transformed;
   private List<Shape> shapes = new ArrayList<>();
-  // Cached version of box bounding entire group.
-  private BoundingBox boundingBox = null;
+  // Cached version of box bounding entire group, in the group's own coordinates.
+  // Volatile so that render threads computing it concurrently publish it safely.
+  private volatile BoundingBox boundingBox = null;
+
+  // Groups with at least this many shapes are intersected through a bounding volume hierarchy.
+  public static final int DEFAULT_HIERARCHY_THRESHOLD = 8;
+
+  private static final BoundingBox UNBOUNDED_BOX = Range3.createUnbounded().createBoundingBox();
+
+  private int hierarchyThreshold = DEFAULT_HIERARCHY_THRESHOLD;
+  // Cached hierarchy over shapes, built on first use.
+  private volatile BoundingVolumeHierarchy hierarchy = null;
+  private final boolean frozen;
 
   public static Group create() {
     return new Group();
@@ -19,11 +32,29 @@ public class Group implements Shape {
 
   private Group() {
     transformed = new TransformedIntersectable(new GroupIntersectable());
+    frozen = false;
+  }
+
+  // Creates a frozen copy of the given group, sharing its computed bounding box and hierarchy,
+  // which still describe the frozen copies of its shapes.
+  private Group(Group group) {
+    ImmutableList.Builder<Shape> frozenShapes = ImmutableList.builder();
+    for (Shape s : group.shapes) {
+      frozenShapes.add(s.freeze());
+    }
+    shapes = frozenShapes.build();
+    hierarchyThreshold = group.hierarchyThreshold;
+    boundingBox = group.localBoundingBox();
+    hierarchy = group.hierarchy();
+    transformed = group.transformed.freeze(new GroupIntersectable());
+    frozen = true;
   }
 
   public void add(Shape s) {
+    Preconditions.checkState(!frozen, "Can't add to a frozen group");
     shapes.add(s);
     boundingBox = null;
+    hierarchy = null;
   }
 
   public List<Shape> shapes() {
@@ -37,6 +68,7 @@ public class Group implements Shape {
 
   @Override
   public void setTransform(Matrix transform) {
+    Preconditions.checkState(!frozen, "Can't transform a frozen group");
     transformed.setTransform(transform);
     boundingBox = null;
   }
@@ -54,47 +86,125 @@ public class Group implements Shape {
 
   @Override
   public void setMaterial(Material m) {
+    Preconditions.checkState(!frozen, "Can't change the material of a frozen group");
     for (Shape s : shapes) {
       s.setMaterial(m);
     }
   }
 
+  @Override
+  public boolean hasTransparency() {
+    for (Shape s : shapes) {
+      if (s.hasTransparency()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Group freeze() {
+    return frozen ? this : new Group(this);
+  }
+
   @Override
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
     return transformed.intersectStream(ray);
   }
 
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    return transformed.intersectClosest(ray, record);
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return transformed.hitsShadowCaster(ray, tMax, opaqueOnly);
+  }
+
+  @Override
+  public void intersectClosest(RayPacket packet) {
+    transformed.intersectClosest(packet);
+  }
+
+  @Override
+  public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    transformed.terminateShadowed(packet, opaqueOnly);
+  }
+
   // Resets the computed bounding box.
   // To be used when a contained shape changes its bounding box.
   public void resetBoundingBox() {
+    Preconditions.checkState(!frozen, "A frozen group's bounding box can't change");
     boundingBox = null;
+    hierarchy = null;
+  }
+
+  // Sets the minimum number of shapes for which this group is intersected through a bounding
+  // volume hierarchy rather than by testing every shape.
+  // 0 always uses a hierarchy, Integer.MAX_VALUE never does.
+  public void setHierarchyThreshold(int hierarchyThreshold) {
+    Preconditions.checkState(!frozen, "Can't change a frozen group");
+    this.hierarchyThreshold = hierarchyThreshold;
   }
 
+  // Returns the hierarchy over this group's shapes, or null if the group is too small to need one.
+  private BoundingVolumeHierarchy hierarchy() {
+    if (shapes.size() < hierarchyThreshold) {
+      return null;
+    }
+    BoundingVolumeHierarchy h = hierarchy;
+    if (h == null) {
+      List<Range3> ranges = new ArrayList<>();
+      for (Shape shape : shapes) {
+        ranges.add(shape.boundingBox().getRange());
+      }
+      h = BoundingVolumeHierarchy.build(ranges);
+      hierarchy = h;
+    }
+    return h;
+  }
+
+  // Returns the box bounding this group, in the coordinates of the group's parent.
   @Override
   public BoundingBox boundingBox() {
-    if (boundingBox == null) {
+    return transformed.boundingBox();
+  }
+
+  // Returns the box bounding all shapes of this group, in the group's own coordinates.
+  private BoundingBox localBoundingBox() {
+    // Read the field once; concurrent callers may each compute an identical box.
+    BoundingBox box = boundingBox;
+    if (box == null) {
       if (shapes.size() < 5) {
         // With few enough shapes, bounding box calculation is overkill.
-        return Range3.createUnbounded().createBoundingBox();
+        return UNBOUNDED_BOX;
       }
       Range3 range = Range3.createEmpty();
       for (Intersectable shape : shapes) {
         range = range.span(shape.boundingBox().getRange());
       }
-      boundingBox = range.createBoundingBox();
+      box = range.createBoundingBox();
+      boundingBox = box;
     }
-    return boundingBox;
+    return box;
   }
 
   // Intersects a raw collection of shapes.
   public class GroupIntersectable implements Intersectable {
     @Override
     public BoundingBox boundingBox() {
-      return Group.this.boundingBox();
+      return localBoundingBox();
     }
 
     @Override
     public Stream<MaterialIntersection> intersectStream(Ray ray) {
+      BoundingVolumeHierarchy hierarchy = hierarchy();
+      if (hierarchy != null) {
+        List<Shape> candidates = new ArrayList<>();
+        hierarchy.forEachCandidate(ray, i -> candidates.add(shapes.get(i)));
+        return candidates.stream().flatMap(s -> s.intersectStream(ray));
+      }
       Stream<MaterialIntersection> intersections = Stream.empty();
       if (!boundingBox().maybeHits(ray)) {
         return intersections;
@@ -104,5 +214,74 @@ public class Group implements Shape {
       }
       return intersections;
     }
+
+    @Override
+    public boolean intersectClosest(Ray ray, HitRecord record) {
+      // Every recorded hit is strictly closer than the previous one.
+      double previousT = record.t();
+      BoundingVolumeHierarchy hierarchy = hierarchy();
+      if (hierarchy != null) {
+        hierarchy.forEachCandidate(
+            ray, record::t, i -> shapes.get(i).intersectClosest(ray, record));
+        return record.t() < previousT;
+      }
+      if (!boundingBox().maybeHits(ray, 0, record.t())) {
+        return false;
+      }
+      for (Intersectable s : shapes) {
+        s.intersectClosest(ray, record);
+      }
+      return record.t() < previousT;
+    }
+
+    @Override
+    public void intersectClosest(RayPacket packet) {
+      BoundingVolumeHierarchy hierarchy = hierarchy();
+      if (hierarchy != null) {
+        hierarchy.forEachCandidate(
+            packet,
+            i -> packet.record(i).t(),
+            (candidates, i) -> shapes.get(i).intersectClosest(candidates));
+        return;
+      }
+      // Without a hierarchy every shape is tried. The group's bounding box is not tested, as it
+      // only pays off for groups nearly large enough to use a hierarchy.
+      for (Intersectable s : shapes) {
+        s.intersectClosest(packet);
+      }
+    }
+
+    @Override
+    public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+      BoundingVolumeHierarchy hierarchy = hierarchy();
+      if (hierarchy != null) {
+        hierarchy.forEachCandidate(
+            packet,
+            i -> packet.record(i).t(),
+            (candidates, i) -> shapes.get(i).terminateShadowed(candidates, opaqueOnly));
+        return;
+      }
+      for (Intersectable s : shapes) {
+        s.terminateShadowed(packet, opaqueOnly);
+      }
+    }
+
+    @Override
+    public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+      BoundingVolumeHierarchy hierarchy = hierarchy();
+      if (hierarchy != null) {
+        return hierarchy.anyCandidate(
+            ray, tMax, i -> shapes.get(i).hitsShadowCaster(ray, tMax, opaqueOnly));
+      }
+      if (!boundingBox().maybeHits(ray, 0, tMax)) {
+        return false;
+      }
+      for (Intersectable s : shapes) {
+        if (s.hitsShadowCaster(ray, tMax, opaqueOnly)) {
+          return true;
+        }
+      }
+      return false;
+    }
   }
 }
@@ -0,0 +1,89 @@
+package raytracer;
+
+// Mutable record of the closest intersection found so far along a ray.
+// Owned by the caller of Intersectable.intersectClosest() and reusable across rays via reset().
+// The normal is kept in the coordinates of the intersectable currently being intersected, and
+// is transformed outward as the query unwinds through TransformedIntersectables.
+public final class HitRecord {
+
+  private double t;
+  private Tuple normalv;
+  private Material material;
+  private int shapeId;
+  private boolean isHit;
+
+  // Creates a record accepting hits at any t >= 0.
+  public HitRecord() {
+    this(Double.POSITIVE_INFINITY);
+  }
+
+  // Creates a record accepting hits with 0 <= t < tMax.
+  public HitRecord(double tMax) {
+    reset(tMax);
+  }
+
+  // Clears this record, accepting hits with 0 <= t < tMax.
+  public void reset(double tMax) {
+    this.t = tMax;
+    this.normalv = null;
+    this.material = null;
+    this.shapeId = 0;
+    this.isHit = false;
+  }
+
+  // Has a hit been recorded.
+  public boolean isHit() {
+    return isHit;
+  }
+
+  // The t of the recorded hit, or the upper bound on accepted hits if none has been recorded.
+  // Only hits strictly closer than this can replace the current one.
+  public double t() {
+    return t;
+  }
+
+  // Returns true if a hit at t would be recorded.
+  public boolean accepts(double t) {
+    return t >= 0.0 && t < this.t;
+  }
+
+  // The normal at the recorded hit.
+  public Tuple normalv() {
+    return normalv;
+  }
+
+  // The material at the recorded hit.
+  public Material material() {
+    return material;
+  }
+
+  // Id of the shape that produced the recorded hit.
+  public int shapeId() {
+    return shapeId;
+  }
+
+  // Records the given hit if it is closer than the current one.
+  // Returns true if the hit was recorded.
+  public boolean offer(double t, Tuple normalv, Material material, int shapeId) {
+    if (!accepts(t)) {
+      return false;
+    }
+    this.t = t;
+    this.normalv = normalv;
+    this.material = material;
+    this.shapeId = shapeId;
+    this.isHit = true;
+    return true;
+  }
+
+  // Replaces the normal of the recorded hit, e.g. when transforming it to outer coordinates.
+  void setNormalv(Tuple normalv) {
+    this.normalv = normalv;
+  }
+
+  // Builds the full Intersection for the recorded hit along the given ray.
+  // Refractive indices are left at their defaults; see Intersections for those.
+  public Intersection toIntersection(Ray ray) {
+    return Intersection.create(ray, t, normalv, material, shapeId);
+  }
+}
@@ -20,4 +20,45 @@ public interface Intersectable {
 
   // Returns an unordered stream of intersections with the given ray.
   Stream<MaterialIntersection> intersectStream(Ray ray);
+
+  // Records in record the closest intersection with the given ray, if it is closer than the
+  // record's current hit. Hits at or beyond record.t() may be skipped without being computed.
+  // Returns true if record was updated.
+  default boolean intersectClosest(Ray ray, HitRecord record) {
+    boolean updated = false;
+    for (MaterialIntersection i : (Iterable<MaterialIntersection>) intersectStream(ray)::iterator) {
+      // Only compute the normal of hits the record will take.
+      if (record.accepts(i.t())) {
+        updated |= record.offer(i.t(), i.normalv(), i.material(), i.shapeId());
+      }
+    }
+    return updated;
+  }
+
+  // Records in each active ray's record the closest intersection of that ray, as
+  // intersectClosest(Ray, HitRecord) does for single rays.
+  default void intersectClosest(RayPacket packet) {
+    for (int i = 0; i < packet.size(); ++i) {
+      if (packet.isActive(i)) {
+        intersectClosest(packet.ray(i), packet.record(i));
+      }
+    }
+  }
+
+  // Returns true if the given ray hits a shadow-casting surface with 0 <= t < tMax, counting only
+  // opaque surfaces if opaqueOnly is set. Stops at the first such hit.
+  default boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return intersectStream(ray)
+        .anyMatch(i -> i.t() >= 0.0 && i.t() < tMax && i.material().castsShadow(opaqueOnly));
+  }
+
+  // Terminates each active ray of packet that hits a shadow-casting surface with 0 <= t below the
+  // t of its record, as hitsShadowCaster(Ray, double, boolean) does for single rays.
+  default void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    for (int i = 0; i < packet.size(); ++i) {
+      if (packet.isActive(i) && hitsShadowCaster(packet.ray(i), packet.record(i).t(), opaqueOnly)) {
+        packet.terminate(i);
+      }
+    }
+  }
 }
@@ -1,144 +1,157 @@
 package raytracer;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 
 // Describes a Ray/Object intersection plus associated state.
+// Only the shape intersection and refractive indices are stored; the shading quantities derived
+// from them are computed on first use, since usually only the hit along a ray is shaded.
 @AutoValue
 public abstract class Intersection {
 
+  // Refraction vector of intersections whose refractive indices were never set.
+  private static final Tuple DEFAULT_REFRACTV = Tuple.vector(0, 0, 1);
+
+  // Ray used by the testing-only factory. Its zero direction makes the derived point and vectors
+  // zero.
+  private static final Ray ZERO_RAY = Ray.create(Tuple.point(0, 0, 0), Tuple.vector(0, 0, 0));
+
   public static Intersection create(MaterialIntersection i) {
-    return create(i.ray(), i.t(), i.normalv(), i.material(), i.shapeId());
+    // Default values for refraction. These are set by Intersections.
+    return new AutoValue_Intersection(
+        i, false, Material.REFRACTIVE_INDEX_VACUUM, Material.REFRACTIVE_INDEX_VACUUM);
   }
 
   // Visible for testing.
   public static Intersection create(
       Ray ray, double t, Tuple normalv, Material material, int shapeId) {
-    Tuple point = ray.position(t);
-    Tuple eyev = ray.direction().times(-1);
-    boolean inside = false;
-    if (normalv.dot(eyev) < 0.0) {
-      inside = true;
-      normalv = normalv.times(-1);
-    }
-    Tuple reflectv = ray.direction().reflect(normalv);
-
-    // Default values for refraction. These are set in copyWithMaterials().
-    double n1 = Material.REFRACTIVE_INDEX_VACUUM;
-    double n2 = Material.REFRACTIVE_INDEX_VACUUM;
-    boolean isTotalInternalReflection = false;
-    Tuple refractv = Tuple.vector(0, 0, 1);
-    double schlickReflectance = 0.0;
-
-    return new AutoValue_Intersection(
-        t,
-        shapeId,
-        point,
-        eyev,
-        normalv,
-        inside,
-        reflectv,
-        material,
-        n1,
-        n2,
-        isTotalInternalReflection,
-        refractv,
-        schlickReflectance);
+    return create(MaterialIntersection.create(ray, t, normalv, material, shapeId));
   }
 
   // For testing only.
   public static Intersection create(double t) {
-    return new AutoValue_Intersection(
-        t,
-        12345,
-        Tuple.point(0, 0, 0),
-        Tuple.vector(0, 0, 0),
-        Tuple.vector(0, 0, 0),
-        false,
-        Tuple.vector(0, 0, 0),
-        Material.create(),
-        Material.REFRACTIVE_INDEX_VACUUM,
-        Material.REFRACTIVE_INDEX_VACUUM,
-        false,
-        Tuple.vector(0, 0, 0),
-        1.0);
-  }
-
-  // Sets n1 and n2 in copy of this Intersection.
-  public Intersection copyWithMaterials(double n1, double n2) {
-    // sinI / sinT = n2 / n1
-    double nRatio = n1 / n2;
-    double cosI = eyev().dot(normalv());
-    double sin2T = nRatio * nRatio * (1.0 - cosI * cosI);
-    boolean isTotalInternalReflection = sin2T > 1.0;
-
-    double cosT = Math.sqrt(1.0 - sin2T);
-    Tuple refractv = normalv().times(nRatio * cosI - cosT).minus(eyev().times(nRatio));
-
-    double schlickReflectance = 0.0;
-    if (isTotalInternalReflection) {
-      schlickReflectance = 1.0;
-    } else {
-      double cosF = cosI;
-      if (n1 > n2) {
-        cosF = cosT;
-      }
-      double r0 = Math.pow((n1 - n2) / (n1 + n2), 2);
-      schlickReflectance = r0 + (1 - r0) * Math.pow(1 - cosF, 5);
-    }
+    return create(ZERO_RAY, t, Tuple.vector(0, 0, 0), Material.create(), 12345);
+  }
 
-    return new AutoValue_Intersection(
-        t(),
-        shapeId(),
-        point(),
-        eyev(),
-        normalv(),
-        inside(),
-        reflectv(),
-        material(),
-        n1,
-        n2,
-        isTotalInternalReflection,
-        refractv,
-        schlickReflectance);
+  // Returns the intersection with the given refractive indices on either side.
+  static Intersection create(MaterialIntersection i, double n1, double n2) {
+    return new AutoValue_Intersection(i, true, n1, n2);
   }
 
+  // The intersection with the shape, whose normal is only computed when this is shaded.
+  abstract MaterialIntersection intersection();
+
   // The ray parameter at which this intersection occurs.
-  public abstract double t();
+  public double t() {
+    return intersection().t();
+  }
 
   // Id for the shape causing this intersection.
   // Used to recognize entry and exit intersections for a single object.
-  public abstract int shapeId();
+  public int shapeId() {
+    return intersection().shapeId();
+  }
+
+  // The material of the object at the intersection.
+  public Material material() {
+    return intersection().material();
+  }
+
+  // The ray that produced this intersection.
+  private Ray ray() {
+    return intersection().ray();
+  }
+
+  // The normal of the surface at the intersection, as given by the shape.
+  private Tuple surfaceNormalv() {
+    return intersection().normalv();
+  }
+
+  // Have n1 and n2 been set. Otherwise the refraction quantities keep their defaults.
+  abstract boolean hasRefractiveIndices();
+
+  // The refractivity index of the material before the intersection.
+  public abstract double n1();
+
+  // The refractivity index of the material after the intersection.
+  public abstract double n2();
 
   // The geometric point of the intersection.
-  public abstract Tuple point();
+  @Memoized
+  public Tuple point() {
+    return ray().position(t());
+  }
 
   // The vector from the eye to the intersection.
-  public abstract Tuple eyev();
-
-  // The normal vector of the surface at the intersection.
-  public abstract Tuple normalv();
+  @Memoized
+  public Tuple eyev() {
+    return ray().direction().times(-1);
+  }
 
   // Does the ray hit the inside of the surface.
-  public abstract boolean inside();
+  @Memoized
+  public boolean inside() {
+    return surfaceNormalv().dot(eyev()) < 0.0;
+  }
+
+  // The normal vector of the surface at the intersection, facing the eye.
+  @Memoized
+  public Tuple normalv() {
+    return inside() ? surfaceNormalv().times(-1) : surfaceNormalv();
+  }
 
   // The ray representing the reflection of the original ray off the surface.
-  public abstract Tuple reflectv();
+  @Memoized
+  public Tuple reflectv() {
+    return ray().direction().reflect(normalv());
+  }
 
-  // The material of the object at the intersection.
-  public abstract Material material();
+  // Snell's law terms shared by the refraction quantities below.
+  // sinI / sinT = n2 / n1
+  private double nRatio() {
+    return n1() / n2();
+  }
 
-  // The refractivity index of the material before the intersection.
-  public abstract double n1();
+  private double cosI() {
+    return eyev().dot(normalv());
+  }
 
-  // The refractivity index of the material after the intersection.
-  public abstract double n2();
+  @Memoized
+  double sin2T() {
+    double nRatio = nRatio();
+    double cosI = cosI();
+    return nRatio * nRatio * (1.0 - cosI * cosI);
+  }
 
   // Is the ray trapped inside the material.
-  public abstract boolean isTotalInternalReflection();
+  public boolean isTotalInternalReflection() {
+    return hasRefractiveIndices() && sin2T() > 1.0;
+  }
 
   // The ray representing the refraction of the original ray off the surface.
-  public abstract Tuple refractv();
+  @Memoized
+  public Tuple refractv() {
+    if (!hasRefractiveIndices()) {
+      return DEFAULT_REFRACTV;
+    }
+    double nRatio = nRatio();
+    double cosT = Math.sqrt(1.0 - sin2T());
+    return normalv().times(nRatio * cosI() - cosT).minus(eyev().times(nRatio));
+  }
 
   // Reflectance calculation.
-  public abstract double schlickReflectance();
+  @Memoized
+  public double schlickReflectance() {
+    if (!hasRefractiveIndices()) {
+      return 0.0;
+    }
+    if (isTotalInternalReflection()) {
+      return 1.0;
+    }
+    double n1 = n1();
+    double n2 = n2();
+    double cosF = n1 > n2 ? Math.sqrt(1.0 - sin2T()) : cosI();
+    double r0 = Math.pow((n1 - n2) / (n1 + n2), 2);
+    return r0 + (1 - r0) * Math.pow(1 - cosF, 5);
+  }
 }
@@ -1,10 +1,9 @@
 package raytracer;
 
-import static java.util.Comparator.comparing;
 import static java.util.Comparator.comparingDouble;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -16,78 +15,136 @@ public class Intersections {
   private List<Intersection> is;
 
   public static Intersections create(Stream<MaterialIntersection> inputIs) {
-    return new Intersections(inputIs.map(i -> Intersection.create(i)));
+    return new Intersections(inputIs.collect(Collectors.toList()));
   }
 
-  private Intersections(Stream<Intersection> inputIs) {
-    Stream<Intersection> sortedIs = inputIs.sorted(comparing(Intersection::t));
-    this.is = propagateRefractiveIndices(sortedIs).collect(Collectors.toList());
+  // Returns the first intersection along the path among the given intersections, with its
+  // refractive indices set, as create(inputIs).hit() would.
+  // Only the intersections before the hit are ordered, and only as far as needed to track which
+  // transparent shapes the ray is inside when it reaches the hit.
+  public static Optional<Intersection> createHit(Stream<MaterialIntersection> inputIs) {
+    List<MaterialIntersection> is = inputIs.collect(Collectors.toList());
+    int hitIndex = -1;
+    for (int i = 0; i < is.size(); ++i) {
+      double t = is.get(i).t();
+      if (t >= 0.0 && (hitIndex < 0 || t < is.get(hitIndex).t())) {
+        hitIndex = i;
+      }
+    }
+    if (hitIndex < 0) {
+      return Optional.empty();
+    }
+    MaterialIntersection hit = is.get(hitIndex);
+    if (hit.material().transparency() == 0.0) {
+      // Opaque hits don't refract.
+      return Optional.of(Intersection.create(hit));
+    }
+    // The intersections ordered before the hit by a stable sort.
+    List<MaterialIntersection> before = new ArrayList<>();
+    for (int i = 0; i < is.size(); ++i) {
+      double t = is.get(i).t();
+      if (t < hit.t() || (t == hit.t() && i < hitIndex)) {
+        before.add(is.get(i));
+      }
+    }
+    before.sort(comparingDouble(MaterialIntersection::t));
+    ProcessIntersections process = new ProcessIntersections();
+    for (MaterialIntersection i : before) {
+      process.propagateRefractiveIndices(i);
+    }
+    return Optional.of(process.propagateRefractiveIndices(hit));
   }
 
-  // Set the refractive indices (n1, n2) of the included intersections now that we know
-  // the ordering of the materials.
-  private static Stream<Intersection> propagateRefractiveIndices(Stream<Intersection> inputIs) {
-    return new ProcessIntersections().propagateRefractiveIndices(inputIs);
+  // Takes ownership of the given list.
+  private Intersections(List<MaterialIntersection> inputIs) {
+    inputIs.sort(comparingDouble(MaterialIntersection::t));
+    ProcessIntersections process = new ProcessIntersections();
+    this.is = new ArrayList<>(inputIs.size());
+    for (MaterialIntersection i : inputIs) {
+      is.add(process.propagateRefractiveIndices(i));
+    }
   }
 
   // Keeps track of the materials of objects as we pass through them so that when
   // we pass out the far end we know which material to exit.
   private static class ProcessIntersections {
-    // Ordered list of intersections along ray.
-    // Each successive intersection either passes into a new shape or
-    // out of an existing shape on the stack. With each transition we
-    // will establish the in and out refractiveIndex in the intersection.
-    LinkedList<Intersection> intersectionStack = new LinkedList<>();
+    // Shapes the ray is inside, in the order it entered them, as parallel arrays of shape ids
+    // and refractive indices. Each successive intersection either passes into a new shape or
+    // out of a shape on the stack. With each transition we will establish the in and out
+    // refractiveIndex in the intersection.
+    // Rays are rarely inside more than a few shapes, so searching the ids beats a set.
+    private int[] shapeIds = new int[4];
+    private double[] refractiveIndices = new double[4];
+    private int size = 0;
+    // Set once an opaque intersection stops the light.
+    private boolean noMoreLight = false;
 
     // Environment material for handling material nesting.
     private static final double ENVIRONMENT_REFRACTIVE_INDEX = Material.REFRACTIVE_INDEX_VACUUM;
 
     public double getLastRefractiveIndex() {
-      if (intersectionStack.isEmpty()) {
+      if (size == 0) {
         return ENVIRONMENT_REFRACTIVE_INDEX;
       } else {
-        return intersectionStack.peekLast().material().refractiveIndex();
+        return refractiveIndices[size - 1];
       }
     }
 
-    // Walk through stream of intersections and set refractive indices based upon
-    // the in/out materials along the ray path. Returns the adjusted intersections.
-    public Stream<Intersection> propagateRefractiveIndices(Stream<Intersection> inputIs) {
-      List<Intersection> is = inputIs.collect(Collectors.toList());
-
-      Stream.Builder<Intersection> materialIs = Stream.builder();
-      boolean noMoreLight = false;
-      for (Intersection i : is) {
-        if (i.material().transparency() == 0.0 || noMoreLight) {
-          // Opaque material stops light. Don't compute any more refractions.
-          noMoreLight = true;
-          materialIs.add(i);
-          continue;
-        }
-        // Have we seen this shapeId before?
-        Optional<Intersection> matchedI =
-            intersectionStack.stream().filter(si -> si.shapeId() == i.shapeId()).findAny();
-        if (matchedI.isPresent()) {
-          // if we already saw this shape, ray is exiting
-          intersectionStack.remove(matchedI.get());
-          double n1 = i.material().refractiveIndex();
-          double n2 = getLastRefractiveIndex();
-          materialIs.add(i.copyWithMaterials(n1, n2));
-        } else {
-          // if shape not already seen, ray is entering
-          double n1 = getLastRefractiveIndex();
-          double n2 = i.material().refractiveIndex();
-          // This shape is now latest in stack.
-          intersectionStack.add(i);
-          materialIs.add(i.copyWithMaterials(n1, n2));
+    // Returns the position of the given shape on the stack, or -1 if the ray is not inside it.
+    private int find(int shapeId) {
+      for (int i = size - 1; i >= 0; --i) {
+        if (shapeIds[i] == shapeId) {
+          return i;
         }
       }
-      return materialIs.build();
+      return -1;
+    }
+
+    private void push(int shapeId, double refractiveIndex) {
+      if (size == shapeIds.length) {
+        shapeIds = Arrays.copyOf(shapeIds, 2 * size);
+        refractiveIndices = Arrays.copyOf(refractiveIndices, 2 * size);
+      }
+      shapeIds[size] = shapeId;
+      refractiveIndices[size] = refractiveIndex;
+      ++size;
+    }
+
+    private void remove(int index) {
+      System.arraycopy(shapeIds, index + 1, shapeIds, index, size - index - 1);
+      System.arraycopy(refractiveIndices, index + 1, refractiveIndices, index, size - index - 1);
+      --size;
+    }
+
+    // Takes the next intersection along the ray path and sets its refractive indices based upon
+    // the in/out materials passed so far. Returns the adjusted intersection.
+    public Intersection propagateRefractiveIndices(MaterialIntersection i) {
+      if (i.material().transparency() == 0.0 || noMoreLight) {
+        // Opaque material stops light. Don't compute any more refractions.
+        noMoreLight = true;
+        return Intersection.create(i);
+      }
+      // Have we seen this shapeId before?
+      int matched = find(i.shapeId());
+      if (matched >= 0) {
+        // if we already saw this shape, ray is exiting
+        remove(matched);
+        double n1 = i.material().refractiveIndex();
+        double n2 = getLastRefractiveIndex();
+        return Intersection.create(i, n1, n2);
+      } else {
+        // if shape not already seen, ray is entering
+        double n1 = getLastRefractiveIndex();
+        double n2 = i.material().refractiveIndex();
+        // This shape is now latest in stack.
+        push(i.shapeId(), n2);
+        return Intersection.create(i, n1, n2);
+      }
     }
   }
 
   public Intersections(Intersection... is) {
-    this(Arrays.stream(is));
+    this(Arrays.stream(is).map(Intersection::intersection).collect(Collectors.toList()));
   }
 
   public boolean isEmpty() {
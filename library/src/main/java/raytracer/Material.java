@@ -60,6 +60,12 @@ public abstract class Material {
   // Does this material block light.
   public abstract boolean castsShadow();
 
+  // Does this material cast a shadow on shadow rays, counting only fully opaque materials if
+  // opaqueOnly is set.
+  public boolean castsShadow(boolean opaqueOnly) {
+    return castsShadow() && (!opaqueOnly || transparency() == 0.0);
+  }
+
   public abstract Builder toBuilder();
 
   @AutoValue.Builder
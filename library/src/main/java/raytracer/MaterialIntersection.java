@@ -1,15 +1,25 @@
 package raytracer;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import java.util.Objects;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 // Describes a Ray/Object intersection with material.
+// The normal is computed on first use, since most intersections along a ray are never shaded.
 @AutoValue
 public abstract class MaterialIntersection {
 
   public static MaterialIntersection create(
       Ray ray, double t, Tuple normalv, Material material, int shapeId) {
-    return new AutoValue_MaterialIntersection(ray, t, normalv, material, shapeId);
+    return createDeferred(ray, t, () -> normalv, material, shapeId);
+  }
+
+  // Creates an intersection whose normal is computed by normal when first needed.
+  public static MaterialIntersection createDeferred(
+      Ray ray, double t, Supplier<Tuple> normal, Material material, int shapeId) {
+    return new AutoValue_MaterialIntersection(ray, t, material, shapeId, normal);
   }
 
   // The ray fired at the geometry.
@@ -18,9 +28,6 @@ public abstract class MaterialIntersection {
   // The t parameter where the ray hit the geometry.
   public abstract double t();
 
-  // The normal at the hit point.
-  public abstract Tuple normalv();
-
   // Material at this hit point.
   @Nullable
   public abstract Material material();
@@ -30,8 +37,39 @@ public abstract class MaterialIntersection {
   // TODO: Use intersection ranges instead to avoid need for this.
   public abstract int shapeId();
 
+  // Computes the normal at the hit point. Not part of equals() and hashCode(), which compare the
+  // normal itself.
+  abstract Supplier<Tuple> normal();
+
+  // The normal at the hit point.
+  @Memoized
+  public Tuple normalv() {
+    return normal().get();
+  }
+
+  @Override
+  public final boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof MaterialIntersection)) {
+      return false;
+    }
+    MaterialIntersection that = (MaterialIntersection) o;
+    return ray().equals(that.ray())
+        && Double.doubleToLongBits(t()) == Double.doubleToLongBits(that.t())
+        && Objects.equals(material(), that.material())
+        && shapeId() == that.shapeId()
+        && normalv().equals(that.normalv());
+  }
+
+  @Override
+  public final int hashCode() {
+    return Objects.hash(ray(), t(), material(), shapeId(), normalv());
+  }
+
   // Sets material in copy of this MaterialIntersection.
   public MaterialIntersection copyWithMaterial(Material material) {
-    return new AutoValue_MaterialIntersection(ray(), t(), normalv(), material, shapeId());
+    return new AutoValue_MaterialIntersection(ray(), t(), material, shapeId(), normal());
   }
 }
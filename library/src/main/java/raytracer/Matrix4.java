@@ -0,0 +1,296 @@
+package raytracer;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+
+// An immutable 4x4 transform matrix, specialized for transforming tuples and rays.
+// Products are unrolled, and the inverse and normal transform are computed once on first use.
+// Use Matrix for general matrix work and for building transforms.
+public final class Matrix4 {
+
+  public static final Matrix4 IDENTITY =
+      new Matrix4(new double[] {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1});
+
+  // Values in row-major order.
+  private final double m00, m01, m02, m03;
+  private final double m10, m11, m12, m13;
+  private final double m20, m21, m22, m23;
+  private final double m30, m31, m32, m33;
+
+  // Cached derived transforms. Racing threads may each compute an identical value, which is safe
+  // to publish since Matrix4 is immutable.
+  private Matrix4 inverse = null;
+  private Matrix4 normalTransform = null;
+
+  // Returns the Matrix4 form of the given 4x4 matrix.
+  public static Matrix4 from(Matrix m) {
+    Preconditions.checkArgument(
+        m.getNumRows() == 4 && m.getNumCols() == 4, "Matrix4 requires a 4x4 matrix");
+    double[] values = new double[16];
+    for (int row = 0; row < 4; ++row) {
+      for (int col = 0; col < 4; ++col) {
+        values[4 * row + col] = m.get(row, col);
+      }
+    }
+    return new Matrix4(values);
+  }
+
+  // values is the complete matrix in row-major order.
+  private Matrix4(double[] values) {
+    m00 = values[0];
+    m01 = values[1];
+    m02 = values[2];
+    m03 = values[3];
+    m10 = values[4];
+    m11 = values[5];
+    m12 = values[6];
+    m13 = values[7];
+    m20 = values[8];
+    m21 = values[9];
+    m22 = values[10];
+    m23 = values[11];
+    m30 = values[12];
+    m31 = values[13];
+    m32 = values[14];
+    m33 = values[15];
+  }
+
+  // Returns the general Matrix form of this matrix.
+  public Matrix toMatrix() {
+    return Matrix.create(4, 4, values());
+  }
+
+  // Returns the values of this matrix in row-major order.
+  private double[] values() {
+    return new double[] {
+      m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33
+    };
+  }
+
+  // Returns the result of multiplying this matrix by the given tuple.
+  public Tuple times(Tuple t) {
+    double x = t.x();
+    double y = t.y();
+    double z = t.z();
+    double w = t.w();
+    return Tuple.create(
+        m00 * x + m01 * y + m02 * z + m03 * w,
+        m10 * x + m11 * y + m12 * z + m13 * w,
+        m20 * x + m21 * y + m22 * z + m23 * w,
+        m30 * x + m31 * y + m32 * z + m33 * w);
+  }
+
+  // Multiplies this matrix by each of the tuples (xs[i], ys[i], zs[i], w), storing the x, y and z
+  // of the results in outXs, outYs and outZs. Gives exactly the values of times(Tuple).
+  void times(
+      double[] xs,
+      double[] ys,
+      double[] zs,
+      double w,
+      double[] outXs,
+      double[] outYs,
+      double[] outZs) {
+    for (int i = 0; i < xs.length; ++i) {
+      double x = xs[i];
+      double y = ys[i];
+      double z = zs[i];
+      outXs[i] = m00 * x + m01 * y + m02 * z + m03 * w;
+      outYs[i] = m10 * x + m11 * y + m12 * z + m13 * w;
+      outZs[i] = m20 * x + m21 * y + m22 * z + m23 * w;
+    }
+  }
+
+  // Returns the result of multiplying this matrix by the given matrix.
+  public Matrix4 times(Matrix4 b) {
+    return new Matrix4(
+        new double[] {
+          m00 * b.m00 + m01 * b.m10 + m02 * b.m20 + m03 * b.m30,
+          m00 * b.m01 + m01 * b.m11 + m02 * b.m21 + m03 * b.m31,
+          m00 * b.m02 + m01 * b.m12 + m02 * b.m22 + m03 * b.m32,
+          m00 * b.m03 + m01 * b.m13 + m02 * b.m23 + m03 * b.m33,
+          m10 * b.m00 + m11 * b.m10 + m12 * b.m20 + m13 * b.m30,
+          m10 * b.m01 + m11 * b.m11 + m12 * b.m21 + m13 * b.m31,
+          m10 * b.m02 + m11 * b.m12 + m12 * b.m22 + m13 * b.m32,
+          m10 * b.m03 + m11 * b.m13 + m12 * b.m23 + m13 * b.m33,
+          m20 * b.m00 + m21 * b.m10 + m22 * b.m20 + m23 * b.m30,
+          m20 * b.m01 + m21 * b.m11 + m22 * b.m21 + m23 * b.m31,
+          m20 * b.m02 + m21 * b.m12 + m22 * b.m22 + m23 * b.m32,
+          m20 * b.m03 + m21 * b.m13 + m22 * b.m23 + m23 * b.m33,
+          m30 * b.m00 + m31 * b.m10 + m32 * b.m20 + m33 * b.m30,
+          m30 * b.m01 + m31 * b.m11 + m32 * b.m21 + m33 * b.m31,
+          m30 * b.m02 + m31 * b.m12 + m32 * b.m22 + m33 * b.m32,
+          m30 * b.m03 + m31 * b.m13 + m32 * b.m23 + m33 * b.m33
+        });
+  }
+
+  // Returns the transpose of this matrix.
+  public Matrix4 transpose() {
+    return new Matrix4(
+        new double[] {
+          m00, m10, m20, m30, m01, m11, m21, m31, m02, m12, m22, m32, m03, m13, m23, m33
+        });
+  }
+
+  // 2x2 determinants of the top two rows, named by the columns they use.
+  private double s01() {
+    return m00 * m11 - m10 * m01;
+  }
+
+  private double s02() {
+    return m00 * m12 - m10 * m02;
+  }
+
+  private double s03() {
+    return m00 * m13 - m10 * m03;
+  }
+
+  private double s12() {
+    return m01 * m12 - m11 * m02;
+  }
+
+  private double s13() {
+    return m01 * m13 - m11 * m03;
+  }
+
+  private double s23() {
+    return m02 * m13 - m12 * m03;
+  }
+
+  // 2x2 determinants of the bottom two rows, named by the columns they use.
+  private double c01() {
+    return m20 * m31 - m30 * m21;
+  }
+
+  private double c02() {
+    return m20 * m32 - m30 * m22;
+  }
+
+  private double c03() {
+    return m20 * m33 - m30 * m23;
+  }
+
+  private double c12() {
+    return m21 * m32 - m31 * m22;
+  }
+
+  private double c13() {
+    return m21 * m33 - m31 * m23;
+  }
+
+  private double c23() {
+    return m22 * m33 - m32 * m23;
+  }
+
+  // Returns the determinant of this matrix.
+  public double determinant() {
+    return s01() * c23()
+        - s02() * c13()
+        + s03() * c12()
+        + s12() * c03()
+        - s13() * c02()
+        + s23() * c01();
+  }
+
+  public boolean isInvertible() {
+    return determinant() != 0.0;
+  }
+
+  // Returns the inverse of this matrix.
+  public Matrix4 inverse() {
+    Matrix4 i = inverse;
+    if (i == null) {
+      i = computeInverse();
+      // Inverting back gives exactly this matrix.
+      i.inverse = this;
+      inverse = i;
+    }
+    return i;
+  }
+
+  // Inverse by Laplace expansion along the 2x2 minors of the top and bottom row pairs.
+  private Matrix4 computeInverse() {
+    double s0 = s01();
+    double s1 = s02();
+    double s2 = s03();
+    double s3 = s12();
+    double s4 = s13();
+    double s5 = s23();
+    double c5 = c23();
+    double c4 = c13();
+    double c3 = c12();
+    double c2 = c03();
+    double c1 = c02();
+    double c0 = c01();
+    double determinant = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    if (determinant == 0.0) {
+      throw new IllegalArgumentException("Can't invert non-invertible matrix");
+    }
+    double[] values =
+        new double[] {
+          (m11 * c5 - m12 * c4 + m13 * c3) / determinant,
+          (-m01 * c5 + m02 * c4 - m03 * c3) / determinant,
+          (m31 * s5 - m32 * s4 + m33 * s3) / determinant,
+          (-m21 * s5 + m22 * s4 - m23 * s3) / determinant,
+          (-m10 * c5 + m12 * c2 - m13 * c1) / determinant,
+          (m00 * c5 - m02 * c2 + m03 * c1) / determinant,
+          (-m30 * s5 + m32 * s2 - m33 * s1) / determinant,
+          (m20 * s5 - m22 * s2 + m23 * s1) / determinant,
+          (m10 * c4 - m11 * c2 + m13 * c0) / determinant,
+          (-m00 * c4 + m01 * c2 - m03 * c0) / determinant,
+          (m30 * s4 - m31 * s2 + m33 * s0) / determinant,
+          (-m20 * s4 + m21 * s2 - m23 * s0) / determinant,
+          (-m10 * c3 + m11 * c1 - m12 * c0) / determinant,
+          (m00 * c3 - m01 * c1 + m02 * c0) / determinant,
+          (-m30 * s3 + m31 * s1 - m32 * s0) / determinant,
+          (m20 * s3 - m21 * s1 + m22 * s0) / determinant
+        };
+    if (m30 == 0 && m31 == 0 && m32 == 0 && m33 == 1) {
+      // The inverse of an affine transform is affine. Keep its last row exact so that the points
+      // and vectors it transforms keep 'w' exactly 1 and 0.
+      values[12] = 0;
+      values[13] = 0;
+      values[14] = 0;
+      values[15] = 1;
+    }
+    return new Matrix4(values);
+  }
+
+  // Returns the transform taking normals at points transformed by this matrix's inverse back
+  // to this matrix's space: the inverse transpose with its 'w' row zeroed, so that results are
+  // always vectors. Results still need normalizing.
+  public Matrix4 normalTransform() {
+    Matrix4 n = normalTransform;
+    if (n == null) {
+      Matrix4 i = inverse();
+      n =
+          new Matrix4(
+              new double[] {
+                i.m00, i.m10, i.m20, i.m30, i.m01, i.m11, i.m21, i.m31, i.m02, i.m12, i.m22, i.m32,
+                0, 0, 0, 0
+              });
+      normalTransform = n;
+    }
+    return n;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof Matrix4)) {
+      return false;
+    }
+    return Arrays.equals(values(), ((Matrix4) obj).values());
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(values());
+  }
+
+  @Override
+  public String toString() {
+    return "Matrix4" + Arrays.toString(values());
+  }
+}
@@ -2,23 +2,31 @@ package raytracer;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Verify;
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.io.ByteStreams;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
@@ -31,9 +39,24 @@ public class ObjFile {
     return new FileParser(reader).parse();
   }
 
+  // Parses the OBJ file held in the given buffer, from its position to its limit.
+  // Produces the same model as parse(Reader) for the same content, but tokenizes bytes directly.
+  public static ObjFile parse(ByteBuffer content) throws ParsingException {
+    return new ByteParser(content).parse();
+  }
+
   // Parses the OBJ file at the given filename.
   public static ObjFile parseFile(String filename) throws IOException, ParsingException {
-    return parse(new FileReader(filename));
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        // Too large to map into a single buffer.
+        try (Reader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+          return parse(reader);
+        }
+      }
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
   }
 
   // Parses the OBJ file at the given resource name.
@@ -43,12 +66,14 @@ public class ObjFile {
     if (inputStream == null) {
       throw new FileNotFoundException("Can't load resource " + resourceFilename);
     }
-    return parse(new InputStreamReader(inputStream));
+    try (InputStream in = inputStream) {
+      return parse(ByteBuffer.wrap(ByteStreams.toByteArray(in)));
+    }
   }
 
   // Parses the OBJ file with the given content.
   public static ObjFile parseContent(String content) throws IOException, ParsingException {
-    return parse(new StringReader(content));
+    return parse(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
   }
 
   // Tracks how many OBJ file commands we didn't understand.
@@ -58,15 +83,37 @@ public class ObjFile {
   // Map of group name to group of triangles.
   private Map<String, TriangleGroup> groups = new HashMap<>();
 
-  // Represents this ObjFile as a Shape.
+  // Represents this ObjFile as a Shape: a single mesh holding the triangles of all groups.
   public Shape asShape() {
-    Group group = Group.create();
-    for (TriangleGroup subgroup : groups.values()) {
-      if (subgroup.getTriangleCount() > 0) {
-        group.add(subgroup.asShape());
+    return asMesh(groups.values());
+  }
+
+  // Returns a mesh of the triangles of the given groups, sharing this file's vertices and normals.
+  private TriangleMesh asMesh(Collection<TriangleGroup> meshGroups) {
+    int triangleCount = meshGroups.stream().mapToInt(TriangleGroup::getTriangleCount).sum();
+    int[] vertexIndices = new int[3 * triangleCount];
+    int[] normalIndices = new int[3 * triangleCount];
+    int corner = 0;
+    for (TriangleGroup group : meshGroups) {
+      for (int i = 0; i < 3 * group.triangleCount; ++i, ++corner) {
+        // Convert from 1-based indices, with 0 for no normal, to 0-based with -1 for no normal.
+        vertexIndices[corner] = group.corners[2 * i] - 1;
+        normalIndices[corner] = group.corners[2 * i + 1] - 1;
       }
     }
-    return group;
+    return TriangleMesh.create(toArray(vertices), vertexIndices, toArray(normals), normalIndices);
+  }
+
+  // Returns the x, y, z coordinates of the given tuples.
+  private static double[] toArray(List<Tuple> tuples) {
+    double[] coordinates = new double[3 * tuples.size()];
+    for (int i = 0; i < tuples.size(); ++i) {
+      Tuple tuple = tuples.get(i);
+      coordinates[3 * i] = tuple.x();
+      coordinates[3 * i + 1] = tuple.y();
+      coordinates[3 * i + 2] = tuple.z();
+    }
+    return coordinates;
   }
 
   /*
@@ -156,29 +203,107 @@ public class ObjFile {
     return normals.get(i - 1);
   }
 
+  // Vertex Normal format is #/#/#
+  private static final Pattern VERTEX_NORMAL_PATTERN = Pattern.compile("(\\d*)/\\d*/(\\d*)");
+
+  // Parses a face corner, either a vertex index or vertex/texture/normal indices.
+  private Corner parseCorner(String term) throws ParsingException {
+    Matcher matcher = VERTEX_NORMAL_PATTERN.matcher(term);
+    if (matcher.matches()) {
+      int vertexIndex = checkVertexIndex(parseInt(matcher.group(1)));
+      int normalIndex = checkNormalIndex(parseInt(matcher.group(2)));
+      return Corner.create(vertexIndex, normalIndex);
+    } else {
+      int vertexIndex = checkVertexIndex(parseInt(term));
+      return Corner.create(vertexIndex, Corner.NO_NORMAL);
+    }
+  }
+
+  // Returns the given 1-based vertex index, throwing IndexOutOfBoundsException if there's no
+  // such vertex.
+  private int checkVertexIndex(int i) {
+    return Preconditions.checkElementIndex(i - 1, vertices.size()) + 1;
+  }
+
+  // Returns the given 1-based normal index, throwing IndexOutOfBoundsException if there's no
+  // such normal.
+  private int checkNormalIndex(int i) {
+    return Preconditions.checkElementIndex(i - 1, normals.size()) + 1;
+  }
+
+  // Helper for parsing a string into an int.
+  private static int parseInt(String term) throws ParsingException {
+    try {
+      return Integer.parseInt(term);
+    } catch (NumberFormatException e) {
+      throw new ParsingException(e);
+    }
+  }
+
+  // Helper for parsing a string into a double.
+  private static double parseDouble(String term) throws ParsingException {
+    try {
+      return Double.parseDouble(term);
+    } catch (NumberFormatException e) {
+      throw new ParsingException(e);
+    }
+  }
+
   // Holds a group of triangles.
+  // Triangles are kept as indices into the file's vertices and normals, and only created as
+  // Triangle objects on request.
   public class TriangleGroup {
-    private List<Triangle> triangles = new ArrayList<>();
+    // Vertex and normal index of each triangle corner, 1-based. A normal index of
+    // Corner.NO_NORMAL marks a corner without a normal.
+    private int[] corners = new int[6 * 16];
+    private int triangleCount = 0;
 
     public Shape asShape() {
-      Group group = Group.create();
-      for (Triangle triangle : triangles) {
-        group.add(triangle.asShape());
-      }
-      return group;
+      return asMesh(ImmutableList.of(this));
     }
 
     public int getTriangleCount() {
-      return triangles.size();
+      return triangleCount;
     }
 
     // Returns 1-based triangle (1,2,3,...)
     public Triangle getTriangle(int i) {
-      return triangles.get(i - 1);
+      Preconditions.checkElementIndex(i - 1, triangleCount);
+      int c = 6 * (i - 1);
+      Tuple p1 = getVertex(corners[c]);
+      Tuple p2 = getVertex(corners[c + 2]);
+      Tuple p3 = getVertex(corners[c + 4]);
+      if (corners[c + 1] == Corner.NO_NORMAL
+          || corners[c + 3] == Corner.NO_NORMAL
+          || corners[c + 5] == Corner.NO_NORMAL) {
+        return Triangle.createRaw(p1, p2, p3);
+      }
+      return Triangle.createRaw(
+          p1,
+          p2,
+          p3,
+          getNormal(corners[c + 1]),
+          getNormal(corners[c + 3]),
+          getNormal(corners[c + 5]));
     }
 
     public Stream<Triangle> triangles() {
-      return triangles.stream();
+      return IntStream.rangeClosed(1, triangleCount).mapToObj(this::getTriangle);
+    }
+
+    // Adds the triangle with the given corners.
+    private void add(Corner p1, Corner p2, Corner p3) {
+      if (corners.length < 6 * (triangleCount + 1)) {
+        corners = Arrays.copyOf(corners, 2 * corners.length);
+      }
+      int c = 6 * triangleCount;
+      corners[c] = p1.vertexIndex();
+      corners[c + 1] = p1.normalIndex();
+      corners[c + 2] = p2.vertexIndex();
+      corners[c + 3] = p2.normalIndex();
+      corners[c + 4] = p3.vertexIndex();
+      corners[c + 5] = p3.normalIndex();
+      ++triangleCount;
     }
   }
 
@@ -204,9 +329,6 @@ public class ObjFile {
     private TriangleGroup currentGroup;
     private List<CommandParser> commandParsers;
 
-    // Vertex Normal format is #/#/#
-    private static final Pattern VERTEX_NORMAL_PATTERN = Pattern.compile("(\\d*)/\\d*/(\\d*)");
-
     public FileParser(Reader rawReader) {
       this.reader = new BufferedReader(rawReader);
       this.objfile = new ObjFile();
@@ -260,24 +382,6 @@ public class ObjFile {
       public boolean handlesToken(String token) {
         return getToken().equals(token);
       }
-
-      // Helper for parsing a string into an int.
-      protected int parseInt(String term) throws ParsingException {
-        try {
-          return Integer.parseInt(term);
-        } catch (NumberFormatException e) {
-          throw new ParsingException(e);
-        }
-      }
-
-      // Helper for parsing a string into a double.
-      protected double parseDouble(String term) throws ParsingException {
-        try {
-          return Double.parseDouble(term);
-        } catch (NumberFormatException e) {
-          throw new ParsingException(e);
-        }
-      }
     }
 
     // Handles empty lines
@@ -381,36 +485,11 @@ public class ObjFile {
           throw new ParsingException(
               "Face command must be of form 'f [i1] [i2] [i3] ...' or 'f 1/2/3 4/5/6 7/8/9 ...'");
         }
-        VertexNormal p1 = parseCorner(terms[1]);
+        Corner p1 = objfile.parseCorner(terms[1]);
         for (int i = 2; i < terms.length - 1; ++i) {
-          VertexNormal p2 = parseCorner(terms[i]);
-          VertexNormal p3 = parseCorner(terms[i + 1]);
-          Triangle triangle = createTriangle(p1, p2, p3);
-          currentGroup.triangles.add(triangle);
-        }
-      }
-
-      private VertexNormal parseCorner(String term) throws ParsingException {
-        Matcher matcher = VERTEX_NORMAL_PATTERN.matcher(term);
-        if (matcher.matches()) {
-          int vertexIndex = parseInt(matcher.group(1));
-          Tuple vertex = objfile.getVertex(vertexIndex);
-          int normalIndex = parseInt(matcher.group(2));
-          Tuple normal = objfile.getNormal(normalIndex);
-          return VertexNormal.create(vertex, normal);
-        } else {
-          int vertexIndex = parseInt(term);
-          Tuple vertex = objfile.getVertex(vertexIndex);
-          return VertexNormal.create(vertex, null);
-        }
-      }
-
-      private Triangle createTriangle(VertexNormal p1, VertexNormal p2, VertexNormal p3) {
-        if (p1.normal() == null || p2.normal() == null || p3.normal() == null) {
-          return Triangle.createRaw(p1.vertex(), p2.vertex(), p3.vertex());
-        } else {
-          return Triangle.createRaw(
-              p1.vertex(), p2.vertex(), p3.vertex(), p1.normal(), p2.normal(), p3.normal());
+          Corner p2 = objfile.parseCorner(terms[i]);
+          Corner p3 = objfile.parseCorner(terms[i + 1]);
+          currentGroup.add(p1, p2, p3);
         }
       }
     }
@@ -433,7 +512,310 @@ public class ObjFile {
     }
   }
 
-  // Used by FaceParser
+  // Parses an OBJ file held in a byte buffer.
+  // Tokens are located directly in the buffer and numbers are parsed without creating strings,
+  // falling back to the String-based parsing of FileParser for any number not in plain decimal
+  // form. The resulting model, including the handling of unusual lines, matches FileParser's.
+  private static class ByteParser {
+    private final ByteBuffer content;
+    // The ObjFile being constructed.
+    private final ObjFile objfile;
+    private TriangleGroup currentGroup;
+
+    // Start (inclusive) and end (exclusive) buffer positions of the tokens of the current line.
+    private int[] tokenStarts = new int[16];
+    private int[] tokenEnds = new int[16];
+    private int tokenCount = 0;
+
+    // Face corners of the current line.
+    private Corner[] corners = new Corner[16];
+
+    public ByteParser(ByteBuffer content) {
+      this.content = content;
+      this.objfile = new ObjFile();
+      this.currentGroup = objfile.ensureGroup(DEFAULT_GROUP_NAME);
+    }
+
+    public ObjFile parse() throws ParsingException {
+      int end = content.limit();
+      int lineStart = content.position();
+      while (lineStart < end) {
+        int lineEnd = lineStart;
+        while (lineEnd < end && !isLineBreak(content.get(lineEnd))) {
+          ++lineEnd;
+        }
+        parseLine(lineStart, lineEnd);
+        lineStart = lineEnd + 1;
+      }
+      return objfile;
+    }
+
+    private static boolean isLineBreak(byte b) {
+      return b == '\n' || b == '\r';
+    }
+
+    // Matches the whitespace of the regex \s.
+    private static boolean isWhitespace(byte b) {
+      return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private void parseLine(int start, int end) throws ParsingException {
+      if (start == end || isWhitespace(content.get(start))) {
+        // Like FileParser, treat lines starting with whitespace as empty.
+        return;
+      }
+      tokenize(start, end);
+      switch (tokenLength(0)) {
+        case 1:
+          switch (content.get(tokenStarts[0])) {
+            case 'v':
+              parseVertex();
+              return;
+            case 'f':
+              parseFace();
+              return;
+            case 'g':
+              parseGroup();
+              return;
+            case '#':
+              // Comment.
+              return;
+            default:
+              break;
+          }
+          break;
+        case 2:
+          if (content.get(tokenStarts[0]) == 'v') {
+            switch (content.get(tokenStarts[0] + 1)) {
+              case 'n':
+                parseVertexNormal();
+                return;
+              case 't':
+                // Vertex textures are ignored.
+                return;
+              default:
+                break;
+            }
+          }
+          break;
+        default:
+          break;
+      }
+      logger.atInfo().log("Ignoring command: %s", joinTokens());
+      ++objfile.ignoredCommandCount;
+    }
+
+    // Splits content[start..end) into whitespace-separated tokens.
+    private void tokenize(int start, int end) {
+      tokenCount = 0;
+      int i = start;
+      while (i < end) {
+        while (i < end && isWhitespace(content.get(i))) {
+          ++i;
+        }
+        if (i == end) {
+          break;
+        }
+        int tokenStart = i;
+        while (i < end && !isWhitespace(content.get(i))) {
+          ++i;
+        }
+        if (tokenCount == tokenStarts.length) {
+          tokenStarts = Arrays.copyOf(tokenStarts, 2 * tokenCount);
+          tokenEnds = Arrays.copyOf(tokenEnds, 2 * tokenCount);
+        }
+        tokenStarts[tokenCount] = tokenStart;
+        tokenEnds[tokenCount] = i;
+        ++tokenCount;
+      }
+    }
+
+    private int tokenLength(int token) {
+      return tokenEnds[token] - tokenStarts[token];
+    }
+
+    private String tokenString(int token) {
+      byte[] bytes = new byte[tokenLength(token)];
+      for (int i = 0; i < bytes.length; ++i) {
+        bytes[i] = content.get(tokenStarts[token] + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String joinTokens() {
+      StringBuilder joined = new StringBuilder();
+      for (int token = 0; token < tokenCount; ++token) {
+        if (token > 0) {
+          joined.append(' ');
+        }
+        joined.append(tokenString(token));
+      }
+      return joined.toString();
+    }
+
+    private void parseVertex() throws ParsingException {
+      if (tokenCount != 4) {
+        throw new ParsingException(
+            String.format("Vertex command must be of form 'v [x] [y] [z] (was %s)", joinTokens()));
+      }
+      objfile.vertices.add(Tuple.point(parseDouble(1), parseDouble(2), parseDouble(3)));
+    }
+
+    private void parseVertexNormal() throws ParsingException {
+      if (tokenCount != 4) {
+        throw new ParsingException("VertexNormal command must be of form 'vn [x] [y] [z]");
+      }
+      objfile.normals.add(Tuple.vector(parseDouble(1), parseDouble(2), parseDouble(3)));
+    }
+
+    private void parseGroup() throws ParsingException {
+      if (tokenCount != 2) {
+        throw new ParsingException("Group command must be of form 'g [groupName]");
+      }
+      currentGroup = objfile.ensureGroup(tokenString(1));
+    }
+
+    private void parseFace() throws ParsingException {
+      if (tokenCount < 4) {
+        throw new ParsingException(
+            "Face command must be of form 'f [i1] [i2] [i3] ...' or 'f 1/2/3 4/5/6 7/8/9 ...'");
+      }
+      int cornerCount = tokenCount - 1;
+      if (cornerCount > corners.length) {
+        corners = new Corner[tokenStarts.length];
+      }
+      for (int corner = 0; corner < cornerCount; ++corner) {
+        corners[corner] = parseCorner(corner + 1);
+      }
+      // Fan the polygon out into triangles from its first corner.
+      for (int corner = 1; corner < cornerCount - 1; ++corner) {
+        currentGroup.add(corners[0], corners[corner], corners[corner + 1]);
+      }
+    }
+
+    // Parses the face corner in the given token.
+    private Corner parseCorner(int token) throws ParsingException {
+      int start = tokenStarts[token];
+      int end = tokenEnds[token];
+      // Fast path for the forms v and v/t/n with unsigned indices; t is ignored.
+      int vertexEnd = skipDigits(start, end);
+      if (vertexEnd == end) {
+        int vertexIndex = parseIndex(start, end);
+        if (vertexIndex >= 0) {
+          return Corner.create(objfile.checkVertexIndex(vertexIndex), Corner.NO_NORMAL);
+        }
+      } else if (vertexEnd > start && content.get(vertexEnd) == '/') {
+        int textureEnd = skipDigits(vertexEnd + 1, end);
+        if (textureEnd < end && content.get(textureEnd) == '/') {
+          int normalStart = textureEnd + 1;
+          int vertexIndex = parseIndex(start, vertexEnd);
+          int normalIndex = normalStart < end ? parseIndex(normalStart, end) : -1;
+          if (skipDigits(normalStart, end) == end && vertexIndex >= 0 && normalIndex >= 0) {
+            return Corner.create(
+                objfile.checkVertexIndex(vertexIndex), objfile.checkNormalIndex(normalIndex));
+          }
+        }
+      }
+      // Anything else, including malformed corners, is handled as FileParser does.
+      return objfile.parseCorner(tokenString(token));
+    }
+
+    // Returns the position of the first non-digit in content[start..end), or end.
+    private int skipDigits(int start, int end) {
+      int i = start;
+      while (i < end && isDigit(content.get(i))) {
+        ++i;
+      }
+      return i;
+    }
+
+    private static boolean isDigit(byte b) {
+      return b >= '0' && b <= '9';
+    }
+
+    // Returns the value of the digits content[start..end), or -1 if they don't fit in an int.
+    private int parseIndex(int start, int end) {
+      if (end - start > 9) {
+        return -1;
+      }
+      int value = 0;
+      for (int i = start; i < end; ++i) {
+        value = value * 10 + (content.get(i) - '0');
+      }
+      return value;
+    }
+
+    // Largest mantissa which, along with its powers of ten up to 1e22, is exactly representable.
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Parses the given token as a double, exactly as Double.parseDouble() would.
+    private double parseDouble(int token) throws ParsingException {
+      int i = tokenStarts[token];
+      int end = tokenEnds[token];
+      boolean negative = false;
+      if (i < end && (content.get(i) == '-' || content.get(i) == '+')) {
+        negative = content.get(i) == '-';
+        ++i;
+      }
+      long mantissa = 0;
+      int significantDigits = 0;
+      int digits = 0;
+      int exponent = 0;
+      for (; i < end && isDigit(content.get(i)); ++i, ++digits) {
+        mantissa = mantissa * 10 + (content.get(i) - '0');
+        if (mantissa != 0) {
+          ++significantDigits;
+        }
+      }
+      if (i < end && content.get(i) == '.') {
+        for (++i; i < end && isDigit(content.get(i)); ++i, ++digits) {
+          mantissa = mantissa * 10 + (content.get(i) - '0');
+          if (mantissa != 0) {
+            ++significantDigits;
+          }
+          --exponent;
+        }
+      }
+      if (i < end && (content.get(i) == 'e' || content.get(i) == 'E')) {
+        ++i;
+        boolean negativeExponent = false;
+        if (i < end && (content.get(i) == '-' || content.get(i) == '+')) {
+          negativeExponent = content.get(i) == '-';
+          ++i;
+        }
+        int exponentStart = i;
+        int explicitExponent = 0;
+        for (; i < end && isDigit(content.get(i)) && i - exponentStart < 4; ++i) {
+          explicitExponent = explicitExponent * 10 + (content.get(i) - '0');
+        }
+        if (i == exponentStart) {
+          // Missing exponent digits; let parseDouble() report the error.
+          i = -1;
+        }
+        exponent += negativeExponent ? -explicitExponent : explicitExponent;
+      }
+      // Clinger's fast path: when the mantissa and the power of ten are both exact doubles, a
+      // single multiply or divide gives the correctly rounded result.
+      if (i == end
+          && digits > 0
+          && significantDigits <= 18
+          && mantissa <= MAX_EXACT_MANTISSA
+          && Math.abs(exponent) < POWERS_OF_TEN.length) {
+        double value =
+            exponent >= 0
+                ? mantissa * POWERS_OF_TEN[exponent]
+                : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+      }
+      return ObjFile.parseDouble(tokenString(token));
+    }
+  }
+
+  // A vertex with its normal, if it has one.
   @AutoValue
   public abstract static class VertexNormal {
     public static VertexNormal create(Tuple vertex, Tuple normal) {
@@ -445,4 +827,21 @@ public class ObjFile {
     @Nullable
     public abstract Tuple normal();
   }
+
+  // A face corner as parsed, before it is stored in its TriangleGroup.
+  @AutoValue
+  abstract static class Corner {
+    // Normal index of a corner without a normal.
+    static final int NO_NORMAL = 0;
+
+    static Corner create(int vertexIndex, int normalIndex) {
+      return new AutoValue_ObjFile_Corner(vertexIndex, normalIndex);
+    }
+
+    // 1-based index of the corner's vertex.
+    abstract int vertexIndex();
+
+    // 1-based index of the corner's normal, or NO_NORMAL.
+    abstract int normalIndex();
+  }
 }
@@ -5,7 +5,7 @@ import java.util.Objects;
 // Describes the colors at a given point in space.
 // Used to describe patterns on shapes.
 public abstract class Pattern {
-  protected Matrix inverseTransform = Matrix.identity();
+  protected Matrix4 inverseTransform = Matrix4.IDENTITY;
 
   // Returns the color at the given point.
   public Color colorAt(Tuple p) {
@@ -56,12 +56,12 @@ public abstract class Pattern {
 
   // Returns the transform applied to this pattern.
   public Matrix transform() {
-    return inverseTransform.invert();
+    return inverseTransform.inverse().toMatrix();
   }
 
   // Sets the pattern to be applied to this pattern.
   public void setTransform(Matrix transform) {
-    this.inverseTransform = transform.invert();
+    this.inverseTransform = Matrix4.from(transform).inverse();
   }
 
   // Helper for fluently building pattern objects.
@@ -29,6 +29,16 @@ public class Plane extends Geometry {
     return DoubleStream.of(-yOrigin / yVelocity);
   }
 
+  @Override
+  public boolean intersectClosest(Ray ray, Material material, HitRecord record) {
+    double yVelocity = ray.direction().y();
+    if (Math.abs(yVelocity) < EPSILON) {
+      // if parallel to plane, doesn't hit.
+      return false;
+    }
+    return offer(ray, -ray.origin().y() / yVelocity, material, record);
+  }
+
   @Override
   public Tuple normalAt(Tuple point) {
     return NORMAL;
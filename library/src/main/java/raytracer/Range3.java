@@ -1,58 +1,73 @@
 package raytracer;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Stream;
 
 // A 3d range of spatial values.
+// Stored as the six bounding coordinates; unbounded axes use infinite endpoints.
 class Range3 {
 
+  private static final Range3 EMPTY = new Range3(true, 0, 0, 0, 0, 0, 0);
+  private static final Range3 UNBOUNDED =
+      new Range3(
+          false,
+          Double.NEGATIVE_INFINITY,
+          Double.POSITIVE_INFINITY,
+          Double.NEGATIVE_INFINITY,
+          Double.POSITIVE_INFINITY,
+          Double.NEGATIVE_INFINITY,
+          Double.POSITIVE_INFINITY);
+
   public static Range3 createEmpty() {
-    return create(null, null, null);
+    return EMPTY;
   }
 
   public static Range3 createUnbounded() {
-    return create(Range.all(), Range.all(), Range.all());
+    return UNBOUNDED;
   }
 
   public static Range3 create(
       double xMin, double xMax, double yMin, double yMax, double zMin, double zMax) {
-    return create(Range.closed(xMin, xMax), Range.closed(yMin, yMax), Range.closed(zMin, zMax));
+    return new Range3(false, xMin, xMax, yMin, yMax, zMin, zMax);
   }
 
+  // Null ranges give an empty Range3. Whether endpoints are open or closed is not kept.
   public static Range3 create(Range<Double> xRange, Range<Double> yRange, Range<Double> zRange) {
-    return new Range3(xRange, yRange, zRange);
+    if (xRange == null || yRange == null || zRange == null) {
+      return EMPTY;
+    }
+    return create(
+        lower(xRange), upper(xRange), lower(yRange), upper(yRange), lower(zRange), upper(zRange));
   }
 
-  private Range<Double> xRange;
-  private Range<Double> yRange;
-  private Range<Double> zRange;
-
-  private Range3(Range<Double> xRange, Range<Double> yRange, Range<Double> zRange) {
-    this.xRange = xRange;
-    this.yRange = yRange;
-    this.zRange = zRange;
+  private static double lower(Range<Double> range) {
+    return range.hasLowerBound() ? range.lowerEndpoint() : Double.NEGATIVE_INFINITY;
   }
 
-  public BoundingBox createBoundingBox() {
-    return new Range3BoundingBox(this);
+  private static double upper(Range<Double> range) {
+    return range.hasUpperBound() ? range.upperEndpoint() : Double.POSITIVE_INFINITY;
   }
 
-  // Returns a cube-oid inverse transform (or null for degenerate range).
-  private Matrix makeCubeTransform() {
-    if (isEmpty() || isUnbounded()) {
-      return null;
-    }
+  private final boolean empty;
+  private final double xMin;
+  private final double xMax;
+  private final double yMin;
+  private final double yMax;
+  private final double zMin;
+  private final double zMax;
+
+  private Range3(
+      boolean empty, double xMin, double xMax, double yMin, double yMax, double zMin, double zMax) {
+    this.empty = empty;
+    this.xMin = xMin;
+    this.xMax = xMax;
+    this.yMin = yMin;
+    this.yMax = yMax;
+    this.zMin = zMin;
+    this.zMax = zMax;
+  }
 
-    double xSize = xRange.upperEndpoint() - xRange.lowerEndpoint();
-    double xMiddle = (xRange.upperEndpoint() + xRange.lowerEndpoint()) / 2;
-    double ySize = yRange.upperEndpoint() - yRange.lowerEndpoint();
-    double yMiddle = (yRange.upperEndpoint() + yRange.lowerEndpoint()) / 2;
-    double zSize = zRange.upperEndpoint() - zRange.lowerEndpoint();
-    double zMiddle = (zRange.upperEndpoint() + zRange.lowerEndpoint()) / 2;
-    return Matrix.scaling(xSize / 2, ySize / 2, zSize / 2).translate(xMiddle, yMiddle, zMiddle);
+  public BoundingBox createBoundingBox() {
+    return new Range3BoundingBox(this);
   }
 
   // Returns the range spanning this Range3 and other.
@@ -62,27 +77,77 @@ class Range3 {
     } else if (other.isEmpty()) {
       return this;
     } else {
-      return new Range3(
-          xRange.span(other.xRange), yRange.span(other.yRange), zRange.span(other.zRange));
+      return create(
+          Math.min(xMin, other.xMin),
+          Math.max(xMax, other.xMax),
+          Math.min(yMin, other.yMin),
+          Math.max(yMax, other.yMax),
+          Math.min(zMin, other.zMin),
+          Math.max(zMax, other.zMax));
     }
   }
 
-  private boolean isEmpty() {
-    return xRange == null;
+  boolean isEmpty() {
+    return empty;
   }
 
-  private boolean isUnbounded() {
+  boolean isUnbounded() {
     boolean fullyBounded =
-        xRange.hasLowerBound()
-            && xRange.hasUpperBound()
-            && xRange.hasLowerBound()
-            && xRange.hasUpperBound()
-            && xRange.hasLowerBound()
-            && xRange.hasUpperBound();
+        xMin > Double.NEGATIVE_INFINITY
+            && xMax < Double.POSITIVE_INFINITY
+            && yMin > Double.NEGATIVE_INFINITY
+            && yMax < Double.POSITIVE_INFINITY
+            && zMin > Double.NEGATIVE_INFINITY
+            && zMax < Double.POSITIVE_INFINITY;
     return !fullyBounded;
   }
 
-  // Returns this range transformed by the given transform.
+  // Returns the lower bound along the given axis (0 = x, 1 = y, 2 = z).
+  // Requires a non-empty range.
+  double min(int axis) {
+    switch (axis) {
+      case 0:
+        return xMin;
+      case 1:
+        return yMin;
+      case 2:
+        return zMin;
+      default:
+        throw new IndexOutOfBoundsException("Axis must be 0, 1 or 2, was " + axis);
+    }
+  }
+
+  // Returns the upper bound along the given axis (0 = x, 1 = y, 2 = z).
+  // Requires a non-empty range.
+  double max(int axis) {
+    switch (axis) {
+      case 0:
+        return xMax;
+      case 1:
+        return yMax;
+      case 2:
+        return zMax;
+      default:
+        throw new IndexOutOfBoundsException("Axis must be 0, 1 or 2, was " + axis);
+    }
+  }
+
+  // Returns the surface area of the box covering this range.
+  // Used to estimate how likely a ray is to hit the box.
+  double surfaceArea() {
+    if (isEmpty()) {
+      return 0;
+    }
+    if (isUnbounded()) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double dx = xMax - xMin;
+    double dy = yMax - yMin;
+    double dz = zMax - zMin;
+    return 2 * (dx * dy + dy * dz + dz * dx);
+  }
+
+  // Returns this range transformed by the given affine transform.
   // VisibleForTesting
   public Range3 transform(Matrix transform) {
     if (isEmpty()) {
@@ -94,35 +159,30 @@ class Range3 {
       return Range3.createUnbounded();
     }
 
-    // Collect the corners of this range.
-    List<Double> xs = ImmutableList.of(xRange.lowerEndpoint(), xRange.upperEndpoint());
-    List<Double> ys = ImmutableList.of(yRange.lowerEndpoint(), yRange.upperEndpoint());
-    List<Double> zs = ImmutableList.of(zRange.lowerEndpoint(), zRange.upperEndpoint());
-
-    // Find range that includes all eight transformed corners of this range.
-    return cartesian(xs, ys, zs, (x, y, z) -> Tuple.point(x, y, z))
-        .map(p -> transform.times(p))
-        .map(p -> toRange(p))
-        .reduce((a, b) -> a.span(b))
-        .get();
-  }
-
-  // Accepts three T's to produce a U.
-  @FunctionalInterface
-  private interface Generator3D<T, U> {
-    U generate(T x, T y, T z);
-  }
-
-  // Returns stream of cartesian combinations of xs, ys, and zs, combined by generator function.
-  private <T, U> Stream<U> cartesian(
-      List<T> xs, List<T> ys, List<T> zs, Generator3D<T, U> generator) {
-    return xs.stream()
-        .flatMap(x -> ys.stream().flatMap(y -> zs.stream().map(z -> generator.generate(x, y, z))));
-  }
-
-  // Returns a point Range3 for the given Point.
-  private static Range3 toRange(Tuple p) {
-    return Range3.create(Range.singleton(p.x()), Range.singleton(p.y()), Range.singleton(p.z()));
+    // Each output coordinate is a sum of one term per input axis plus the translation. The
+    // extremes over the eight corners pick the smaller or larger term for each axis independently
+    // (J. Arvo, "Transforming Axis-Aligned Bounding Boxes", Graphics Gems, 1990).
+    double[] bounds = new double[6];
+    for (int row = 0; row < 3; ++row) {
+      double min = 0;
+      double max = 0;
+      for (int axis = 0; axis < 3; ++axis) {
+        double m = transform.get(row, axis);
+        double a = m * min(axis);
+        double b = m * max(axis);
+        if (a < b) {
+          min += a;
+          max += b;
+        } else {
+          min += b;
+          max += a;
+        }
+      }
+      double translation = transform.get(row, 3);
+      bounds[2 * row] = min + translation;
+      bounds[2 * row + 1] = max + translation;
+    }
+    return create(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
   }
 
   @Override
@@ -137,62 +197,91 @@ class Range3 {
       return false;
     }
     Range3 other = (Range3) obj;
-    return this.xRange.equals(other.xRange)
-        && this.yRange.equals(other.yRange)
-        && this.zRange.equals(other.zRange);
+    if (empty || other.empty) {
+      return empty == other.empty;
+    }
+    return xMin == other.xMin
+        && xMax == other.xMax
+        && yMin == other.yMin
+        && yMax == other.yMax
+        && zMin == other.zMin
+        && zMax == other.zMax;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(xRange, yRange, zRange);
+    if (empty) {
+      return 0;
+    }
+    // Adding zero maps -0.0 to 0.0, which equals() treats as the same value.
+    int hash = 1;
+    hash = 31 * hash + Double.hashCode(xMin + 0.0);
+    hash = 31 * hash + Double.hashCode(xMax + 0.0);
+    hash = 31 * hash + Double.hashCode(yMin + 0.0);
+    hash = 31 * hash + Double.hashCode(yMax + 0.0);
+    hash = 31 * hash + Double.hashCode(zMin + 0.0);
+    hash = 31 * hash + Double.hashCode(zMax + 0.0);
+    return hash;
   }
 
   @Override
   public String toString() {
+    if (empty) {
+      return "Range3(empty)";
+    }
     return new StringBuilder()
         .append("Range3(")
-        .append(xRange)
-        .append(yRange)
-        .append(zRange)
+        .append(axisString(xMin, xMax))
+        .append(axisString(yMin, yMax))
+        .append(axisString(zMin, zMax))
         .append(")")
         .toString();
   }
 
+  private static String axisString(double min, double max) {
+    return "[" + min + ".." + max + "]";
+  }
+
   public Tuple getMinPoint_TESTING() {
     if (isEmpty()) {
       return Tuple.point(0, 0, 0);
     }
-    return Tuple.point(xRange.lowerEndpoint(), yRange.lowerEndpoint(), zRange.lowerEndpoint());
+    return Tuple.point(xMin, yMin, zMin);
   }
 
   public Tuple getMaxPoint_TESTING() {
     if (isEmpty()) {
       return Tuple.point(0, 0, 0);
     }
-    return Tuple.point(xRange.upperEndpoint(), yRange.upperEndpoint(), zRange.upperEndpoint());
+    return Tuple.point(xMax, yMax, zMax);
   }
 
   // Converts an intersectable into a bounding box.
   private static class Range3BoundingBox implements BoundingBox {
-    private Range3 range;
-    private Matrix transform;
-    private Matrix inverseTransform;
+    private final Range3 range;
+    // Null for empty or unbounded ranges.
+    private final AxisAlignedBox box;
 
     public Range3BoundingBox(Range3 range) {
       this.range = range;
-      this.transform = range.makeCubeTransform();
-      this.inverseTransform = (transform == null) ? null : transform.invert();
+      this.box = (range.isEmpty() || range.isUnbounded()) ? null : AxisAlignedBox.create(range);
     }
 
     @Override
     public boolean maybeHits(Ray ray) {
+      return maybeHits(ray, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public boolean maybeHits(Ray ray, double tMin, double tMax) {
       if (range.isEmpty()) {
         return false;
       }
       if (range.isUnbounded()) {
         return true;
       }
-      return new Cube().intersectStream(ray.transform(inverseTransform)).anyMatch(i -> true);
+      return RenderCounters.countBoundingBoxTest(
+          box.intersect(AxisAlignedBox.SlabRay.create(ray), tMin, tMax));
     }
 
     @Override
@@ -32,6 +32,11 @@ public abstract class Ray {
     return create(m.times(origin()), m.times(direction()));
   }
 
+  // Returns this ray transformed by the given matrix.
+  public Ray transform(Matrix4 m) {
+    return create(m.times(origin()), m.times(direction()));
+  }
+
   // Bump ray starting point EPSILON along direction in order to
   // escape intersections just under surface due to precision noise.
   public Ray bumpForward() {
@@ -0,0 +1,176 @@
+package raytracer;
+
+import com.google.common.base.Preconditions;
+
+// A bundle of coherent rays, such as camera rays through neighbouring pixels or shadow rays
+// towards one light, that are traced together. Origins and directions are kept as arrays of
+// primitive coordinates so that transforms and bounding box tests run over the whole packet.
+//
+// Each ray has a HitRecord receiving its closest hit, whose t also limits the hits searched for.
+// Transformed forms and subsets of a packet share its records. Rays are left out of a query while
+// inactive in the packet form at hand, or once terminated, e.g. a shadow ray found to be blocked.
+public final class RayPacket {
+
+  private final int size;
+  final double[] originX;
+  final double[] originY;
+  final double[] originZ;
+  final double[] directionX;
+  final double[] directionY;
+  final double[] directionZ;
+  final double[] inverseDirectionX;
+  final double[] inverseDirectionY;
+  final double[] inverseDirectionZ;
+  private final HitRecord[] records;
+  // Rays taking part in queries on this form of the packet. Null when all rays take part.
+  private final boolean[] active;
+  // Rays that are finished, in every form of the packet.
+  private final boolean[] terminated;
+
+  // Creates a packet of the given rays, accepting hits at any t >= 0.
+  public static RayPacket create(Ray[] rays) {
+    HitRecord[] records = new HitRecord[rays.length];
+    for (int i = 0; i < rays.length; ++i) {
+      records[i] = new HitRecord();
+    }
+    return create(rays, records);
+  }
+
+  // Creates a packet of the given rays, whose hits are recorded in the corresponding records.
+  public static RayPacket create(Ray[] rays, HitRecord[] records) {
+    Preconditions.checkArgument(
+        rays.length == records.length, "Expected one record per ray, got %s", records.length);
+    int size = rays.length;
+    double[][] coordinates = new double[6][size];
+    for (int i = 0; i < size; ++i) {
+      Tuple origin = rays[i].origin();
+      Tuple direction = rays[i].direction();
+      coordinates[0][i] = origin.x();
+      coordinates[1][i] = origin.y();
+      coordinates[2][i] = origin.z();
+      coordinates[3][i] = direction.x();
+      coordinates[4][i] = direction.y();
+      coordinates[5][i] = direction.z();
+    }
+    return new RayPacket(
+        coordinates[0],
+        coordinates[1],
+        coordinates[2],
+        coordinates[3],
+        coordinates[4],
+        coordinates[5],
+        records.clone(),
+        null,
+        new boolean[size]);
+  }
+
+  private RayPacket(
+      double[] originX,
+      double[] originY,
+      double[] originZ,
+      double[] directionX,
+      double[] directionY,
+      double[] directionZ,
+      HitRecord[] records,
+      boolean[] active,
+      boolean[] terminated) {
+    this.size = records.length;
+    this.originX = originX;
+    this.originY = originY;
+    this.originZ = originZ;
+    this.directionX = directionX;
+    this.directionY = directionY;
+    this.directionZ = directionZ;
+    this.inverseDirectionX = inverse(directionX);
+    this.inverseDirectionY = inverse(directionY);
+    this.inverseDirectionZ = inverse(directionZ);
+    this.records = records;
+    this.active = active;
+    this.terminated = terminated;
+  }
+
+  // Returns a form of this packet sharing its rays and inverse directions, with the given
+  // active rays.
+  private RayPacket(RayPacket packet, boolean[] active) {
+    this.size = packet.size;
+    this.originX = packet.originX;
+    this.originY = packet.originY;
+    this.originZ = packet.originZ;
+    this.directionX = packet.directionX;
+    this.directionY = packet.directionY;
+    this.directionZ = packet.directionZ;
+    this.inverseDirectionX = packet.inverseDirectionX;
+    this.inverseDirectionY = packet.inverseDirectionY;
+    this.inverseDirectionZ = packet.inverseDirectionZ;
+    this.records = packet.records;
+    this.active = active;
+    this.terminated = packet.terminated;
+  }
+
+  private static double[] inverse(double[] values) {
+    double[] inverse = new double[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      inverse[i] = 1 / values[i];
+    }
+    return inverse;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Returns the i'th ray of this packet.
+  public Ray ray(int i) {
+    return Ray.create(
+        Tuple.point(originX[i], originY[i], originZ[i]),
+        Tuple.vector(directionX[i], directionY[i], directionZ[i]));
+  }
+
+  // Returns the record of the i'th ray's closest hit.
+  public HitRecord record(int i) {
+    return records[i];
+  }
+
+  // Does the i'th ray take part in queries on this packet.
+  public boolean isActive(int i) {
+    return (active == null || active[i]) && !terminated[i];
+  }
+
+  public boolean isTerminated(int i) {
+    return terminated[i];
+  }
+
+  // Leaves the i'th ray out of all further queries on any form of this packet.
+  public void terminate(int i) {
+    terminated[i] = true;
+  }
+
+  // Returns this packet with only the rays set in active taking part in queries.
+  // The returned packet reads active as it is when queried.
+  RayPacket withActive(boolean[] active) {
+    return new RayPacket(this, active);
+  }
+
+  // Returns this packet transformed by the given matrix, with the same records and active rays.
+  // Each ray is transformed exactly as Ray.transform() does.
+  RayPacket transform(Matrix4 m) {
+    double[] newOriginX = new double[size];
+    double[] newOriginY = new double[size];
+    double[] newOriginZ = new double[size];
+    double[] newDirectionX = new double[size];
+    double[] newDirectionY = new double[size];
+    double[] newDirectionZ = new double[size];
+    m.times(originX, originY, originZ, 1, newOriginX, newOriginY, newOriginZ);
+    m.times(directionX, directionY, directionZ, 0, newDirectionX, newDirectionY, newDirectionZ);
+    return new RayPacket(
+        newOriginX,
+        newOriginY,
+        newOriginZ,
+        newDirectionX,
+        newDirectionY,
+        newDirectionZ,
+        records,
+        active,
+        terminated);
+  }
+}
@@ -0,0 +1,101 @@
+package raytracer;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Counts the work done by a single render thread, for RenderStatistics.
+// Counting is switched on by the system property raytracer.statistics=true. Otherwise every
+// count*() method is an empty call that the JIT compiles away, so rendering costs nothing more.
+// A thread counts into the counters it was given by setCurrent(), and nothing without any.
+final class RenderCounters {
+
+  static final boolean ENABLED = Boolean.getBoolean("raytracer.statistics");
+
+  private static final ThreadLocal<RenderCounters> current = new ThreadLocal<>();
+
+  long primaryRays = 0;
+  long shadowRays = 0;
+  long reflectionRays = 0;
+  long refractionRays = 0;
+  long boundingBoxHits = 0;
+  long boundingBoxMisses = 0;
+  // Ray-primitive intersection tests by geometry type, counted in the single array element.
+  final Map<Class<?>, long[]> intersectionTests = new IdentityHashMap<>();
+  // Ray-primitive intersection tests of all types.
+  long intersectionTestTotal = 0;
+  // Nanoseconds spent rendering each tile, in all passes.
+  final Map<Tile, Long> tileNanos = new LinkedHashMap<>();
+
+  // Sets the counters the calling thread counts into, or null to stop counting.
+  static void setCurrent(RenderCounters counters) {
+    current.set(counters);
+  }
+
+  static void countPrimaryRays(int count) {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        c.primaryRays += count;
+      }
+    }
+  }
+
+  static void countShadowRays(int count) {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        c.shadowRays += count;
+      }
+    }
+  }
+
+  static void countReflectionRay() {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        ++c.reflectionRays;
+      }
+    }
+  }
+
+  static void countRefractionRay() {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        ++c.refractionRays;
+      }
+    }
+  }
+
+  // Counts a ray tested against a bounding box, and returns whether it passed.
+  static boolean countBoundingBoxTest(boolean hit) {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        if (hit) {
+          ++c.boundingBoxHits;
+        } else {
+          ++c.boundingBoxMisses;
+        }
+      }
+    }
+    return hit;
+  }
+
+  // Counts a ray tested against a primitive of the given type.
+  static void countIntersectionTest(Class<?> type) {
+    if (ENABLED) {
+      RenderCounters c = current.get();
+      if (c != null) {
+        ++c.intersectionTests.computeIfAbsent(type, t -> new long[1])[0];
+        ++c.intersectionTestTotal;
+      }
+    }
+  }
+
+  // Records time spent rendering a tile.
+  void addTileNanos(Tile tile, long nanos) {
+    tileNanos.merge(tile, nanos, Long::sum);
+  }
+}
@@ -0,0 +1,77 @@
+package raytracer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// A render running in the background, as started by Camera.startRender().
+// The result is that of Camera.renderWithReport(), or the image so far if the render runs out of
+// time. Cancelling stops the render once the tiles being rendered are done, and get() then throws
+// CancellationException.
+public class RenderJob implements Future<RenderResult> {
+
+  private final TileRenderer renderer;
+  private final CompletableFuture<RenderResult> result = new CompletableFuture<>();
+
+  // Starts rendering the given frozen world on a new thread.
+  static RenderJob start(Camera camera, World world, RenderOptions options) {
+    RenderJob job = new RenderJob(new TileRenderer(camera, world, options));
+    Thread thread = new Thread(job::run, "render-job");
+    thread.setDaemon(true);
+    thread.start();
+    return job;
+  }
+
+  private RenderJob(TileRenderer renderer) {
+    this.renderer = renderer;
+  }
+
+  private void run() {
+    try {
+      result.complete(renderer.render());
+    } catch (RuntimeException | Error e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  // Returns the number of tiles to render, counting antialiased tiles twice.
+  public int tileCount() {
+    return renderer.tileCount();
+  }
+
+  // Returns the number of tiles rendered so far. Tiles skipped once the render is stopped aren't
+  // counted.
+  public int completedTileCount() {
+    return renderer.completedTileCount();
+  }
+
+  // Stops the render. Tiles are never interrupted, so mayInterruptIfRunning is ignored.
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    renderer.cancel();
+    return result.cancel(false);
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return result.isCancelled();
+  }
+
+  @Override
+  public boolean isDone() {
+    return result.isDone();
+  }
+
+  @Override
+  public RenderResult get() throws InterruptedException, ExecutionException {
+    return result.get();
+  }
+
+  @Override
+  public RenderResult get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return result.get(timeout, unit);
+  }
+}
@@ -0,0 +1,139 @@
+package raytracer;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import java.time.Duration;
+import java.util.Optional;
+
+// Describes how a Camera should render a World.
+@AutoValue
+public abstract class RenderOptions {
+
+  private static final int DEFAULT_TILE_SIZE = 32;
+  static final int DEFAULT_MAX_BOUNCES = 4;
+  private static final double DEFAULT_ANTIALIASING_CONTRAST = 0.1;
+  private static final int DEFAULT_PROGRESSIVE_BLOCK_SIZE = 8;
+
+  public static RenderOptions create() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_RenderOptions.Builder()
+        .setThreadCount(Runtime.getRuntime().availableProcessors())
+        .setTileSize(DEFAULT_TILE_SIZE)
+        .setPacketSize(0)
+        .setMaxBounces(DEFAULT_MAX_BOUNCES)
+        .setMinContribution(0)
+        .setRussianRoulette(false)
+        .setAntialiasingDepth(0)
+        .setAntialiasingContrast(DEFAULT_ANTIALIASING_CONTRAST)
+        .setProgressiveBlockSize(DEFAULT_PROGRESSIVE_BLOCK_SIZE)
+        .setTraversalOrder(TraversalOrder.ROW_MAJOR);
+  }
+
+  // The number of threads rendering tiles concurrently.
+  public abstract int threadCount();
+
+  // The width and height in pixels of each rendered tile.
+  public abstract int tileSize();
+
+  // The width and height in pixels of the packets of camera rays traced together within a tile.
+  // 0 traces each camera ray on its own.
+  public abstract int packetSize();
+
+  // The maximum number of successive reflections and refractions traced from each camera ray.
+  public abstract int maxBounces();
+
+  // The smallest weight in a pixel's color, through reflectivity, transparency and Fresnel
+  // reflectance, of a reflected or refracted ray that is traced. 0 traces all rays that
+  // contribute at all. Half an 8-bit color step, 1/512, leaves images practically unchanged.
+  public abstract double minContribution();
+
+  // Whether rays below minContribution are traced at random rather than dropped, with a
+  // probability of their weight over minContribution and a weight of minContribution.
+  // This avoids the darkening of dropping them, at the cost of noise.
+  public abstract boolean russianRoulette();
+
+  // How many times pixels on edges are split into 2x2 subpixels sampled separately. Edges are
+  // where neighboring samples hit different shapes or differ in color by more than
+  // antialiasingContrast. 0 traces a single ray per pixel.
+  public abstract int antialiasingDepth();
+
+  // The largest difference in any color channel, within [0, 1], between neighboring samples on
+  // the same shape that is not antialiased.
+  public abstract double antialiasingContrast();
+
+  // The width and height in pixels of the blocks filled by each ray of the first pass of a
+  // progressive render. Each later pass halves it, down to single pixels. A power of 2.
+  public abstract int progressiveBlockSize();
+
+  // How long the render may take, if limited. Once the time is up no more tiles are started, and
+  // the render returns with the image so far. See RenderResult.coverage().
+  public abstract Optional<Duration> timeLimit();
+
+  // What to measure the cost of each pixel in, if anything, for RenderResult.costMap().
+  public abstract Optional<CostMap.Metric> costMetric();
+
+  // The order in which tiles are handed out to threads and pixels are traced within each tile,
+  // and packets within each tile if packetSize() is positive. It doesn't change the image.
+  public abstract TraversalOrder traversalOrder();
+
+  public abstract Builder toBuilder();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setThreadCount(int threadCount);
+
+    public abstract Builder setTileSize(int tileSize);
+
+    public abstract Builder setPacketSize(int packetSize);
+
+    public abstract Builder setMaxBounces(int maxBounces);
+
+    public abstract Builder setMinContribution(double minContribution);
+
+    public abstract Builder setRussianRoulette(boolean russianRoulette);
+
+    public abstract Builder setAntialiasingDepth(int antialiasingDepth);
+
+    public abstract Builder setAntialiasingContrast(double antialiasingContrast);
+
+    public abstract Builder setProgressiveBlockSize(int progressiveBlockSize);
+
+    public abstract Builder setTimeLimit(Duration timeLimit);
+
+    public abstract Builder setCostMetric(CostMap.Metric costMetric);
+
+    public abstract Builder setTraversalOrder(TraversalOrder traversalOrder);
+
+    abstract RenderOptions autoBuild();
+
+    public RenderOptions build() {
+      RenderOptions options = autoBuild();
+      Preconditions.checkState(options.threadCount() > 0, "Thread count must be positive");
+      Preconditions.checkState(options.tileSize() > 0, "Tile size must be positive");
+      Preconditions.checkState(options.packetSize() >= 0, "Packet size must not be negative");
+      Preconditions.checkState(options.maxBounces() >= 0, "Max bounces must not be negative");
+      Preconditions.checkState(
+          options.minContribution() >= 0 && options.minContribution() <= 1,
+          "Min contribution must be within [0, 1]");
+      Preconditions.checkState(
+          options.antialiasingDepth() >= 0, "Antialiasing depth must not be negative");
+      Preconditions.checkState(
+          options.antialiasingContrast() >= 0, "Antialiasing contrast must not be negative");
+      Preconditions.checkState(
+          options.progressiveBlockSize() > 0
+              && Integer.bitCount(options.progressiveBlockSize()) == 1,
+          "Progressive block size must be a power of 2");
+      Preconditions.checkState(
+          !options.timeLimit().isPresent() || !options.timeLimit().get().isNegative(),
+          "Time limit must not be negative");
+      Preconditions.checkState(
+          RenderCounters.ENABLED
+              || !options.costMetric().equals(Optional.of(CostMap.Metric.INTERSECTION_TESTS)),
+          "Intersection test costs require raytracer.statistics=true");
+      return options;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package raytracer;
+
+import com.google.auto.value.AutoValue;
+import java.util.Optional;
+
+// A rendered image, with a report of what it took to render it.
+@AutoValue
+public abstract class RenderResult {
+
+  static RenderResult create(
+      Canvas canvas,
+      CoverageMask coverage,
+      long sampleCount,
+      int supersampledPixelCount,
+      Optional<RenderStatistics> statistics,
+      Optional<CostMap> costMap) {
+    return new AutoValue_RenderResult(
+        canvas, coverage, sampleCount, supersampledPixelCount, statistics, costMap);
+  }
+
+  public abstract Canvas canvas();
+
+  // Which pixels of the canvas were rendered. All of them unless the render was stopped early.
+  public abstract CoverageMask coverage();
+
+  public boolean isComplete() {
+    return coverage().isComplete();
+  }
+
+  // The number of camera rays traced, including the extra samples of antialiased pixels.
+  public abstract long sampleCount();
+
+  // The number of pixels whose color was refined with extra samples.
+  public abstract int supersampledPixelCount();
+
+  // Counts of the rays and tests traced, if statistics were collected. See RenderStatistics.
+  public abstract Optional<RenderStatistics> statistics();
+
+  // The cost of each pixel, if measured. See RenderOptions.costMetric().
+  public abstract Optional<CostMap> costMap();
+}
@@ -0,0 +1,83 @@
+package raytracer;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Counts of the rays and tests traced to render an image, and where the time went.
+// Collected only when the system property raytracer.statistics is true.
+@AutoValue
+public abstract class RenderStatistics {
+
+  // Returns the totals of the counters of all threads of a render.
+  static RenderStatistics merge(Iterable<RenderCounters> counters) {
+    long primaryRays = 0;
+    long shadowRays = 0;
+    long reflectionRays = 0;
+    long refractionRays = 0;
+    long boundingBoxHits = 0;
+    long boundingBoxMisses = 0;
+    Map<String, Long> intersectionTests = new TreeMap<>();
+    Map<Tile, Long> tileNanos = new LinkedHashMap<>();
+    for (RenderCounters c : counters) {
+      primaryRays += c.primaryRays;
+      shadowRays += c.shadowRays;
+      reflectionRays += c.reflectionRays;
+      refractionRays += c.refractionRays;
+      boundingBoxHits += c.boundingBoxHits;
+      boundingBoxMisses += c.boundingBoxMisses;
+      c.intersectionTests.forEach(
+          (type, count) -> intersectionTests.merge(typeName(type), count[0], Long::sum));
+      c.tileNanos.forEach((tile, nanos) -> tileNanos.merge(tile, nanos, Long::sum));
+    }
+    return new AutoValue_RenderStatistics(
+        primaryRays,
+        shadowRays,
+        reflectionRays,
+        refractionRays,
+        boundingBoxHits,
+        boundingBoxMisses,
+        ImmutableSortedMap.copyOf(intersectionTests),
+        ImmutableMap.copyOf(tileNanos));
+  }
+
+  // Returns the name of a primitive type as written in the source, without any AutoValue prefix.
+  private static String typeName(Class<?> type) {
+    return type.getSimpleName().replaceFirst("^AutoValue_", "");
+  }
+
+  // The number of rays traced from the camera, including antialiasing samples.
+  public abstract long primaryRays();
+
+  // The number of rays traced from lights towards shaded points.
+  public abstract long shadowRays();
+
+  public abstract long reflectionRays();
+
+  public abstract long refractionRays();
+
+  // The number of rays tested against the bounding box of a shape or group that passed, and so
+  // were tested against its contents.
+  public abstract long boundingBoxHits();
+
+  // The number of rays tested against the bounding box of a shape or group that missed it.
+  public abstract long boundingBoxMisses();
+
+  // The number of ray-primitive intersection tests, by primitive type such as "Sphere".
+  // Triangles of a TriangleMesh are counted as "TriangleMesh".
+  public abstract ImmutableSortedMap<String, Long> intersectionTests();
+
+  // The time in nanoseconds spent rendering each tile, summed over all threads and passes.
+  public abstract ImmutableMap<Tile, Long> tileNanos();
+
+  public long boundingBoxTests() {
+    return boundingBoxHits() + boundingBoxMisses();
+  }
+
+  public long totalIntersectionTests() {
+    return intersectionTests().values().stream().mapToLong(Long::longValue).sum();
+  }
+}
@@ -9,4 +9,14 @@ public interface Shape extends Intersectable {
   public Material material();
 
   public void setMaterial(Material m);
+
+  // Returns true if any surface of this shape has a transparent material.
+  public default boolean hasTransparency() {
+    return material().transparency() > 0;
+  }
+
+  // Returns an immutable copy of this shape, with all its cached bounding boxes and hierarchies
+  // computed, which any number of threads may intersect at once. Setters of the copy and of the
+  // shapes it contains throw IllegalStateException.
+  public Shape freeze();
 }
@@ -0,0 +1,18 @@
+package raytracer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out the ids that couple the intersections of a single shape, so that a ray entering a
+// transparent shape can be matched with where it leaves.
+// Ids are consecutive integers, unique within the process.
+final class ShapeIds {
+
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  private ShapeIds() {}
+
+  // Returns an id not given to any other shape.
+  static int next() {
+    return nextId.getAndIncrement();
+  }
+}
@@ -43,6 +43,26 @@ public class Sphere extends Geometry {
     return DoubleStream.of(t1, t2);
   }
 
+  @Override
+  public boolean intersectClosest(Ray ray, Material material, HitRecord record) {
+    Tuple sphereToRay = ray.origin().minus(CENTER);
+    double a = ray.direction().dot(ray.direction());
+    double b = 2.0 * ray.direction().dot(sphereToRay);
+    double c = sphereToRay.dot(sphereToRay) - 1.0;
+    double discriminant = b * b - 4.0 * a * c;
+
+    if (discriminant < 0.0) {
+      // Ray misses sphere.
+      return false;
+    }
+    double t1 = (-b - Math.sqrt(discriminant)) / (2.0 * a);
+    if (record.accepts(t1)) {
+      return offer(ray, t1, material, record);
+    }
+    double t2 = (-b + Math.sqrt(discriminant)) / (2.0 * a);
+    return offer(ray, t2, material, record);
+  }
+
   @Override
   public Tuple normalAt(Tuple point) {
     return point.minus(CENTER);
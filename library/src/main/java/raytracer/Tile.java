@@ -0,0 +1,84 @@
+package raytracer;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+// A rectangular region of pixels within a Canvas.
+@AutoValue
+public abstract class Tile {
+
+  public static Tile create(int x, int y, int width, int height) {
+    return new AutoValue_Tile(x, y, width, height);
+  }
+
+  // Splits a canvas of the given size into tiles no larger than tileSize on a side.
+  // Tiles are returned in row-major order.
+  public static List<Tile> split(int canvasWidth, int canvasHeight, int tileSize) {
+    ImmutableList.Builder<Tile> tiles = ImmutableList.builder();
+    for (int y = 0; y < canvasHeight; y += tileSize) {
+      for (int x = 0; x < canvasWidth; x += tileSize) {
+        int width = Math.min(tileSize, canvasWidth - x);
+        int height = Math.min(tileSize, canvasHeight - y);
+        tiles.add(create(x, y, width, height));
+      }
+    }
+    return tiles.build();
+  }
+
+  // Splits a canvas of the given size into tiles as split() does, returning them in the given
+  // order.
+  public static List<Tile> split(
+      int canvasWidth, int canvasHeight, int tileSize, TraversalOrder order) {
+    List<Tile> tiles = split(canvasWidth, canvasHeight, tileSize);
+    if (order == TraversalOrder.ROW_MAJOR) {
+      return tiles;
+    }
+    int columns = (canvasWidth + tileSize - 1) / tileSize;
+    int rows = (canvasHeight + tileSize - 1) / tileSize;
+    ImmutableList.Builder<Tile> ordered = ImmutableList.builder();
+    for (int i : order.order(columns, rows)) {
+      ordered.add(tiles.get(i));
+    }
+    return ordered.build();
+  }
+
+  // Left-most pixel column of this tile.
+  public abstract int x();
+
+  // Top-most pixel row of this tile.
+  public abstract int y();
+
+  public abstract int width();
+
+  public abstract int height();
+
+  public int pixelCount() {
+    return width() * height();
+  }
+
+  @FunctionalInterface
+  public interface PixelConsumer {
+    void accept(int x, int y);
+  }
+
+  // Calls callback for each pixel (x,y) in this tile, in row-major order.
+  public void forEachPixel(PixelConsumer callback) {
+    for (int y = y(); y < y() + height(); ++y) {
+      for (int x = x(); x < x() + width(); ++x) {
+        callback.accept(x, y);
+      }
+    }
+  }
+
+  // Calls callback for each pixel (x,y) in this tile, in the given order.
+  public void forEachPixel(TraversalOrder order, PixelConsumer callback) {
+    if (order == TraversalOrder.ROW_MAJOR) {
+      forEachPixel(callback);
+      return;
+    }
+    for (int i : order.order(width(), height())) {
+      callback.accept(x() + i % width(), y() + i / width());
+    }
+  }
+}
@@ -0,0 +1,442 @@
+package raytracer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Renders a Camera view of a World tile by tile on a work-stealing thread pool.
+// Every pixel is computed exactly as World.colorAt(Ray, RenderOptions) computes it, so the output
+// doesn't depend on thread count, tile size, packet size or traversal order. With the default ray
+// tree options it is identical to the sequential render of Camera.render(World).
+// With antialiasing, edge pixels found in the first pass are then refined with extra samples.
+// Progressive renders trace the same rays in passes of decreasing block size, so their final
+// image is the same too.
+// When RenderCounters are enabled, each thread counts into its own counters, timing each tile,
+// and the counters are merged into RenderStatistics once all tiles are done.
+// Pixel costs, if measured, are taken as the change in the time or in the thread's count of
+// intersection tests while tracing a pixel's rays.
+class TileRenderer {
+
+  // Shape id recorded for camera rays that hit nothing.
+  private static final int NO_SHAPE = -1;
+
+  private final Camera camera;
+  private final World world;
+  private final RenderOptions options;
+  // Null if pixel costs aren't measured.
+  private final CostMap costMap;
+  // Long.MAX_VALUE without a time limit.
+  private final long timeLimitNanos;
+  // When render() started, by System.nanoTime().
+  private long startNanos;
+  private volatile boolean cancelled = false;
+  private final AtomicInteger completedTiles = new AtomicInteger();
+  // Camera rays traced, including antialiasing samples.
+  private final LongAdder sampleCount = new LongAdder();
+  // Edge pixels refined by the antialiasing pass so far.
+  private final AtomicInteger supersampledPixelCount = new AtomicInteger();
+  // The counters of every thread that rendered tiles. Guarded by itself.
+  private final List<RenderCounters> threadCounters = new ArrayList<>();
+  private final ThreadLocal<RenderCounters> counters =
+      ThreadLocal.withInitial(
+          () -> {
+            RenderCounters c = new RenderCounters();
+            synchronized (threadCounters) {
+              threadCounters.add(c);
+            }
+            return c;
+          });
+
+  TileRenderer(Camera camera, World world, RenderOptions options) {
+    this.camera = camera;
+    this.world = world;
+    this.options = options;
+    this.costMap =
+        options
+            .costMetric()
+            .map(metric -> new CostMap(metric, camera.hPixels(), camera.vPixels()))
+            .orElse(null);
+    this.timeLimitNanos = options.timeLimit().map(Duration::toNanos).orElse(Long.MAX_VALUE);
+  }
+
+  public RenderResult render() {
+    return render(null);
+  }
+
+  // Renders the canvas in passes, as described by Camera.renderProgressively().
+  public RenderResult renderProgressively(Camera.PassListener listener) {
+    return render(listener);
+  }
+
+  // Stops the render. Tiles already being rendered are finished, and no more are started.
+  public void cancel() {
+    cancelled = true;
+  }
+
+  // Returns the number of tiles render() renders, counting antialiased tiles twice.
+  public int tileCount() {
+    int tileCount = Tile.split(camera.hPixels(), camera.vPixels(), options.tileSize()).size();
+    return options.antialiasingDepth() > 0 ? 2 * tileCount : tileCount;
+  }
+
+  // Returns the number of tiles rendered so far, in all passes.
+  public int completedTileCount() {
+    return completedTiles.get();
+  }
+
+  // Renders the canvas, in passes reported to listener if it is not null.
+  private RenderResult render(Camera.PassListener listener) {
+    startNanos = System.nanoTime();
+    Canvas canvas = new Canvas(camera.hPixels(), camera.vPixels());
+    boolean antialiasing = options.antialiasingDepth() > 0;
+    CoverageMask coverage = new CoverageMask(canvas.width(), canvas.height(), antialiasing);
+    // In traversal order, so that each half of a range of tiles split by RenderTilesTask is a
+    // compact region, and a thread works through nearby tiles until it steals.
+    List<Tile> tiles =
+        Tile.split(canvas.width(), canvas.height(), options.tileSize(), options.traversalOrder());
+    // Shape ids of the closest hits of the camera rays, for finding edges to antialias.
+    int[] shapeIds = antialiasing ? new int[canvas.width() * canvas.height()] : null;
+    ForkJoinPool pool = new ForkJoinPool(options.threadCount());
+    try {
+      int pass = 0;
+      int passCount =
+          Integer.numberOfTrailingZeros(options.progressiveBlockSize())
+              + 1
+              + (antialiasing ? 1 : 0);
+      if (listener == null) {
+        pool.invoke(
+            new RenderTilesTask(
+                tiles,
+                tileAction(
+                    tile -> {
+                      renderTile(canvas, tile, shapeIds);
+                      coverage.cover(tile);
+                    })));
+      } else {
+        for (int blockSize = options.progressiveBlockSize(); blockSize >= 1; blockSize /= 2) {
+          int size = blockSize;
+          boolean firstPass = pass == 0;
+          pool.invoke(
+              new RenderTilesTask(
+                  tiles,
+                  tileAction(
+                      tile -> {
+                        renderBlocks(canvas, tile, size, firstPass, shapeIds);
+                        if (size == 1) {
+                          coverage.cover(tile);
+                        }
+                      })));
+          if (stopped() || !listener.passDone(canvas.copy(), pass++, passCount)) {
+            return result(canvas, coverage);
+          }
+        }
+      }
+      // A stopped render has missing samples to find edges between.
+      if (antialiasing && !stopped()) {
+        boolean[] edges = findEdges(canvas, shapeIds);
+        pool.invoke(
+            new RenderTilesTask(
+                tiles,
+                tileAction(
+                    tile -> {
+                      antialiasTile(canvas, tile, edges);
+                      coverage.coverAntialiased(tile);
+                    })));
+        if (listener != null) {
+          // Nothing is left to cancel.
+          listener.passDone(canvas.copy(), pass, passCount);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return result(canvas, coverage);
+  }
+
+  // Returns true once the render is cancelled or out of time.
+  private boolean stopped() {
+    return cancelled || System.nanoTime() - startNanos >= timeLimitNanos;
+  }
+
+  private RenderResult result(Canvas canvas, CoverageMask coverage) {
+    Optional<RenderStatistics> statistics = Optional.empty();
+    if (RenderCounters.ENABLED) {
+      synchronized (threadCounters) {
+        statistics = Optional.of(RenderStatistics.merge(threadCounters));
+      }
+    }
+    return RenderResult.create(
+        canvas,
+        coverage,
+        sampleCount.sum(),
+        supersampledPixelCount.get(),
+        statistics,
+        Optional.ofNullable(costMap));
+  }
+
+  // Returns the given tile action, skipping tiles once the render is stopped and counting those
+  // done.
+  private Consumer<Tile> tileAction(Consumer<Tile> action) {
+    Consumer<Tile> countedAction = counted(action);
+    return tile -> {
+      if (stopped()) {
+        return;
+      }
+      countedAction.accept(tile);
+      completedTiles.incrementAndGet();
+    };
+  }
+
+  // Returns the given tile action, counting its work in the rendering thread's counters if
+  // counting is enabled.
+  private Consumer<Tile> counted(Consumer<Tile> action) {
+    if (!RenderCounters.ENABLED) {
+      return action;
+    }
+    return tile -> {
+      RenderCounters c = counters.get();
+      RenderCounters.setCurrent(c);
+      long start = System.nanoTime();
+      try {
+        action.accept(tile);
+      } finally {
+        c.addTileNanos(tile, System.nanoTime() - start);
+        RenderCounters.setCurrent(null);
+      }
+    };
+  }
+
+  // Renders the pixels of the given tile with one ray each, recording the shape each hits in
+  // shapeIds if it is not null.
+  private void renderTile(Canvas canvas, Tile tile, int[] shapeIds) {
+    sampleCount.add(tile.pixelCount());
+    if (options.packetSize() > 0) {
+      for (Tile p :
+          Tile.split(tile.width(), tile.height(), options.packetSize(), options.traversalOrder())) {
+        renderPacket(
+            canvas,
+            Tile.create(tile.x() + p.x(), tile.y() + p.y(), p.width(), p.height()),
+            shapeIds);
+      }
+      return;
+    }
+    if (shapeIds == null && costMap == null) {
+      tile.forEachPixel(
+          options.traversalOrder(),
+          (x, y) -> canvas.setPixel(x, y, world.colorAt(camera.rayForPixel(x, y), options)));
+      return;
+    }
+    tile.forEachPixel(
+        options.traversalOrder(),
+        (x, y) -> {
+          long start = costMap != null ? costNow() : 0;
+          HitRecord record = new HitRecord();
+          canvas.setPixel(x, y, world.colorAt(camera.rayForPixel(x, y), options, record));
+          if (shapeIds != null) {
+            shapeIds[y * canvas.width() + x] = shapeId(record);
+          }
+          if (costMap != null) {
+            costMap.addCost(x, y, costNow() - start);
+          }
+        });
+  }
+
+  // Traces the pixels of the given tile that are first traced in a progressive pass of the given
+  // block size, filling the block of that size from each with its color. Those are the pixels
+  // whose coordinates are multiples of the block size, except in the first pass those that are
+  // also multiples of twice the block size, which earlier passes traced. So over all passes every
+  // pixel is traced exactly once, as in renderTile(). Records the shape each traced pixel hits in
+  // shapeIds if it is not null.
+  private void renderBlocks(
+      Canvas canvas, Tile tile, int blockSize, boolean firstPass, int[] shapeIds) {
+    tile.forEachPixel(
+        options.traversalOrder(),
+        (x, y) -> {
+          if (x % blockSize != 0 || y % blockSize != 0) {
+            return;
+          }
+          if (!firstPass && x % (2 * blockSize) == 0 && y % (2 * blockSize) == 0) {
+            return;
+          }
+          sampleCount.increment();
+          long start = costMap != null ? costNow() : 0;
+          HitRecord record = new HitRecord();
+          Color color = world.colorAt(camera.rayForPixel(x, y), options, record);
+          if (shapeIds != null) {
+            shapeIds[y * canvas.width() + x] = shapeId(record);
+          }
+          if (costMap != null) {
+            costMap.addCost(x, y, costNow() - start);
+          }
+          // The block may reach into other tiles, but no other pixel traced in this pass fills
+          // any of it.
+          int blockWidth = Math.min(blockSize, canvas.width() - x);
+          int blockHeight = Math.min(blockSize, canvas.height() - y);
+          Tile.create(x, y, blockWidth, blockHeight)
+              .forEachPixel((bx, by) -> canvas.setPixel(bx, by, color));
+        });
+  }
+
+  // Renders the pixels of the given packet, tracing their rays together.
+  private void renderPacket(Canvas canvas, Tile packet, int[] shapeIds) {
+    Ray[] rays = new Ray[packet.pixelCount()];
+    HitRecord[] records = new HitRecord[rays.length];
+    int[] index = {0};
+    packet.forEachPixel(
+        (x, y) -> {
+          rays[index[0]] = camera.rayForPixel(x, y);
+          records[index[0]++] = new HitRecord();
+        });
+    long start = costMap != null ? costNow() : 0;
+    Color[] colors = world.colorAt(rays, options, records);
+    long cost = costMap != null ? costNow() - start : 0;
+    index[0] = 0;
+    packet.forEachPixel(
+        (x, y) -> {
+          if (shapeIds != null) {
+            shapeIds[y * canvas.width() + x] = shapeId(records[index[0]]);
+          }
+          if (costMap != null) {
+            // Share the cost evenly, giving any remainder to the first pixels.
+            costMap.addCost(x, y, cost / rays.length + (index[0] < cost % rays.length ? 1 : 0));
+          }
+          canvas.setPixel(x, y, colors[index[0]++]);
+        });
+  }
+
+  // Returns the running total that pixel costs are measured against on the calling thread.
+  private long costNow() {
+    if (costMap.metric() == CostMap.Metric.NANOS) {
+      return System.nanoTime();
+    }
+    return counters.get().intersectionTestTotal;
+  }
+
+  private static int shapeId(HitRecord record) {
+    return record.isHit() ? record.shapeId() : NO_SHAPE;
+  }
+
+  // Returns which pixels are on edges: those whose samples differ from a horizontal or vertical
+  // neighbor's, as found by differ().
+  private boolean[] findEdges(Canvas canvas, int[] shapeIds) {
+    int width = canvas.width();
+    boolean[] edges = new boolean[width * canvas.height()];
+    for (int y = 0; y < canvas.height(); ++y) {
+      for (int x = 0; x < width; ++x) {
+        int i = y * width + x;
+        if (x + 1 < width
+            && differ(canvas.pixel(x, y), shapeIds[i], canvas.pixel(x + 1, y), shapeIds[i + 1])) {
+          edges[i] = true;
+          edges[i + 1] = true;
+        }
+        if (y + 1 < canvas.height()
+            && differ(
+                canvas.pixel(x, y), shapeIds[i], canvas.pixel(x, y + 1), shapeIds[i + width])) {
+          edges[i] = true;
+          edges[i + width] = true;
+        }
+      }
+    }
+    return edges;
+  }
+
+  // Returns true if two samples hit different shapes, or differ in color by more than the
+  // antialiasing contrast once clamped to the displayable range.
+  private boolean differ(Color a, int aShapeId, Color b, int bShapeId) {
+    return aShapeId != bShapeId
+        || contrast(a.red(), b.red()) > options.antialiasingContrast()
+        || contrast(a.green(), b.green()) > options.antialiasingContrast()
+        || contrast(a.blue(), b.blue()) > options.antialiasingContrast();
+  }
+
+  private static double contrast(double a, double b) {
+    return Math.abs(clamp(a) - clamp(b));
+  }
+
+  private static double clamp(double channel) {
+    return Math.max(0.0, Math.min(1.0, channel));
+  }
+
+  // Replaces the colors of the edge pixels in the given tile with supersampled colors.
+  private void antialiasTile(Canvas canvas, Tile tile, boolean[] edges) {
+    long[] samples = {0};
+    int[] supersampled = {0};
+    tile.forEachPixel(
+        options.traversalOrder(),
+        (x, y) -> {
+          if (edges[y * canvas.width() + x]) {
+            long start = costMap != null ? costNow() : 0;
+            canvas.setPixel(x, y, supersample(x, y, 1.0, options.antialiasingDepth(), samples));
+            ++supersampled[0];
+            if (costMap != null) {
+              costMap.addCost(x, y, costNow() - start);
+            }
+          }
+        });
+    sampleCount.add(samples[0]);
+    supersampledPixelCount.addAndGet(supersampled[0]);
+  }
+
+  // Returns the average color over the square of the given size centered at (x, y), in pixel
+  // coordinates, from samples at the centers of its four quadrants. Quadrants are split in turn,
+  // up to depth times, where their samples differ. Counts the samples traced in samples[0].
+  private Color supersample(double x, double y, double size, int depth, long[] samples) {
+    double offset = size / 4;
+    double[] xs = {x - offset, x + offset, x - offset, x + offset};
+    double[] ys = {y - offset, y - offset, y + offset, y + offset};
+    Color[] colors = new Color[4];
+    int[] shapeIds = new int[4];
+    for (int q = 0; q < 4; ++q) {
+      HitRecord record = new HitRecord();
+      colors[q] = world.colorAt(camera.rayForPixel(xs[q], ys[q]), options, record);
+      shapeIds[q] = shapeId(record);
+    }
+    samples[0] += 4;
+    if (depth > 1) {
+      // Split all quadrants if any pair of neighboring quadrants differ.
+      if (differ(colors[0], shapeIds[0], colors[1], shapeIds[1])
+          || differ(colors[2], shapeIds[2], colors[3], shapeIds[3])
+          || differ(colors[0], shapeIds[0], colors[2], shapeIds[2])
+          || differ(colors[1], shapeIds[1], colors[3], shapeIds[3])) {
+        for (int q = 0; q < 4; ++q) {
+          colors[q] = supersample(xs[q], ys[q], size / 2, depth - 1, samples);
+        }
+      }
+    }
+    return colors[0].plus(colors[1]).plus(colors[2]).plus(colors[3]).times(0.25);
+  }
+
+  // Runs an action on each of a range of tiles, splitting the range in half until a single tile
+  // remains so that idle workers can steal the other halves.
+  private static class RenderTilesTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Tile> tiles;
+    private final Consumer<Tile> action;
+
+    RenderTilesTask(List<Tile> tiles, Consumer<Tile> action) {
+      this.tiles = tiles;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (tiles.size() <= 1) {
+        for (Tile tile : tiles) {
+          action.accept(tile);
+        }
+        return;
+      }
+      int middle = tiles.size() / 2;
+      invokeAll(
+          new RenderTilesTask(tiles.subList(0, middle), action),
+          new RenderTilesTask(tiles.subList(middle, tiles.size()), action));
+    }
+  }
+}
@@ -1,51 +1,113 @@
 package raytracer;
 
+import com.google.common.base.Preconditions;
 import java.util.stream.Stream;
 
 // Transform an intersectable by a given matrix.
 public class TransformedIntersectable implements Intersectable {
-  private Intersectable inner;
+  private final Intersectable inner;
   private Matrix transform = Matrix.identity();
-  private Matrix inverseTransform = Matrix.identity();
-  private Matrix inverseTranspose = Matrix.identity();
+  // Fast form of transform, caching its inverse and normal transform.
+  private Matrix4 transform4 = Matrix4.IDENTITY;
+  // The transformed bounding box, if frozen. Null otherwise.
+  private final BoundingBox frozenBoundingBox;
 
   public TransformedIntersectable(Intersectable inner) {
     this.inner = inner;
+    this.frozenBoundingBox = null;
+  }
+
+  private TransformedIntersectable(Intersectable inner, Matrix4 transform4) {
+    this.inner = inner;
+    this.transform = transform4.toMatrix();
+    this.transform4 = transform4;
+    this.frozenBoundingBox = inner.boundingBox().transform(transform);
+  }
+
+  // Returns a copy of this transform applied to the given frozen form of the inner intersectable,
+  // with its bounding box computed. Its transform can't be changed.
+  TransformedIntersectable freeze(Intersectable frozenInner) {
+    return new TransformedIntersectable(frozenInner, transform4);
   }
 
   @Override
   public BoundingBox boundingBox() {
+    if (frozenBoundingBox != null) {
+      return frozenBoundingBox;
+    }
     return inner.boundingBox().transform(transform);
   }
 
   @Override
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
-    return inner.intersectStream(inverseTransformRay(ray)).map(i -> transformIntersection(i));
+    return inner.intersectStream(inverseTransformRay(ray)).map(i -> transformIntersection(ray, i));
   }
 
-  private Ray inverseTransformRay(Ray ray) {
-    return ray.transform(inverseTransform);
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    if (!inner.intersectClosest(inverseTransformRay(ray), record)) {
+      return false;
+    }
+    // t is unchanged by the transform; only the new hit's normal needs transforming.
+    record.setNormalv(transform4.normalTransform().times(record.normalv()).normalize());
+    return true;
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return inner.hitsShadowCaster(inverseTransformRay(ray), tMax, opaqueOnly);
   }
 
-  private MaterialIntersection transformIntersection(MaterialIntersection intersection) {
-    Ray transformedRay = intersection.ray().transform(transform);
-    Tuple transformedNormalv = inverseTranspose.times(intersection.normalv()).normalize();
+  @Override
+  public void intersectClosest(RayPacket packet) {
+    double[] previousTs = new double[packet.size()];
+    for (int i = 0; i < packet.size(); ++i) {
+      previousTs[i] = packet.record(i).t();
+    }
+    inner.intersectClosest(packet.transform(transform4.inverse()));
+    // Only new hits' normals need transforming.
+    Matrix4 normalTransform = transform4.normalTransform();
+    for (int i = 0; i < packet.size(); ++i) {
+      HitRecord record = packet.record(i);
+      if (record.t() < previousTs[i]) {
+        record.setNormalv(normalTransform.times(record.normalv()).normalize());
+      }
+    }
+  }
+
+  @Override
+  public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    inner.terminateShadowed(packet.transform(transform4.inverse()), opaqueOnly);
+  }
+
+  private Ray inverseTransformRay(Ray ray) {
+    return ray.transform(transform4.inverse());
+  }
 
-    return MaterialIntersection.create(
-        transformedRay,
+  // Returns the given inner intersection as an intersection of ray, the ray it was transformed
+  // from.
+  // The normal is transformed only if it is needed.
+  private MaterialIntersection transformIntersection(Ray ray, MaterialIntersection intersection) {
+    Matrix4 normalTransform = transform4.normalTransform();
+    return MaterialIntersection.createDeferred(
+        ray,
         intersection.t(),
-        transformedNormalv,
+        () -> normalTransform.times(intersection.normalv()).normalize(),
         intersection.material(),
         intersection.shapeId());
   }
 
   public Matrix transform() {
-    return transform;
+    // Matrix is mutable, so a frozen transform is copied.
+    return frozenBoundingBox != null ? transform4.toMatrix() : transform;
   }
 
   public void setTransform(Matrix transform) {
+    Preconditions.checkState(frozenBoundingBox == null, "Can't transform a frozen shape");
+    Matrix4 transform4 = Matrix4.from(transform);
+    // Compute the inverse now so that a non-invertible transform fails here.
+    transform4.normalTransform();
     this.transform = transform;
-    this.inverseTransform = transform.invert();
-    this.inverseTranspose = inverseTransform.transpose().zeroRow(3);
+    this.transform4 = transform4;
   }
 }
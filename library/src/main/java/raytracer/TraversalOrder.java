@@ -0,0 +1,82 @@
+package raytracer;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// An order in which to visit the cells of a grid, such as the tiles of a canvas or the pixels of
+// a tile. Neighboring rays tend to visit the same hierarchy nodes and mesh triangles, so visiting
+// nearby cells one after another keeps those in the processor caches.
+public enum TraversalOrder {
+  // Each row in turn, from left to right.
+  ROW_MAJOR,
+  // Z-order, recursively visiting the four quadrants of each square in a Z pattern.
+  MORTON,
+  // Hilbert curve order, in which each cell is next to the one before it.
+  HILBERT;
+
+  // Orders by grid size, as width << 32 | height.
+  private final Map<Long, int[]> orders = new ConcurrentHashMap<>();
+
+  // Returns the indices, y * width + x, of the cells of a grid of the given size in the order
+  // they are visited. The returned array must not be modified.
+  int[] order(int width, int height) {
+    return orders.computeIfAbsent((long) width << 32 | height, size -> computeOrder(width, height));
+  }
+
+  private int[] computeOrder(int width, int height) {
+    // Side of the smallest power-of-2 square holding the grid, on which curves are defined.
+    int side = Integer.highestOneBit(Math.max(1, Math.max(width, height) - 1)) << 1;
+    return IntStream.range(0, width * height)
+        .boxed()
+        .sorted(Comparator.comparingLong(i -> key(i % width, i / width, side)))
+        .mapToInt(Integer::intValue)
+        .toArray();
+  }
+
+  // Returns the position of cell (x, y) along this order, within a square of the given side.
+  private long key(int x, int y, int side) {
+    switch (this) {
+      case MORTON:
+        return interleave(x) | interleave(y) << 1;
+      case HILBERT:
+        return hilbertIndex(x, y, side);
+      default:
+        return (long) y * side + x;
+    }
+  }
+
+  // Spreads the bits of value out to the even bits of the result.
+  private static long interleave(int value) {
+    long v = value & 0xffffffffL;
+    v = (v | v << 16) & 0x0000ffff0000ffffL;
+    v = (v | v << 8) & 0x00ff00ff00ff00ffL;
+    v = (v | v << 4) & 0x0f0f0f0f0f0f0f0fL;
+    v = (v | v << 2) & 0x3333333333333333L;
+    v = (v | v << 1) & 0x5555555555555555L;
+    return v;
+  }
+
+  // Returns the distance of (x, y) along the Hilbert curve filling a square of the given side, a
+  // power of 2.
+  private static long hilbertIndex(int x, int y, int side) {
+    long d = 0;
+    for (int s = side / 2; s > 0; s /= 2) {
+      int rx = (x & s) > 0 ? 1 : 0;
+      int ry = (y & s) > 0 ? 1 : 0;
+      d += (long) s * s * ((3 * rx) ^ ry);
+      // Rotate the quadrant so that the curve within it joins its neighbors.
+      if (ry == 0) {
+        if (rx == 1) {
+          x = s - 1 - x;
+          y = s - 1 - y;
+        }
+        int t = x;
+        x = y;
+        y = t;
+      }
+    }
+    return d;
+  }
+}
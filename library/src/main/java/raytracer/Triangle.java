@@ -2,8 +2,6 @@ package raytracer;
 
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
-import com.google.common.collect.Range;
-import java.util.function.ToDoubleFunction;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
 
@@ -60,20 +58,16 @@ public abstract class Triangle extends Geometry {
 
   @Override
   public Range3 getRange() {
-    Range<Double> xRange = getRange(p -> p.x());
-    Range<Double> yRange = getRange(p -> p.y());
-    Range<Double> zRange = getRange(p -> p.z());
-    return Range3.create(xRange, yRange, zRange);
-  }
-
-  private Range<Double> getRange(ToDoubleFunction<Tuple> getCoord) {
-    double min = forEachVertex().mapToDouble(getCoord).min().orElse(0);
-    double max = forEachVertex().mapToDouble(getCoord).max().orElse(0);
-    return Range.closed(min, max);
-  }
-
-  private Stream<Tuple> forEachVertex() {
-    return Stream.of(p1(), p2(), p3());
+    Tuple a = p1();
+    Tuple b = p2();
+    Tuple c = p3();
+    return Range3.create(
+        Math.min(a.x(), Math.min(b.x(), c.x())),
+        Math.max(a.x(), Math.max(b.x(), c.x())),
+        Math.min(a.y(), Math.min(b.y(), c.y())),
+        Math.max(a.y(), Math.max(b.y(), c.y())),
+        Math.min(a.z(), Math.min(b.z(), c.z())),
+        Math.max(a.z(), Math.max(b.z(), c.z())));
   }
 
   @Override
@@ -90,11 +84,34 @@ public abstract class Triangle extends Geometry {
 
   @Override
   public Stream<MaterialIntersection> intersectStream(Ray ray) {
+    double[] uv = new double[2];
+    double t = intersect(ray, uv);
+    if (Double.isNaN(t)) {
+      return Stream.empty();
+    }
+    Tuple normal = normalAt(uv[0], uv[1]);
+    Material material = Material.create();
+    return Stream.of(MaterialIntersection.create(ray, t, normal, material, shapeId()));
+  }
+
+  @Override
+  public boolean intersectClosest(Ray ray, Material material, HitRecord record) {
+    double[] uv = new double[2];
+    double t = intersect(ray, uv);
+    if (!record.accepts(t)) {
+      return false;
+    }
+    return record.offer(t, normalAt(uv[0], uv[1]), material, shapeId());
+  }
+
+  // Returns the t at which the given ray hits this triangle, or NaN if it misses.
+  // Stores the barycentric coordinates (u, v) of the hit in uv.
+  private double intersect(Ray ray, double[] uv) {
     Tuple rayCrossE2 = ray.direction().cross(e2());
     double det = rayCrossE2.dot(e1());
     // Ray is parallel to triangle.
     if (Math.abs(det) < EPSILON) {
-      return Stream.empty();
+      return Double.NaN;
     }
     // TODO: rework to understand.
     double f = 1 / det;
@@ -102,22 +119,20 @@ public abstract class Triangle extends Geometry {
     double u = f * p1ToOrigin.dot(rayCrossE2);
     // Ray misses p1-p3 edge.
     if ((u < 0) || (u > 1)) {
-      return Stream.empty();
+      return Double.NaN;
     }
 
     Tuple originCrossE1 = p1ToOrigin.cross(e1());
     double v = f * ray.direction().dot(originCrossE1);
     // Ray misses p1-p2 or p2-p3 edge.
     if ((v < 0) || (u + v > 1)) {
-      return Stream.empty();
+      return Double.NaN;
     }
 
     // Ray hits.
-    double t = f * e2().dot(originCrossE1);
-    Tuple normal = normalAt(u, v);
-    Material material = Material.create();
-    int shapeId = System.identityHashCode(this);
-    return Stream.of(MaterialIntersection.create(ray, t, normal, material, shapeId));
+    uv[0] = u;
+    uv[1] = v;
+    return f * e2().dot(originCrossE1);
   }
 
   private Tuple normalAt(double u, double v) {
@@ -0,0 +1,466 @@
+package raytracer;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// A shape made of triangles sharing vertices and normals.
+// Vertices and normals are held in flat coordinate arrays, and each triangle is three indices
+// into them, so that large models (e.g. from OBJ files) take a few dozen bytes per triangle.
+// The mesh has a single transform: rays are transformed into mesh coordinates once, and then
+// tested against the triangles found through a bounding volume hierarchy.
+public class TriangleMesh implements Shape {
+
+  // Normal index marking a triangle corner without a normal.
+  public static final int NO_NORMAL = -1;
+
+  // Used for detecting rays parallel to a triangle, as in Triangle.
+  private static final double EPSILON = 1.0e-5;
+
+  private final TransformedIntersectable transformed;
+  private Material material = Material.create();
+
+  // x, y, z of each vertex and normal.
+  private final double[] vertices;
+  private final double[] normals;
+  // Indices of the three vertices of each triangle, into vertices.
+  private final int[] vertexIndices;
+  // Indices of the three normals of each triangle, into normals. Triangles where any corner has
+  // NO_NORMAL are flat, with NO_NORMAL stored at their first corner.
+  private final int[] normalIndices;
+  private final BoundingBox boundingBox;
+  private final BoundingVolumeHierarchy hierarchy;
+  private final int shapeId = ShapeIds.next();
+  private final boolean frozen;
+
+  // Creates a mesh from vertex and normal coordinates (x, y, z per vertex or normal) and 0-based
+  // vertex and normal indices (three per triangle). Triangles with a corner normal index of
+  // NO_NORMAL are flat; others interpolate their corner normals.
+  // Takes ownership of the given arrays.
+  public static TriangleMesh create(
+      double[] vertices, int[] vertexIndices, double[] normals, int[] normalIndices) {
+    return new TriangleMesh(vertices, vertexIndices, normals, normalIndices);
+  }
+
+  private TriangleMesh(
+      double[] vertices, int[] vertexIndices, double[] normals, int[] normalIndices) {
+    Preconditions.checkArgument(vertices.length % 3 == 0, "Vertices must have 3 coordinates");
+    Preconditions.checkArgument(normals.length % 3 == 0, "Normals must have 3 coordinates");
+    Preconditions.checkArgument(
+        vertexIndices.length % 3 == 0, "Triangles must have 3 vertex indices");
+    Preconditions.checkArgument(
+        normalIndices.length == vertexIndices.length, "Triangles must have 3 normal indices");
+    int triangleCount = vertexIndices.length / 3;
+    for (int corner = 0; corner < vertexIndices.length; ++corner) {
+      Preconditions.checkElementIndex(vertexIndices[corner], vertices.length / 3);
+    }
+    for (int triangle = 0; triangle < triangleCount; ++triangle) {
+      int c = 3 * triangle;
+      if (normalIndices[c] == NO_NORMAL
+          || normalIndices[c + 1] == NO_NORMAL
+          || normalIndices[c + 2] == NO_NORMAL) {
+        normalIndices[c] = NO_NORMAL;
+      } else {
+        for (int corner = c; corner < c + 3; ++corner) {
+          Preconditions.checkElementIndex(normalIndices[corner], normals.length / 3);
+        }
+      }
+    }
+    this.vertices = vertices;
+    this.normals = normals;
+    this.vertexIndices = vertexIndices;
+    this.normalIndices = normalIndices;
+
+    double[] triangleBounds = new double[6 * triangleCount];
+    double[] meshBounds = {
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+      Double.POSITIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY,
+      Double.NEGATIVE_INFINITY
+    };
+    for (int triangle = 0; triangle < triangleCount; ++triangle) {
+      int b = 6 * triangle;
+      for (int axis = 0; axis < 3; ++axis) {
+        triangleBounds[b + axis] = Double.POSITIVE_INFINITY;
+        triangleBounds[b + 3 + axis] = Double.NEGATIVE_INFINITY;
+      }
+      for (int corner = 3 * triangle; corner < 3 * triangle + 3; ++corner) {
+        int v = 3 * vertexIndices[corner];
+        for (int axis = 0; axis < 3; ++axis) {
+          triangleBounds[b + axis] = Math.min(triangleBounds[b + axis], vertices[v + axis]);
+          triangleBounds[b + 3 + axis] = Math.max(triangleBounds[b + 3 + axis], vertices[v + axis]);
+        }
+      }
+      for (int axis = 0; axis < 3; ++axis) {
+        meshBounds[axis] = Math.min(meshBounds[axis], triangleBounds[b + axis]);
+        meshBounds[3 + axis] = Math.max(meshBounds[3 + axis], triangleBounds[b + 3 + axis]);
+      }
+    }
+    Range3 range =
+        triangleCount == 0
+            ? Range3.createEmpty()
+            : Range3.create(
+                meshBounds[0],
+                meshBounds[3],
+                meshBounds[1],
+                meshBounds[4],
+                meshBounds[2],
+                meshBounds[5]);
+    this.boundingBox = range.createBoundingBox();
+    this.hierarchy = BoundingVolumeHierarchy.build(triangleBounds);
+    this.transformed = new TransformedIntersectable(new MeshIntersectable());
+    this.frozen = false;
+  }
+
+  // Creates a frozen copy of the given mesh, sharing its arrays and hierarchy, which are never
+  // modified.
+  private TriangleMesh(TriangleMesh mesh) {
+    this.vertices = mesh.vertices;
+    this.normals = mesh.normals;
+    this.vertexIndices = mesh.vertexIndices;
+    this.normalIndices = mesh.normalIndices;
+    this.boundingBox = mesh.boundingBox;
+    this.hierarchy = mesh.hierarchy;
+    this.material = mesh.material;
+    this.transformed = mesh.transformed.freeze(new MeshIntersectable());
+    this.frozen = true;
+  }
+
+  public int getTriangleCount() {
+    return vertexIndices.length / 3;
+  }
+
+  // Returns the given 0-based triangle as a standalone Triangle, in mesh coordinates.
+  public Triangle getTriangle(int triangle) {
+    Preconditions.checkElementIndex(triangle, getTriangleCount());
+    int c = 3 * triangle;
+    Tuple p1 = vertex(vertexIndices[c]);
+    Tuple p2 = vertex(vertexIndices[c + 1]);
+    Tuple p3 = vertex(vertexIndices[c + 2]);
+    if (normalIndices[c] == NO_NORMAL) {
+      return Triangle.createRaw(p1, p2, p3);
+    }
+    return Triangle.createRaw(
+        p1,
+        p2,
+        p3,
+        normal(normalIndices[c]),
+        normal(normalIndices[c + 1]),
+        normal(normalIndices[c + 2]));
+  }
+
+  private Tuple vertex(int i) {
+    return Tuple.point(vertices[3 * i], vertices[3 * i + 1], vertices[3 * i + 2]);
+  }
+
+  private Tuple normal(int i) {
+    return Tuple.vector(normals[3 * i], normals[3 * i + 1], normals[3 * i + 2]);
+  }
+
+  @Override
+  public Matrix transform() {
+    return transformed.transform();
+  }
+
+  @Override
+  public void setTransform(Matrix transform) {
+    Preconditions.checkState(!frozen, "Can't transform a frozen shape");
+    transformed.setTransform(transform);
+  }
+
+  @Override
+  public Material material() {
+    return material;
+  }
+
+  @Override
+  public void setMaterial(Material m) {
+    Preconditions.checkState(!frozen, "Can't change the material of a frozen shape");
+    this.material = m;
+  }
+
+  @Override
+  public TriangleMesh freeze() {
+    return frozen ? this : new TriangleMesh(this);
+  }
+
+  @Override
+  public BoundingBox boundingBox() {
+    return transformed.boundingBox();
+  }
+
+  @Override
+  public Stream<MaterialIntersection> intersectStream(Ray ray) {
+    return transformed.intersectStream(ray);
+  }
+
+  @Override
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    return transformed.intersectClosest(ray, record);
+  }
+
+  @Override
+  public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+    return transformed.hitsShadowCaster(ray, tMax, opaqueOnly);
+  }
+
+  @Override
+  public void intersectClosest(RayPacket packet) {
+    transformed.intersectClosest(packet);
+  }
+
+  @Override
+  public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+    transformed.terminateShadowed(packet, opaqueOnly);
+  }
+
+  // Id shared by the intersections of all triangles, so that the mesh refracts as one object.
+  private int shapeId() {
+    return shapeId;
+  }
+
+  // Returns the t at which the given ray hits the given triangle, or NaN if it misses.
+  // Stores the barycentric coordinates (u, v) of the hit in uv.
+  // Follows Triangle.intersect(), working directly on the mesh arrays.
+  private double intersectTriangle(int triangle, Ray ray, double[] uv) {
+    Tuple origin = ray.origin();
+    Tuple direction = ray.direction();
+    return intersectTriangle(
+        triangle,
+        origin.x(),
+        origin.y(),
+        origin.z(),
+        direction.x(),
+        direction.y(),
+        direction.z(),
+        uv);
+  }
+
+  // Returns the t at which the i'th ray of packet hits the given triangle, or NaN if it misses.
+  private double intersectTriangle(int triangle, RayPacket packet, int i, double[] uv) {
+    return intersectTriangle(
+        triangle,
+        packet.originX[i],
+        packet.originY[i],
+        packet.originZ[i],
+        packet.directionX[i],
+        packet.directionY[i],
+        packet.directionZ[i],
+        uv);
+  }
+
+  private double intersectTriangle(
+      int triangle, double ox, double oy, double oz, double dx, double dy, double dz, double[] uv) {
+    RenderCounters.countIntersectionTest(TriangleMesh.class);
+    int c = 3 * triangle;
+    int p1 = 3 * vertexIndices[c];
+    int p2 = 3 * vertexIndices[c + 1];
+    int p3 = 3 * vertexIndices[c + 2];
+    double e1x = vertices[p2] - vertices[p1];
+    double e1y = vertices[p2 + 1] - vertices[p1 + 1];
+    double e1z = vertices[p2 + 2] - vertices[p1 + 2];
+    double e2x = vertices[p3] - vertices[p1];
+    double e2y = vertices[p3 + 1] - vertices[p1 + 1];
+    double e2z = vertices[p3 + 2] - vertices[p1 + 2];
+
+    double rayCrossE2x = dy * e2z - dz * e2y;
+    double rayCrossE2y = dz * e2x - dx * e2z;
+    double rayCrossE2z = dx * e2y - dy * e2x;
+    double det = rayCrossE2x * e1x + rayCrossE2y * e1y + rayCrossE2z * e1z;
+    // Ray is parallel to triangle.
+    if (Math.abs(det) < EPSILON) {
+      return Double.NaN;
+    }
+    double f = 1 / det;
+    double p1ToOriginX = ox - vertices[p1];
+    double p1ToOriginY = oy - vertices[p1 + 1];
+    double p1ToOriginZ = oz - vertices[p1 + 2];
+    double u =
+        f * (p1ToOriginX * rayCrossE2x + p1ToOriginY * rayCrossE2y + p1ToOriginZ * rayCrossE2z);
+    // Ray misses p1-p3 edge.
+    if ((u < 0) || (u > 1)) {
+      return Double.NaN;
+    }
+
+    double originCrossE1x = p1ToOriginY * e1z - p1ToOriginZ * e1y;
+    double originCrossE1y = p1ToOriginZ * e1x - p1ToOriginX * e1z;
+    double originCrossE1z = p1ToOriginX * e1y - p1ToOriginY * e1x;
+    double v = f * (dx * originCrossE1x + dy * originCrossE1y + dz * originCrossE1z);
+    // Ray misses p1-p2 or p2-p3 edge.
+    if ((v < 0) || (u + v > 1)) {
+      return Double.NaN;
+    }
+
+    // Ray hits.
+    uv[0] = u;
+    uv[1] = v;
+    return f * (e2x * originCrossE1x + e2y * originCrossE1y + e2z * originCrossE1z);
+  }
+
+  // Returns the normal of the given triangle at barycentric coordinates (u, v).
+  private Tuple normalAt(int triangle, double u, double v) {
+    int c = 3 * triangle;
+    if (normalIndices[c] == NO_NORMAL) {
+      // Flat triangle: e2 x e1, as in Triangle.
+      int p1 = 3 * vertexIndices[c];
+      int p2 = 3 * vertexIndices[c + 1];
+      int p3 = 3 * vertexIndices[c + 2];
+      Tuple e1 =
+          Tuple.vector(
+              vertices[p2] - vertices[p1],
+              vertices[p2 + 1] - vertices[p1 + 1],
+              vertices[p2 + 2] - vertices[p1 + 2]);
+      Tuple e2 =
+          Tuple.vector(
+              vertices[p3] - vertices[p1],
+              vertices[p3 + 1] - vertices[p1 + 1],
+              vertices[p3 + 2] - vertices[p1 + 2]);
+      return e2.cross(e1).normalize();
+    }
+    int n1 = 3 * normalIndices[c];
+    int n2 = 3 * normalIndices[c + 1];
+    int n3 = 3 * normalIndices[c + 2];
+    double w = 1 - u - v;
+    return Tuple.vector(
+        normals[n1] * w + normals[n2] * u + normals[n3] * v,
+        normals[n1 + 1] * w + normals[n2 + 1] * u + normals[n3 + 1] * v,
+        normals[n1 + 2] * w + normals[n2 + 2] * u + normals[n3 + 2] * v);
+  }
+
+  // The closest triangle hit found so far, and where it was hit.
+  private static class ClosestTriangle {
+    int triangle = -1;
+    // The t of the hit, or the bound on hits while none has been found.
+    double t;
+    double u;
+    double v;
+  }
+
+  // Intersects the triangles in mesh coordinates.
+  private class MeshIntersectable implements Intersectable {
+    @Override
+    public BoundingBox boundingBox() {
+      return boundingBox;
+    }
+
+    @Override
+    public Stream<MaterialIntersection> intersectStream(Ray ray) {
+      List<MaterialIntersection> intersections = new ArrayList<>();
+      double[] uv = new double[2];
+      hierarchy.forEachCandidate(
+          ray,
+          triangle -> {
+            double t = intersectTriangle(triangle, ray, uv);
+            if (!Double.isNaN(t)) {
+              double u = uv[0];
+              double v = uv[1];
+              intersections.add(
+                  MaterialIntersection.createDeferred(
+                      ray, t, () -> normalAt(triangle, u, v), material, shapeId()));
+            }
+          });
+      return intersections.stream();
+    }
+
+    @Override
+    public boolean intersectClosest(Ray ray, HitRecord record) {
+      // Find the closest triangle first, so that only its normal is computed.
+      ClosestTriangle closest = new ClosestTriangle();
+      closest.t = record.t();
+      double[] uv = new double[2];
+      hierarchy.forEachCandidate(
+          ray,
+          () -> closest.t,
+          triangle -> {
+            double t = intersectTriangle(triangle, ray, uv);
+            if (t >= 0.0 && t < closest.t) {
+              closest.triangle = triangle;
+              closest.t = t;
+              closest.u = uv[0];
+              closest.v = uv[1];
+            }
+          });
+      if (closest.triangle < 0) {
+        return false;
+      }
+      Tuple normalv = normalAt(closest.triangle, closest.u, closest.v);
+      return record.offer(closest.t, normalv, material, shapeId());
+    }
+
+    @Override
+    public void intersectClosest(RayPacket packet) {
+      // As for single rays, find each ray's closest triangle before computing normals.
+      int size = packet.size();
+      int[] closestTriangles = new int[size];
+      double[] closestTs = new double[size];
+      double[] closestUvs = new double[2 * size];
+      for (int i = 0; i < size; ++i) {
+        closestTriangles[i] = -1;
+        closestTs[i] = packet.record(i).t();
+      }
+      double[] uv = new double[2];
+      hierarchy.forEachCandidate(
+          packet,
+          i -> closestTs[i],
+          (candidates, triangle) -> {
+            for (int i = 0; i < size; ++i) {
+              if (!candidates.isActive(i)) {
+                continue;
+              }
+              double t = intersectTriangle(triangle, candidates, i, uv);
+              if (t >= 0.0 && t < closestTs[i]) {
+                closestTriangles[i] = triangle;
+                closestTs[i] = t;
+                closestUvs[2 * i] = uv[0];
+                closestUvs[2 * i + 1] = uv[1];
+              }
+            }
+          });
+      for (int i = 0; i < size; ++i) {
+        if (closestTriangles[i] >= 0) {
+          Tuple normalv = normalAt(closestTriangles[i], closestUvs[2 * i], closestUvs[2 * i + 1]);
+          packet.record(i).offer(closestTs[i], normalv, material, shapeId());
+        }
+      }
+    }
+
+    @Override
+    public void terminateShadowed(RayPacket packet, boolean opaqueOnly) {
+      if (!material.castsShadow(opaqueOnly)) {
+        return;
+      }
+      double[] uv = new double[2];
+      hierarchy.forEachCandidate(
+          packet,
+          i -> packet.record(i).t(),
+          (candidates, triangle) -> {
+            for (int i = 0; i < packet.size(); ++i) {
+              if (candidates.isActive(i)) {
+                double t = intersectTriangle(triangle, candidates, i, uv);
+                if (t >= 0.0 && t < packet.record(i).t()) {
+                  packet.terminate(i);
+                }
+              }
+            }
+          });
+    }
+
+    @Override
+    public boolean hitsShadowCaster(Ray ray, double tMax, boolean opaqueOnly) {
+      if (!material.castsShadow(opaqueOnly)) {
+        return false;
+      }
+      double[] uv = new double[2];
+      return hierarchy.anyCandidate(
+          ray,
+          tMax,
+          triangle -> {
+            double t = intersectTriangle(triangle, ray, uv);
+            return t >= 0.0 && t < tMax;
+          });
+    }
+  }
+}
@@ -1,27 +1,60 @@
 package raytracer;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.SplittableRandom;
 import java.util.stream.Collectors;
 
 // A set of lights and shapes in a scene.
 public class World {
 
-  private static final int DEFAULT_MAX_BOUNCES = 4;
+  private final List<Light> lights;
+  private final Group group;
+  // Whether any shape has a transparent material, if this world is frozen.
+  private final boolean hasTransparency;
+  private final boolean frozen;
 
-  private List<Light> lights = new ArrayList<>();
-  private Group group = Group.create();
+  public World() {
+    lights = new ArrayList<>();
+    group = Group.create();
+    hasTransparency = false;
+    frozen = false;
+  }
+
+  // Creates a frozen copy of the given world.
+  private World(World world) {
+    lights = ImmutableList.copyOf(world.lights);
+    group = world.group.freeze();
+    hasTransparency = group.hasTransparency();
+    frozen = true;
+  }
+
+  // Returns an immutable copy of this world, as it is now, with every cached bounding box,
+  // bounding volume hierarchy and inverse transform computed. Any number of threads may render
+  // the copy at once without synchronizing, while this world can still be changed.
+  // Methods that change the copy throw IllegalStateException. See Shape.freeze().
+  public World freeze() {
+    return frozen ? this : new World(this);
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
 
   public Iterable<Light> getLights() {
     return lights;
   }
 
   public void addLight(Light light) {
+    Preconditions.checkState(!frozen, "Can't change a frozen world");
     lights.add(light);
   }
 
   public void clearLights() {
+    Preconditions.checkState(!frozen, "Can't change a frozen world");
     lights.clear();
   }
 
@@ -30,34 +63,60 @@ public class World {
   }
 
   public void addShape(Shape shape) {
+    Preconditions.checkState(!frozen, "Can't change a frozen world");
     group.add(shape);
   }
 
+  // Returns true if any shape in this world has a transparent material. Without any, every
+  // shadow caster blocks light completely and no ray is ever refracted.
+  // Only a frozen world knows this up front; otherwise its shapes are checked on every call, as
+  // their materials may have changed since. So shading checks once per primary ray or packet, and
+  // passes the answer down to each shadow ray.
+  public boolean hasTransparency() {
+    return frozen ? hasTransparency : group.hasTransparency();
+  }
+
+  // Sets the minimum number of top-level shapes for which this world is intersected through a
+  // bounding volume hierarchy. See Group.setHierarchyThreshold().
+  public void setHierarchyThreshold(int hierarchyThreshold) {
+    Preconditions.checkState(!frozen, "Can't change a frozen world");
+    group.setHierarchyThreshold(hierarchyThreshold);
+  }
+
   // Intersect the given ray against this world.
   public Intersections intersect(Ray ray) {
     return Intersections.create(group.intersectStream(ray));
   }
 
+  // Records the closest hit of the given ray against this world in record.
+  // Returns true if record was updated. See Intersectable.intersectClosest().
+  public boolean intersectClosest(Ray ray, HitRecord record) {
+    return group.intersectClosest(ray, record);
+  }
+
   // What color happens at this intersection.
   // Allow further light bounces if remainingBounces > 0.
   public Color shadeHit(Intersection i, int remainingBounces) {
-    Material material = i.material();
+    return new RayTree(0, null, hasTransparency()).shade(i, remainingBounces, null);
+  }
 
+  // Returns the color of the light reflected towards the eye at the given intersection from
+  // each light, as seen without reflection or refraction. Uses the already known color of the
+  // light reaching the intersection from each light, in order, if visibleLightCs is not null.
+  // hasTransparency is as given by hasTransparency().
+  private Color surfaceColor(Intersection i, Color[] visibleLightCs, boolean hasTransparency) {
+    Material material = i.material();
     Color surfaceC = Color.BLACK;
-    for (Light light : lights) {
-      Color visibleLightC = visibleLightColor(i.point(), light);
+    for (int l = 0; l < lights.size(); ++l) {
+      Light light = lights.get(l);
+      Color visibleLightC =
+          visibleLightCs != null
+              ? visibleLightCs[l]
+              : visibleLightColor(i.point(), light, hasTransparency);
       surfaceC =
           surfaceC.plus(material.lighting(light, i.point(), i.eyev(), i.normalv(), visibleLightC));
     }
-    Color reflectedC = reflectedColor(i, remainingBounces);
-    Color refractedC = refractedColor(i, remainingBounces);
-
-    if (material.reflectivity() > 0 && material.transparency() > 0) {
-      double reflectance = i.schlickReflectance();
-      return surfaceC.plus(reflectedC.times(reflectance)).plus(refractedC.times(1 - reflectance));
-    } else {
-      return surfaceC.plus(reflectedC).plus(refractedC);
-    }
+    return surfaceC;
   }
 
   // What color is reflected at this intersection.
@@ -67,9 +126,10 @@ public class World {
     }
     double reflectivity = i.material().reflectivity();
     if (reflectivity == 0) {
-      Color c = Color.BLACK;
+      return Color.BLACK;
     }
     Ray r = Ray.create(i.point(), i.reflectv());
+    RenderCounters.countReflectionRay();
     Color reflectColor = colorAt(r.bumpForward(), remainingBounces - 1);
     return reflectColor.times(reflectivity);
   }
@@ -90,20 +150,223 @@ public class World {
     // TODO: This should incorporate object's internal color.
 
     Ray refractRay = Ray.create(i.point(), i.refractv()).bumpForward();
+    RenderCounters.countRefractionRay();
     return colorAt(refractRay, remainingBounces - 1).times(i.material().transparency());
   }
 
   // What color is present in this world at the given ray.
   public Color colorAt(Ray ray) {
-    return colorAt(ray, DEFAULT_MAX_BOUNCES);
+    return colorAt(ray, RenderOptions.DEFAULT_MAX_BOUNCES);
   }
 
   public Color colorAt(Ray ray, int remainingBounces) {
-    Optional<Intersection> i = intersect(ray).hit();
-    if (i.isPresent()) {
-      return shadeHit(i.get(), remainingBounces);
-    } else {
-      return Color.BLACK;
+    return new RayTree(0, null, hasTransparency()).colorAt(ray, remainingBounces);
+  }
+
+  // Returns the color present in this world at the given ray, limiting its reflections and
+  // refractions as described by the given options.
+  public Color colorAt(Ray ray, RenderOptions options) {
+    return colorAt(ray, options, new HitRecord());
+  }
+
+  // As colorAt(ray, options), recording the closest hit of the ray in the given empty record.
+  Color colorAt(Ray ray, RenderOptions options, HitRecord record) {
+    RenderCounters.countPrimaryRays(1);
+    return rayTree(ray, options, hasTransparency()).colorAt(ray, record, options.maxBounces());
+  }
+
+  // Returns the colors present in this world at the given rays, as colorAt(Ray) does for each.
+  // The rays are intersected as a packet, as are the shadow rays from the opaque surfaces they
+  // hit towards each light, so they should be coherent, such as rays through nearby pixels.
+  public Color[] colorAt(Ray[] rays) {
+    return colorAt(rays, RenderOptions.create());
+  }
+
+  // Returns the colors present in this world at the given rays, as colorAt(Ray, RenderOptions)
+  // does for each. See colorAt(Ray[]).
+  public Color[] colorAt(Ray[] rays, RenderOptions options) {
+    return colorAt(rays, options, null);
+  }
+
+  // As colorAt(rays, options), recording the closest hit of each ray in the corresponding empty
+  // record, if records is not null.
+  Color[] colorAt(Ray[] rays, RenderOptions options, HitRecord[] records) {
+    RenderCounters.countPrimaryRays(rays.length);
+    RayPacket packet = records != null ? RayPacket.create(rays, records) : RayPacket.create(rays);
+    group.intersectClosest(packet);
+    boolean hasTransparency = hasTransparency();
+    Color[] colors = new Color[rays.length];
+    // Opaque hits are shaded once the light reaching all of them is known.
+    int[] opaqueRays = new int[rays.length];
+    Tuple[] opaquePoints = new Tuple[rays.length];
+    Intersection[] opaqueHits = new Intersection[rays.length];
+    int opaqueCount = 0;
+    for (int r = 0; r < rays.length; ++r) {
+      HitRecord hit = packet.record(r);
+      if (!hit.isHit()) {
+        colors[r] = Color.BLACK;
+      } else if (hit.material().transparency() == 0.0) {
+        opaqueRays[opaqueCount] = r;
+        opaqueHits[opaqueCount] = hit.toIntersection(rays[r]);
+        opaquePoints[opaqueCount] = opaqueHits[opaqueCount].point();
+        ++opaqueCount;
+      } else {
+        Intersection i = transparentHit(rays[r]);
+        colors[r] =
+            i != null
+                ? rayTree(rays[r], options, hasTransparency).shade(i, options.maxBounces(), null)
+                : Color.BLACK;
+      }
+    }
+    Color[][] visibleLightCs = new Color[opaqueCount][lights.size()];
+    for (int l = 0; l < lights.size(); ++l) {
+      Color[] lightCs =
+          visibleLightColors(opaquePoints, opaqueCount, lights.get(l), hasTransparency);
+      for (int h = 0; h < opaqueCount; ++h) {
+        visibleLightCs[h][l] = lightCs[h];
+      }
+    }
+    for (int h = 0; h < opaqueCount; ++h) {
+      Ray ray = rays[opaqueRays[h]];
+      colors[opaqueRays[h]] =
+          rayTree(ray, options, hasTransparency)
+              .shade(opaqueHits[h], options.maxBounces(), visibleLightCs[h]);
+    }
+    return colors;
+  }
+
+  // Returns the closest hit of the given ray, with its refractive indices set, or null if it
+  // misses. Records the hit in the given empty record.
+  private Intersection hit(Ray ray, HitRecord record) {
+    if (!intersectClosest(ray, record)) {
+      return null;
+    }
+    if (record.material().transparency() == 0.0) {
+      // Opaque surfaces don't refract, so the ordering of other hits along the ray doesn't matter.
+      return record.toIntersection(ray);
+    }
+    return transparentHit(ray);
+  }
+
+  // Returns the closest hit of the given ray, which is expected to be transparent, or null if it
+  // misses.
+  private Intersection transparentHit(Ray ray) {
+    // Refraction needs every intersection along the ray, in order, to know the refractive
+    // indices on each side of the hit.
+    return Intersections.createHit(group.intersectStream(ray)).orElse(null);
+  }
+
+  // Returns the ray tree for the given primary ray, as configured by the given options.
+  // Russian roulette is seeded by the ray, so that colors don't depend on how rays are scheduled.
+  private RayTree rayTree(Ray ray, RenderOptions options, boolean hasTransparency) {
+    SplittableRandom roulette =
+        options.russianRoulette() ? new SplittableRandom(ray.hashCode()) : null;
+    return new RayTree(options.minContribution(), roulette, hasTransparency);
+  }
+
+  // Evaluates the tree of rays reflected and refracted from a hit, branch by branch from an
+  // explicit stack. Each branch carries its weight in the final color: the product of the
+  // reflectivities, transparencies and Fresnel reflectances along its path. Branches of weight
+  // below minContribution are dropped, or with Russian roulette traced at random with a
+  // probability of their weight over minContribution, and weighted up to match.
+  private class RayTree {
+    private final double minContribution;
+    // Null without Russian roulette.
+    private final SplittableRandom roulette;
+    // As given by hasTransparency() when the tree was created.
+    private final boolean hasTransparency;
+    private final ArrayDeque<Branch> branches = new ArrayDeque<>();
+
+    RayTree(double minContribution, SplittableRandom roulette, boolean hasTransparency) {
+      this.minContribution = minContribution;
+      this.roulette = roulette;
+      this.hasTransparency = hasTransparency;
+    }
+
+    // Returns the color at the given ray.
+    Color colorAt(Ray ray, int remainingBounces) {
+      return colorAt(ray, new HitRecord(), remainingBounces);
+    }
+
+    // Returns the color at the given ray, recording its closest hit in the given empty record.
+    Color colorAt(Ray ray, HitRecord record, int remainingBounces) {
+      Intersection i = hit(ray, record);
+      if (i == null) {
+        return Color.BLACK;
+      }
+      return shade(i, remainingBounces, null);
+    }
+
+    // Returns the color at the given intersection, including its reflected and refracted rays.
+    // Uses the already known color of the light reaching the intersection from each light, if
+    // visibleLightCs is not null.
+    Color shade(Intersection i, int remainingBounces, Color[] visibleLightCs) {
+      Color c = surfaceColor(i, visibleLightCs, hasTransparency);
+      addBranches(i, 1.0, remainingBounces);
+      while (!branches.isEmpty()) {
+        Branch branch = branches.pop();
+        Intersection hit = hit(branch.ray, new HitRecord());
+        if (hit != null) {
+          c = c.plus(surfaceColor(hit, null, hasTransparency).times(branch.weight));
+          addBranches(hit, branch.weight, branch.remainingBounces);
+        }
+      }
+      return c;
+    }
+
+    // Adds the rays reflected and refracted at the given intersection, which has the given
+    // weight.
+    private void addBranches(Intersection i, double weight, int remainingBounces) {
+      if (remainingBounces <= 0) {
+        return;
+      }
+      Material material = i.material();
+      double reflectWeight = weight * material.reflectivity();
+      double refractWeight = weight * material.transparency();
+      if (material.reflectivity() > 0 && material.transparency() > 0) {
+        double reflectance = i.schlickReflectance();
+        reflectWeight *= reflectance;
+        refractWeight *= 1 - reflectance;
+      }
+      if (material.transparency() > 0 && !i.isTotalInternalReflection()) {
+        refractWeight = traceWeight(refractWeight);
+        if (refractWeight > 0) {
+          // TODO: This should incorporate object's internal color.
+          Ray refractRay = Ray.create(i.point(), i.refractv()).bumpForward();
+          branches.push(new Branch(refractRay, refractWeight, remainingBounces - 1));
+          RenderCounters.countRefractionRay();
+        }
+      }
+      reflectWeight = traceWeight(reflectWeight);
+      if (reflectWeight > 0) {
+        Ray reflectRay = Ray.create(i.point(), i.reflectv()).bumpForward();
+        branches.push(new Branch(reflectRay, reflectWeight, remainingBounces - 1));
+        RenderCounters.countReflectionRay();
+      }
+    }
+
+    // Returns the weight with which to trace a branch of the given weight, or 0 to drop it.
+    private double traceWeight(double weight) {
+      if (weight >= minContribution) {
+        return weight;
+      }
+      if (roulette != null && weight > 0 && roulette.nextDouble() * minContribution < weight) {
+        return minContribution;
+      }
+      return 0;
+    }
+  }
+
+  // A ray in a RayTree.
+  private static final class Branch {
+    final Ray ray;
+    final double weight;
+    final int remainingBounces;
+
+    Branch(Ray ray, double weight, int remainingBounces) {
+      this.ray = ray;
+      this.weight = weight;
+      this.remainingBounces = remainingBounces;
     }
   }
 
@@ -112,18 +375,78 @@ public class World {
   // Return color of light visible at point due to intervening
   // objects and their transparency.
   public Color visibleLightColor(Tuple point, Light light) {
+    return visibleLightColor(point, light, hasTransparency());
+  }
+
+  // As visibleLightColor(point, light), given hasTransparency().
+  private Color visibleLightColor(Tuple point, Light light, boolean hasTransparency) {
     Tuple lightToPoint = point.minus(light.position());
     double distanceToPoint = lightToPoint.magnitude();
     Ray rayToPoint = Ray.create(light.position(), lightToPoint.normalize());
-    List<Intersection> hits = intersect(rayToPoint).shadowHits().collect(Collectors.toList());
+    double tMax = distanceToPoint - EPSILON;
+    RenderCounters.countShadowRays(1);
+    if (!group.hitsShadowCaster(rayToPoint, tMax, false)) {
+      // Nothing between point and light.
+      return light.intensity();
+    }
+    if (!hasTransparency) {
+      return Color.BLACK;
+    }
+    return blockedLightColor(rayToPoint, distanceToPoint, light);
+  }
+
+  // Returns the colors of light visible at points[0..count) as visibleLightColor() does for each,
+  // testing the rays from the light to all of them as a packet.
+  private Color[] visibleLightColors(
+      Tuple[] points, int count, Light light, boolean hasTransparency) {
+    Ray[] raysToPoints = new Ray[count];
+    HitRecord[] records = new HitRecord[count];
+    double[] distancesToPoints = new double[count];
+    for (int i = 0; i < count; ++i) {
+      Tuple lightToPoint = points[i].minus(light.position());
+      distancesToPoints[i] = lightToPoint.magnitude();
+      raysToPoints[i] = Ray.create(light.position(), lightToPoint.normalize());
+      records[i] = new HitRecord(distancesToPoints[i] - EPSILON);
+    }
+    RayPacket packet = RayPacket.create(raysToPoints, records);
+    RenderCounters.countShadowRays(count);
+    group.terminateShadowed(packet, false);
+    Color[] colors = new Color[count];
+    for (int i = 0; i < count; ++i) {
+      if (!packet.isTerminated(i)) {
+        colors[i] = light.intensity();
+      } else if (!hasTransparency) {
+        colors[i] = Color.BLACK;
+      } else {
+        colors[i] = blockedLightColor(raysToPoints[i], distancesToPoints[i], light);
+      }
+    }
+    return colors;
+  }
+
+  // Returns the color of light visible along the given ray from the light to a point, given that
+  // some shadow caster lies between them.
+  private Color blockedLightColor(Ray rayToPoint, double distanceToPoint, Light light) {
+    double tMax = distanceToPoint - EPSILON;
+    if (group.hitsShadowCaster(rayToPoint, tMax, true)) {
+      // An opaque object blocks the light entirely.
+      return Color.BLACK;
+    }
+    // Only transparent objects in the way, each tinting the light. Their order along the ray
+    // doesn't matter, so they are neither sorted nor given refractive indices.
+    List<MaterialIntersection> hits =
+        group
+            .intersectStream(rayToPoint)
+            .filter(i -> i.material().castsShadow() && i.t() >= 0.0)
+            .collect(Collectors.toList());
     Color c = light.intensity();
-    for (Intersection i : hits) {
+    for (MaterialIntersection i : hits) {
       if (i.t() < distanceToPoint - EPSILON) {
         // object surface is between point and light, changes light color.
         Material m = i.material();
         // TODO: this should use the object's internal color, not surface color.
         // Sqrt because we hit the object twice, once at each surface.
-        Color objectC = m.pattern().colorAt(i.point()).times(m.transparency()).sqrt();
+        Color objectC = m.pattern().colorAt(i.ray().position(i.t())).times(m.transparency()).sqrt();
         c = c.times(objectC);
       }
     }
@@ -135,7 +458,7 @@ public class World {
     Tuple lightToPoint = point.minus(light.position());
     double distanceToPoint = lightToPoint.magnitude();
     Ray rayToPoint = Ray.create(light.position(), lightToPoint.normalize());
-    Optional<Intersection> hit = intersect(rayToPoint).shadowHit();
-    return hit.isPresent() && hit.get().t() < distanceToPoint - EPSILON;
+    RenderCounters.countShadowRays(1);
+    return group.hitsShadowCaster(rayToPoint, distanceToPoint - EPSILON, false);
   }
 }
@@ -0,0 +1,96 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static raytracer.Testing.EPSILON;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import raytracer.AxisAlignedBox.SlabRay;
+
+@RunWith(JUnit4.class)
+// Feature: Axis-aligned boxes
+public class AxisAlignedBoxTest {
+
+  // The box from (-1, -1, -1) to (1, 1, 1).
+  private static final AxisAlignedBox UNIT_BOX = AxisAlignedBox.create(-1, -1, -1, 1, 1, 1);
+
+  private static SlabRay ray(double px, double py, double pz, double dx, double dy, double dz) {
+    return SlabRay.create(Ray.create(Tuple.point(px, py, pz), Tuple.vector(dx, dy, dz)));
+  }
+
+  @Test
+  // Scenario: A ray intersects each face of a box
+  public void intersectFaces() {
+    double[][] cases = {
+      {5, 0.5, 0, -1, 0, 0, 4, 6},
+      {-5, 0.5, 0, 1, 0, 0, 4, 6},
+      {0.5, 5, 0, 0, -1, 0, 4, 6},
+      {0.5, -5, 0, 0, 1, 0, 4, 6},
+      {0.5, 0, 5, 0, 0, -1, 4, 6},
+      {0.5, 0, -5, 0, 0, 1, 4, 6},
+      {0, 0.5, 0, 0, 0, 1, -1, 1}
+    };
+    for (double[] c : cases) {
+      SlabRay r = ray(c[0], c[1], c[2], c[3], c[4], c[5]);
+      assertThat(UNIT_BOX.intersect(r)).isTrue();
+      assertThat(r.tEnter()).isWithin(EPSILON).of(c[6]);
+      assertThat(r.tExit()).isWithin(EPSILON).of(c[7]);
+    }
+  }
+
+  @Test
+  // Scenario: A ray misses a box
+  public void miss() {
+    double[][] cases = {
+      {-2, 0, 0, 0.2673, 0.5345, 0.8018},
+      {0, -2, 0, 0.8018, 0.2673, 0.5345},
+      {0, 0, -2, 0.5345, 0.8018, 0.2673},
+      {2, 0, 2, 0, 0, -1},
+      {0, 2, 2, 0, -1, 0},
+      {2, 2, 0, -1, 0, 0}
+    };
+    for (double[] c : cases) {
+      assertThat(UNIT_BOX.intersect(ray(c[0], c[1], c[2], c[3], c[4], c[5]))).isFalse();
+    }
+  }
+
+  @Test
+  // Scenario: A ray parallel to a face hits only if between the face's planes
+  public void parallel() {
+    assertThat(UNIT_BOX.intersect(ray(0.5, 0.5, -5, 0, 0, 1))).isTrue();
+    assertThat(UNIT_BOX.intersect(ray(1.5, 0.5, -5, 0, 0, 1))).isFalse();
+    assertThat(UNIT_BOX.intersect(ray(-1.5, 0.5, -5, 0, 0, 1))).isFalse();
+    assertThat(UNIT_BOX.intersect(ray(0.5, -1.5, -5, 0, 0, 1), 0, 6)).isFalse();
+    // Starting exactly on the planes of the parallel faces.
+    assertThat(UNIT_BOX.intersect(ray(1, -1, -5, 0, 0, 1))).isTrue();
+    assertThat(UNIT_BOX.intersect(ray(1, 1, -5, 0, 0, 1), 0, 6)).isTrue();
+    assertThat(UNIT_BOX.intersect(ray(1, 1, -5, 0, 0, -1), 0, 6)).isFalse();
+  }
+
+  @Test
+  // Scenario: Intersections are limited to the given interval of t
+  public void interval() {
+    SlabRay r = ray(0, 0, -5, 0, 0, 1);
+    assertThat(UNIT_BOX.intersect(r, 0, 3.9)).isFalse();
+    assertThat(UNIT_BOX.intersect(r, 6.1, 10)).isFalse();
+    assertThat(UNIT_BOX.intersect(r, 0, 5)).isTrue();
+    assertThat(r.tEnter()).isWithin(EPSILON).of(4);
+    assertThat(r.tExit()).isWithin(EPSILON).of(5);
+
+    // The box is behind the ray.
+    SlabRay away = ray(0, 0, -5, 0, 0, -1);
+    assertThat(UNIT_BOX.intersect(away)).isTrue();
+    assertThat(UNIT_BOX.intersect(away, 0, Double.POSITIVE_INFINITY)).isFalse();
+  }
+
+  @Test
+  // Scenario: A flat box is hit by rays crossing it
+  public void flat() {
+    AxisAlignedBox flat = AxisAlignedBox.create(-1, -1, 2, 1, 1, 2);
+    SlabRay r = ray(0.5, -0.5, 0, 0, 0, 1);
+    assertThat(flat.intersect(r)).isTrue();
+    assertThat(r.tEnter()).isWithin(EPSILON).of(2);
+    assertThat(flat.intersect(ray(0.5, -1.5, 0, 0, 0, 1))).isFalse();
+  }
+}
@@ -0,0 +1,133 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Bounding volume hierarchies
+public class BoundingVolumeHierarchyTest {
+
+  // Returns the items the given ray might hit.
+  private static List<Integer> candidates(BoundingVolumeHierarchy bvh, Ray ray) {
+    List<Integer> items = new ArrayList<>();
+    bvh.forEachCandidate(ray, items::add);
+    return items;
+  }
+
+  // Returns count unit cubes spread along the x axis.
+  private static List<Range3> cubeRow(int count) {
+    ImmutableList.Builder<Range3> ranges = ImmutableList.builder();
+    for (int i = 0; i < count; ++i) {
+      ranges.add(Range3.create(3 * i, 3 * i + 1, 0, 1, 0, 1));
+    }
+    return ranges.build();
+  }
+
+  @Test
+  // Scenario: An empty hierarchy has no candidates
+  public void empty() {
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(ImmutableList.of());
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    assertThat(candidates(bvh, r)).isEmpty();
+    assertThat(bvh.nodeCount()).isEqualTo(0);
+  }
+
+  @Test
+  // Scenario: Only items along the ray are candidates
+  public void candidatesAlongRay() {
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(cubeRow(64));
+    Ray r = Ray.create(Tuple.point(30.5, 0.5, -5), Tuple.vector(0, 0, 1));
+    // Candidates come from whole leaves, which may hold a neighbor too.
+    assertThat(candidates(bvh, r)).contains(10);
+    assertThat(candidates(bvh, r).size()).isAtMost(2);
+
+    Ray miss = Ray.create(Tuple.point(10.5, 5, -5), Tuple.vector(0, 0, 1));
+    assertThat(candidates(bvh, miss)).isEmpty();
+
+    Ray along = Ray.create(Tuple.point(-5, 0.5, 0.5), Tuple.vector(1, 0, 0));
+    assertThat(candidates(bvh, along)).hasSize(64);
+  }
+
+  @Test
+  // Scenario: Any-candidate queries stop at the first matching item
+  public void anyCandidate() {
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(cubeRow(64));
+    Ray along = Ray.create(Tuple.point(-5, 0.5, 0.5), Tuple.vector(1, 0, 0));
+    List<Integer> tested = new ArrayList<>();
+    assertThat(
+            bvh.anyCandidate(
+                along,
+                i -> {
+                  tested.add(i);
+                  return true;
+                }))
+        .isTrue();
+    assertThat(tested).hasSize(1);
+
+    assertThat(bvh.anyCandidate(along, i -> i == 40)).isTrue();
+    assertThat(bvh.anyCandidate(along, i -> i == 64)).isFalse();
+    Ray miss = Ray.create(Tuple.point(10.5, 5, -5), Tuple.vector(0, 0, 1));
+    assertThat(bvh.anyCandidate(miss, i -> true)).isFalse();
+  }
+
+  @Test
+  // Scenario: Limited queries skip items beyond the limit and visit nearer items first
+  public void candidatesWithinLimit() {
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(cubeRow(64));
+    Ray along = Ray.create(Tuple.point(-5, 0.5, 0.5), Tuple.vector(1, 0, 0));
+    List<Integer> items = new ArrayList<>();
+    bvh.forEachCandidate(along, () -> 20, items::add);
+    assertThat(items).containsAllOf(0, 1, 2, 3, 4, 5).inOrder();
+    assertThat(items).doesNotContain(20);
+
+    // Lowering the limit on the first item found skips all others.
+    double[] limit = {Double.POSITIVE_INFINITY};
+    items.clear();
+    bvh.forEachCandidate(
+        along,
+        () -> limit[0],
+        i -> {
+          items.add(i);
+          limit[0] = 6;
+        });
+    assertThat(items.get(0)).isEqualTo(0);
+    assertThat(items).doesNotContain(2);
+
+    Ray backwards = Ray.create(Tuple.point(200, 0.5, 0.5), Tuple.vector(1, 0, 0));
+    items.clear();
+    bvh.forEachCandidate(backwards, () -> Double.POSITIVE_INFINITY, items::add);
+    assertThat(items).isEmpty();
+
+    assertThat(bvh.anyCandidate(along, 20, i -> i == 8)).isFalse();
+    assertThat(bvh.anyCandidate(along, 40, i -> i == 8)).isTrue();
+    assertThat(bvh.anyCandidate(backwards, i -> i == 8)).isTrue();
+    assertThat(bvh.anyCandidate(backwards, Double.POSITIVE_INFINITY, i -> i == 8)).isFalse();
+  }
+
+  @Test
+  // Scenario: The surface area heuristic produces a balanced tree for evenly spread items
+  public void balanced() {
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(cubeRow(64));
+    assertThat(bvh.depth()).isAtMost(8);
+  }
+
+  @Test
+  // Scenario: Unbounded items are always candidates, empty items never are
+  public void unboundedAndEmpty() {
+    List<Range3> ranges =
+        ImmutableList.of(
+            Range3.create(0, 1, 0, 1, 0, 1),
+            Range3.create(Range.all(), Range.singleton(0.0), Range.all()),
+            Range3.createEmpty());
+    BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(ranges);
+    Ray r = Ray.create(Tuple.point(10, 0.5, -5), Tuple.vector(0, 0, 1));
+    assertThat(candidates(bvh, r)).containsExactly(1);
+  }
+}
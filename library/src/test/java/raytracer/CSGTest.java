@@ -37,6 +37,19 @@ public class CSGTest {
     assertIntersections(ray, difference, -1.5, -0.5);
   }
 
+  @Test
+  // Shadow rays only hit the combined surfaces.
+  public void hitsShadowCaster() {
+    Shape difference = CSG.createDifference(leftShape(), rightShape());
+    // Passes through the part of the left sphere removed by the right sphere.
+    Ray throughHole = Ray.create(Tuple.point(1, 0, -5), Tuple.vector(0, 0, 1));
+    assertThat(difference.hitsShadowCaster(throughHole, 100, false)).isFalse();
+
+    Ray throughRemainder = Ray.create(Tuple.point(-1, 0, -5), Tuple.vector(0, 0, 1));
+    assertThat(difference.hitsShadowCaster(throughRemainder, 100, false)).isTrue();
+    assertThat(difference.hitsShadowCaster(throughRemainder, 4, false)).isFalse();
+  }
+
   private void assertIntersections(Ray ray, Shape csg, double t1, double t2) {
     Intersections xs = csg.intersect(ray);
     assertThat(xs.length()).isEqualTo(2);
@@ -6,6 +6,8 @@ import static raytracer.Testing.EPSILON;
 import static raytracer.Testing.ISQRT2;
 import static raytracer.TupleSubject.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -66,6 +68,18 @@ public class CameraTest {
     assertThat(r.direction()).isApproximatelyEqualTo(Tuple.vector(ISQRT2, 0, -ISQRT2));
   }
 
+  @Test
+  // Rays can pass through any point of a pixel, with pixel centers at whole coordinates.
+  public void rayThroughPointInPixel() {
+    Camera c = Camera.create(201, 101, Math.PI / 2);
+    assertThat(c.rayForPixel(100.0, 50.0)).isEqualTo(c.rayForPixel(100, 50));
+    Ray r = c.rayForPixel(0.5, 0.5);
+    // Halfway between the corner pixel and its diagonal neighbor.
+    Tuple corner = c.rayForPixel(0, 0).direction();
+    Tuple neighbor = c.rayForPixel(1, 1).direction();
+    assertThat(r.direction()).isApproximatelyEqualTo(corner.plus(neighbor).normalize());
+  }
+
   @Test
   // Scenario: Rendering a world with a camera
   public void renderWorldPixel() {
@@ -77,4 +91,211 @@ public class CameraTest {
     Canvas image = camera.render(w);
     assertThat(image.pixel(5, 5)).isApproximatelyEqualTo(Color.create(0.38066, 0.47583, 0.2855));
   }
+
+  @Test
+  // Tiled parallel rendering produces exactly the sequential image.
+  public void renderParallelMatchesSequential() {
+    World w = WorldTest.createDefaultWorld();
+    Tuple from = Tuple.point(0, 0, -5);
+    Tuple to = Tuple.point(0, 0, 0);
+    Tuple up = Tuple.vector(0, 1, 0);
+    Camera camera = Camera.create(23, 17, Math.PI / 2, from, to, up);
+    Canvas expected = camera.render(w);
+    Canvas actual =
+        camera.render(w, RenderOptions.builder().setThreadCount(3).setTileSize(4).build());
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(actual.pixel(x, y)).isEqualTo(expected.pixel(x, y));
+      }
+    }
+  }
+
+  @Test
+  // Rendering with ray packets produces exactly the per-ray image.
+  public void renderPacketsMatchesSequential() {
+    World w = WorldTest.createDefaultWorld();
+    Shape floor = Plane.create();
+    floor.setTransform(Matrix.translation(0, -1, 0));
+    floor.setMaterial(Material.builder().setReflectivity(0.5).build());
+    w.addShape(floor);
+    Tuple from = Tuple.point(1, 2, -5);
+    Tuple to = Tuple.point(0, 0, 0);
+    Tuple up = Tuple.vector(0, 1, 0);
+    Camera camera = Camera.create(23, 17, Math.PI / 2, from, to, up);
+    Canvas expected = camera.render(w);
+    Canvas actual =
+        camera.render(
+            w, RenderOptions.builder().setThreadCount(2).setTileSize(8).setPacketSize(3).build());
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(actual.pixel(x, y)).isEqualTo(expected.pixel(x, y));
+      }
+    }
+  }
+
+  @Test
+  // Rendering in any traversal order produces exactly the sequential image.
+  public void renderTraversalOrdersMatchSequential() {
+    World w = WorldTest.createDefaultWorld();
+    Tuple from = Tuple.point(0, 0, -5);
+    Tuple to = Tuple.point(0, 0, 0);
+    Tuple up = Tuple.vector(0, 1, 0);
+    Camera camera = Camera.create(23, 17, Math.PI / 2, from, to, up);
+    Canvas expected = camera.render(w);
+    for (TraversalOrder order : TraversalOrder.values()) {
+      for (int packetSize : new int[] {0, 3}) {
+        RenderOptions options =
+            RenderOptions.builder()
+                .setThreadCount(3)
+                .setTileSize(5)
+                .setPacketSize(packetSize)
+                .setTraversalOrder(order)
+                .build();
+        Canvas actual = camera.render(w, options);
+        for (int y = 0; y < 17; ++y) {
+          for (int x = 0; x < 23; ++x) {
+            assertThat(actual.pixel(x, y)).isEqualTo(expected.pixel(x, y));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  // Antialiasing only supersamples pixels on edges.
+  public void renderAntialiased() {
+    World w = WorldTest.createDefaultWorld();
+    Tuple from = Tuple.point(0, 0, -5);
+    Tuple to = Tuple.point(0, 0, 0);
+    Tuple up = Tuple.vector(0, 1, 0);
+    Camera camera = Camera.create(23, 17, Math.PI / 2, from, to, up);
+    int pixelCount = 23 * 17;
+    RenderOptions options = RenderOptions.builder().setThreadCount(2).setTileSize(8).build();
+    RenderResult plain = camera.renderWithReport(w, options);
+    assertThat(plain.sampleCount()).isEqualTo(pixelCount);
+    assertThat(plain.supersampledPixelCount()).isEqualTo(0);
+
+    RenderResult antialiased =
+        camera.renderWithReport(w, options.toBuilder().setAntialiasingDepth(2).build());
+    int supersampled = antialiased.supersampledPixelCount();
+    assertThat(supersampled).isGreaterThan(0);
+    assertThat(supersampled).isLessThan(pixelCount / 2);
+    // Four samples for each supersampled pixel, and four more for each split quadrant.
+    assertThat(antialiased.sampleCount()).isAtLeast(pixelCount + 4L * supersampled);
+    assertThat(antialiased.sampleCount()).isAtMost(pixelCount + 20L * supersampled);
+    Canvas packets =
+        camera.render(w, options.toBuilder().setAntialiasingDepth(2).setPacketSize(3).build());
+    int changed = 0;
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(packets.pixel(x, y)).isEqualTo(antialiased.canvas().pixel(x, y));
+        if (!antialiased.canvas().pixel(x, y).equals(plain.canvas().pixel(x, y))) {
+          ++changed;
+        }
+      }
+    }
+    assertThat(changed).isAtMost(supersampled);
+    // The background away from the sphere is unchanged.
+    assertThat(antialiased.canvas().pixel(0, 0)).isEqualTo(Color.BLACK);
+  }
+
+  // Returns a camera looking at the spheres of the default world, with an image size that isn't a
+  // multiple of the progressive block sizes.
+  private static Camera createProgressiveCamera() {
+    return Camera.create(
+        23, 17, Math.PI / 2, Tuple.point(0, 0, -5), Tuple.point(0, 0, 0), Tuple.vector(0, 1, 0));
+  }
+
+  @Test
+  // Scenario: Rendering progressively refines a coarse image into the full one
+  public void renderProgressively() {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createProgressiveCamera();
+    RenderOptions options = RenderOptions.builder().setThreadCount(2).setTileSize(5).build();
+    RenderResult full = camera.renderWithReport(w, options);
+    List<Canvas> snapshots = new ArrayList<>();
+    RenderResult progressive =
+        camera.renderProgressively(
+            w,
+            options,
+            (snapshot, pass, passCount) -> {
+              assertThat(pass).isEqualTo(snapshots.size());
+              assertThat(passCount).isEqualTo(4);
+              snapshots.add(snapshot);
+              return true;
+            });
+    assertThat(snapshots).hasSize(4);
+    // No more rays than a full render.
+    assertThat(progressive.sampleCount()).isEqualTo(full.sampleCount());
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(progressive.canvas().pixel(x, y)).isEqualTo(full.canvas().pixel(x, y));
+        assertThat(snapshots.get(3).pixel(x, y)).isEqualTo(full.canvas().pixel(x, y));
+        // The first pass fills each 8x8 block with the color of its top left pixel.
+        assertThat(snapshots.get(0).pixel(x, y))
+            .isEqualTo(full.canvas().pixel(x / 8 * 8, y / 8 * 8));
+        assertThat(snapshots.get(2).pixel(x, y))
+            .isEqualTo(full.canvas().pixel(x / 2 * 2, y / 2 * 2));
+      }
+    }
+    if (RenderCounters.ENABLED) {
+      assertThat(progressive.statistics().get().primaryRays()).isEqualTo(23L * 17);
+    }
+  }
+
+  @Test
+  // Scenario: A progressive render stops when a pass listener asks it to
+  public void renderProgressivelyCancelled() {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createProgressiveCamera();
+    RenderOptions options =
+        RenderOptions.builder().setThreadCount(2).setProgressiveBlockSize(4).build();
+    List<Canvas> snapshots = new ArrayList<>();
+    RenderResult result =
+        camera.renderProgressively(
+            w,
+            options,
+            (snapshot, pass, passCount) -> {
+              assertThat(passCount).isEqualTo(3);
+              snapshots.add(snapshot);
+              return false;
+            });
+    assertThat(snapshots).hasSize(1);
+    // One ray for each 4x4 block.
+    assertThat(result.sampleCount()).isEqualTo(6 * 5);
+    Canvas full = camera.render(w, options);
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(result.canvas().pixel(x, y)).isEqualTo(full.pixel(x / 4 * 4, y / 4 * 4));
+      }
+    }
+  }
+
+  @Test
+  // Scenario: Antialiasing is the last pass of a progressive render
+  public void renderProgressivelyAntialiased() {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createProgressiveCamera();
+    RenderOptions options =
+        RenderOptions.builder().setThreadCount(2).setTileSize(8).setAntialiasingDepth(2).build();
+    RenderResult full = camera.renderWithReport(w, options);
+    int[] passes = {0};
+    RenderResult progressive =
+        camera.renderProgressively(
+            w,
+            options,
+            (snapshot, pass, passCount) -> {
+              assertThat(passCount).isEqualTo(5);
+              ++passes[0];
+              return true;
+            });
+    assertThat(passes[0]).isEqualTo(5);
+    assertThat(progressive.sampleCount()).isEqualTo(full.sampleCount());
+    assertThat(progressive.supersampledPixelCount()).isEqualTo(full.supersampledPixelCount());
+    for (int y = 0; y < 17; ++y) {
+      for (int x = 0; x < 23; ++x) {
+        assertThat(progressive.canvas().pixel(x, y)).isEqualTo(full.canvas().pixel(x, y));
+      }
+    }
+  }
 }
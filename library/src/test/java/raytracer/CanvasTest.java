@@ -2,7 +2,11 @@ package raytracer;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -50,6 +54,29 @@ public class CanvasTest {
     assertThat(c.pixel(2, 23)).isEqualTo(Color.BLACK);
   }
 
+  @Test
+  // Scenario: Reading and writing whole rows of a canvas
+  public void rows() {
+    Canvas c = new Canvas(3, 2);
+    c.setPixel(1, 1, Color.create(0.1, 0.2, 0.3));
+    double[] row = new double[3 * Canvas.CHANNELS];
+    c.getRow(1, row);
+    assertThat(row).usingExactEquality().containsExactly(0, 0, 0, 0.1, 0.2, 0.3, 0, 0, 0);
+
+    c.setRow(0, new double[] {1, 0, 0, 0, 1, 0, 0, 0, 1});
+    assertThat(c.pixel(0, 0)).isEqualTo(Color.RED);
+    assertThat(c.pixel(1, 0)).isEqualTo(Color.GREEN);
+    assertThat(c.pixel(2, 0)).isEqualTo(Color.BLUE);
+    assertThat(c.pixel(1, 1)).isEqualTo(Color.create(0.1, 0.2, 0.3));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  // Scenario: Reading a row out of range
+  public void rowOutOfRange() {
+    Canvas c = new Canvas(3, 2);
+    c.getRow(2, new double[3 * Canvas.CHANNELS]);
+  }
+
   // Returns the PPM file string for the given canvas.
   private String toPpmString(Canvas c) {
     ByteArrayOutputStream ppmStream = new ByteArrayOutputStream();
@@ -105,4 +132,64 @@ public class CanvasTest {
     char lastChar = ppmString.charAt(ppmString.length() - 1);
     assertThat(lastChar).isEqualTo('\n');
   }
+
+  // Returns a canvas with a variety of pixel colors.
+  private Canvas testCanvas() {
+    Canvas c = new Canvas(30, 4);
+    c.forEachIndex((x, y) -> c.setPixel(x, y, Color.create(x / 30.0, y / 4.0, (x * y) / 90.0)));
+    c.setPixel(0, 0, Color.create(1.5, -0.5, 1));
+    return c;
+  }
+
+  @Test
+  // Scenario: Constructing a binary PPM file
+  public void ppmBinary() throws IOException {
+    Canvas c = new Canvas(2, 1);
+    c.setPixel(0, 0, Color.create(1.5, 0, 0.5));
+    c.setPixel(1, 0, Color.create(0, 0.1, 1));
+    ByteArrayOutputStream ppmStream = new ByteArrayOutputStream();
+    c.writePpmBinaryStream(ppmStream);
+    byte[] header = "P6\n2 1\n255\n".getBytes(StandardCharsets.US_ASCII);
+    byte[] expected = Arrays.copyOf(header, header.length + 6);
+    byte[] pixels = {(byte) 255, 0, (byte) 128, 0, 25, (byte) 255};
+    System.arraycopy(pixels, 0, expected, header.length, pixels.length);
+    assertThat(ppmStream.toByteArray()).isEqualTo(expected);
+  }
+
+  @Test
+  // Scenario: Reading back an ASCII PPM file
+  public void readPpm() throws IOException {
+    Canvas c = testCanvas();
+    String ppm = toPpmString(c);
+    Canvas read = Canvas.readPpmStream(new ByteArrayInputStream(ppm.getBytes()));
+    assertThat(read.width()).isEqualTo(30);
+    assertThat(read.height()).isEqualTo(4);
+    assertThat(toPpmString(read)).isEqualTo(ppm);
+    assertThat(read.pixel(0, 0)).isEqualTo(Color.create(1, 0, 1));
+  }
+
+  @Test
+  // Scenario: Reading back a binary PPM file
+  public void readPpmBinary() throws IOException {
+    Canvas c = testCanvas();
+    ByteArrayOutputStream ppmStream = new ByteArrayOutputStream();
+    c.writePpmBinaryStream(ppmStream);
+    Canvas read = Canvas.readPpmStream(new ByteArrayInputStream(ppmStream.toByteArray()));
+    assertThat(toPpmString(read)).isEqualTo(toPpmString(c));
+  }
+
+  @Test
+  // Scenario: Reading a PPM file with comments and a larger maximum value
+  public void readPpmWithComments() throws IOException {
+    String ppm = "P3\n# comment\n2 1 # size\n1000\n1000 0 500\n0 250 0\n";
+    Canvas c = Canvas.readPpmStream(new ByteArrayInputStream(ppm.getBytes()));
+    assertThat(c.pixel(0, 0)).isEqualTo(Color.create(1, 0, 0.5));
+    assertThat(c.pixel(1, 0)).isEqualTo(Color.create(0, 0.25, 0));
+  }
+
+  @Test(expected = IOException.class)
+  // Scenario: Reading a truncated PPM file
+  public void readTruncatedPpm() throws IOException {
+    Canvas.readPpmStream(new ByteArrayInputStream("P6\n2 1\n255\nabc".getBytes()));
+  }
 }
@@ -0,0 +1,101 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static raytracer.ColorSubject.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Per-pixel cost maps
+public class CostMapTest {
+
+  private static Camera createCamera() {
+    return Camera.create(
+        11, 11, Math.PI / 2, Tuple.point(0, 0, -5), Tuple.point(0, 0, 0), Tuple.vector(0, 1, 0));
+  }
+
+  @Test
+  // Scenario: Costs are shown from black for none to white for the highest
+  public void toFalseColor() {
+    CostMap map = new CostMap(CostMap.Metric.NANOS, 3, 1);
+    map.addCost(1, 0, 5);
+    map.addCost(2, 0, 10);
+    Canvas canvas = map.toFalseColor();
+    assertThat(canvas.pixel(0, 0)).isEqualTo(Color.BLACK);
+    // Halfway between magenta and red.
+    assertThat(canvas.pixel(1, 0)).isApproximatelyEqualTo(Color.create(1, 0, 0.5));
+    assertThat(canvas.pixel(2, 0)).isEqualTo(Color.WHITE);
+  }
+
+  @Test
+  // Scenario: Writing a cost map as text
+  public void writeRawStream() {
+    CostMap map = new CostMap(CostMap.Metric.INTERSECTION_TESTS, 3, 2);
+    map.addCost(0, 0, 1);
+    map.addCost(2, 1, 42);
+    map.addCost(2, 1, 3);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    map.writeRawStream(out);
+    assertThat(new String(out.toByteArray(), StandardCharsets.US_ASCII))
+        .isEqualTo("INTERSECTION_TESTS\n3 2\n1 0 0\n0 0 45\n");
+    assertThat(map.totalCost()).isEqualTo(46);
+  }
+
+  @Test
+  // Scenario: Rendering with a cost map
+  public void renderCostMap() {
+    World w = WorldTest.createDefaultWorld();
+    RenderOptions options =
+        RenderOptions.builder()
+            .setThreadCount(2)
+            .setTileSize(4)
+            .setCostMetric(CostMap.Metric.NANOS)
+            .build();
+    RenderResult result = createCamera().renderWithReport(w, options);
+    CostMap map = result.costMap().get();
+    assertThat(map.metric()).isEqualTo(CostMap.Metric.NANOS);
+    assertThat(map.width()).isEqualTo(11);
+    assertThat(map.height()).isEqualTo(11);
+    assertThat(map.totalCost()).isGreaterThan(0L);
+    // Measuring costs doesn't change the image.
+    Canvas plain = createCamera().render(w, options.toBuilder().build());
+    for (int y = 0; y < 11; ++y) {
+      for (int x = 0; x < 11; ++x) {
+        assertThat(result.canvas().pixel(x, y)).isEqualTo(plain.pixel(x, y));
+      }
+    }
+    assertThat(createCamera().renderWithReport(w, RenderOptions.create()).costMap().isPresent())
+        .isFalse();
+  }
+
+  @Test
+  // Scenario: Counting intersection tests per pixel
+  public void renderIntersectionTestCosts() {
+    if (!RenderCounters.ENABLED) {
+      return;
+    }
+    World w = WorldTest.createDefaultWorld();
+    RenderOptions options =
+        RenderOptions.builder()
+            .setThreadCount(2)
+            .setTileSize(4)
+            .setCostMetric(CostMap.Metric.INTERSECTION_TESTS)
+            .build();
+    for (int packetSize : new int[] {0, 3}) {
+      RenderResult result =
+          createCamera().renderWithReport(w, options.toBuilder().setPacketSize(packetSize).build());
+      CostMap map = result.costMap().get();
+      // Every test is made while tracing some pixel.
+      assertThat(map.totalCost()).isEqualTo(result.statistics().get().totalIntersectionTests());
+      if (packetSize == 0) {
+        // Pixels on the spheres also trace shadow rays, unlike those that miss everything.
+        assertThat(map.cost(5, 5)).isGreaterThan(map.cost(0, 0));
+        assertThat(map.cost(0, 0)).isGreaterThan(0L);
+      }
+    }
+  }
+}
@@ -50,9 +50,10 @@ public class GroupTest {
     assertThat(g.boundingBox().getRange())
         .isApproximatelyEqualTo(Range3.create(4, 6, -1, 1, -1, 1));
 
+    // The group's box is reported in its parent's coordinates.
     g.setTransform(Matrix.scaling(2, 2, 2));
     assertThat(g.boundingBox().getRange())
-        .isApproximatelyEqualTo(Range3.create(4, 6, -1, 1, -1, 1));
+        .isApproximatelyEqualTo(Range3.create(8, 12, -2, 2, -2, 2));
   }
 
   @Test
@@ -91,6 +92,28 @@ public class GroupTest {
     //  assertThat(xs.get(3).shape()).isEqualTo(s1);
   }
 
+  @Test
+  // The closest hit in a group is found across all of its shapes.
+  public void intersectClosest() {
+    Shape s1 = Sphere.create();
+    Shape s2 = Sphere.create();
+    s2.setTransform(Matrix.translation(0, 0, -3));
+    Shape s3 = Sphere.create();
+    s3.setTransform(Matrix.translation(5, 0, 0));
+
+    Group g = Group.create();
+    g.add(s1);
+    g.add(s2);
+    g.add(s3);
+    g.setTransform(Matrix.scaling(2, 2, 2));
+
+    Ray r = Ray.create(Tuple.point(0, 0, -10), Tuple.vector(0, 0, 1));
+    HitRecord hit = new HitRecord();
+    assertThat(g.intersectClosest(r, hit)).isTrue();
+    assertThat(hit.t()).isWithin(EPSILON).of(2);
+    assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+  }
+
   @Test
   // Scenario: Intersecting a transformed group
   public void intersectTransformedGroup() {
@@ -126,4 +149,93 @@ public class GroupTest {
     assertThat(xs.get(0).normalv())
         .isApproximatelyEqualTo(Tuple.vector(-1, 0, -Math.sqrt(3)).normalize());
   }
+
+  // Returns a group of spheres spread along the x axis.
+  private static Group createSphereRow(int count) {
+    Group g = Group.create();
+    for (int i = 0; i < count; ++i) {
+      Shape s = Sphere.create();
+      s.setTransform(Matrix.translation(3 * i, 0, 0));
+      g.add(s);
+    }
+    return g;
+  }
+
+  @Test
+  // Scenario: Intersecting through a bounding volume hierarchy matches testing every shape
+  public void intersectHierarchy() {
+    Group linear = createSphereRow(20);
+    linear.setHierarchyThreshold(Integer.MAX_VALUE);
+    Group hierarchy = createSphereRow(20);
+    hierarchy.setHierarchyThreshold(0);
+
+    for (int i = -1; i < 62; ++i) {
+      Ray r = Ray.create(Tuple.point(i, 0.5, -5), Tuple.vector(0, 0, 1));
+      Intersections expected = linear.intersect(r);
+      Intersections actual = hierarchy.intersect(r);
+      assertThat(actual.length()).isEqualTo(expected.length());
+      for (int j = 0; j < expected.length(); ++j) {
+        assertThat(actual.get(j).t()).isEqualTo(expected.get(j).t());
+      }
+      HitRecord hit = new HitRecord();
+      assertThat(hierarchy.intersectClosest(r, hit)).isEqualTo(expected.hit().isPresent());
+      if (hit.isHit()) {
+        assertThat(hit.t()).isEqualTo(expected.hit().get().t());
+      }
+    }
+
+    // A ray along the row hits every sphere.
+    Ray r = Ray.create(Tuple.point(-5, 0, 0), Tuple.vector(1, 0, 0));
+    assertThat(hierarchy.intersect(r).length()).isEqualTo(40);
+  }
+
+  @Test
+  // Scenario: A hierarchy is found through a transformed child group
+  public void intersectHierarchyWithTransformedChild() {
+    Group inner = createSphereRow(10);
+    inner.setTransform(Matrix.translation(0, 10, 0));
+    Group outer = Group.create();
+    outer.setHierarchyThreshold(0);
+    outer.add(inner);
+    outer.add(Sphere.create());
+
+    Ray r = Ray.create(Tuple.point(9, 10, -5), Tuple.vector(0, 0, 1));
+    Intersections xs = outer.intersect(r);
+    assertThat(xs.length()).isEqualTo(2);
+    assertThat(xs.get(0).t()).isWithin(EPSILON).of(4);
+  }
+
+  @Test
+  // Scenario: A frozen group is an unchanging copy
+  public void freeze() {
+    Group g = createSphereRow(10);
+    g.setTransform(Matrix.translation(0, 10, 0));
+    Group frozen = g.freeze();
+    assertThat(frozen.freeze()).isSameAs(frozen);
+    assertThat(frozen.shapes()).hasSize(10);
+    assertThat(frozen.transform()).isEqualTo(g.transform());
+    assertThat(frozen.boundingBox().getRange()).isEqualTo(g.boundingBox().getRange());
+
+    Ray r = Ray.create(Tuple.point(9, 10, -5), Tuple.vector(0, 0, 1));
+    assertThat(frozen.intersect(r).length()).isEqualTo(2);
+    assertThat(frozen.intersect(r).get(0).t()).isWithin(EPSILON).of(4);
+
+    // Changing the original doesn't change the copy.
+    g.shapes().get(3).setTransform(Matrix.translation(100, 0, 0));
+    g.setTransform(Matrix.identity());
+    assertThat(frozen.intersect(r).length()).isEqualTo(2);
+    assertThat(frozen.transform()).isEqualTo(Matrix.translation(0, 10, 0));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  // Scenario: Shapes can't be added to a frozen group
+  public void addToFrozen() {
+    Group.create().freeze().add(Sphere.create());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  // Scenario: The shapes of a frozen group can't be transformed
+  public void transformFrozenChild() {
+    createSphereRow(2).freeze().shapes().get(0).setTransform(Matrix.translation(1, 0, 0));
+  }
 }
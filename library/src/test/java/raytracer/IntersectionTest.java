@@ -6,6 +6,7 @@ import static raytracer.Testing.EPSILON;
 import static raytracer.Testing.ISQRT2;
 import static raytracer.TupleSubject.assertThat;
 
+import java.util.Optional;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -31,6 +32,23 @@ public class IntersectionTest {
     assertThat(i.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
   }
 
+  @Test
+  // Intersections created from equal values are equal, whether or not their normals are known.
+  public void equalIntersections() {
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    Tuple n = Tuple.vector(0, 0, -1);
+    Material m = Material.create();
+    assertThat(MaterialIntersection.create(r, 1, n, m, 3))
+        .isEqualTo(MaterialIntersection.create(r, 1, n, m, 3));
+    assertThat(MaterialIntersection.create(r, 1, n, m, 3).hashCode())
+        .isEqualTo(MaterialIntersection.createDeferred(r, 1, () -> n, m, 3).hashCode());
+    assertThat(MaterialIntersection.createDeferred(r, 1, () -> n, m, 3))
+        .isEqualTo(MaterialIntersection.create(r, 1, n, m, 3));
+    assertThat(MaterialIntersection.create(r, 1, n, m, 3))
+        .isNotEqualTo(MaterialIntersection.create(r, 1, Tuple.vector(0, 1, 0), m, 3));
+    assertThat(Intersection.create(r, 1, n, m, 3)).isEqualTo(Intersection.create(r, 1, n, m, 3));
+  }
+
   @Test
   // Scenario: Aggregating intersections
   public void aggregateIntersections() {
@@ -183,6 +201,74 @@ public class IntersectionTest {
     assertThat(xs.get(5).n2()).isWithin(EPSILON).of(1.0);
   }
 
+  @Test
+  // Scenario: Finding n1 and n2 inside many nested shapes
+  public void computeRefractiveIndicesNested() {
+    World w = new World();
+    int count = 6;
+    for (int i = 1; i <= count; ++i) {
+      Shape s = Sphere.create();
+      s.setTransform(Matrix.scaling(i, i, i));
+      s.setMaterial(Material.builder().setTransparency(1.0).setRefractiveIndex(1 + i).build());
+      w.addShape(s);
+    }
+
+    Ray r = Ray.create(Tuple.point(0, 0, -10), Tuple.vector(0, 0, 1));
+    Intersections xs = w.intersect(r);
+
+    assertThat(xs.length()).isEqualTo(2 * count);
+    for (int i = 0; i < count; ++i) {
+      // Entering the sphere of radius count - i, inside the one of radius count - i + 1.
+      Intersection entering = xs.get(i);
+      assertThat(entering.n1()).isWithin(EPSILON).of(i == 0 ? 1.0 : count - i + 2);
+      assertThat(entering.n2()).isWithin(EPSILON).of(count - i + 1);
+      // Leaving the sphere of radius i + 1, back into the one of radius i + 2.
+      Intersection leaving = xs.get(count + i);
+      assertThat(leaving.n1()).isWithin(EPSILON).of(i + 2);
+      assertThat(leaving.n2()).isWithin(EPSILON).of(i == count - 1 ? 1.0 : i + 3);
+    }
+  }
+
+  @Test
+  // Scenario: Finding the hit alone gives it the same n1 and n2 as finding all intersections
+  public void createHitRefractiveIndices() {
+    Group g = Group.create();
+    // Transparent spheres overlapping as before, and opaque ones on either side.
+    double[] radii = {2, 1, 1, 0.5, 0.5};
+    double[] zs = {0, -0.25, 0.25, 3, -3};
+    for (int i = 0; i < radii.length; ++i) {
+      Shape s = Sphere.create();
+      s.setTransform(Matrix.scaling(radii[i], radii[i], radii[i]).translate(0, 0, zs[i]));
+      s.setMaterial(
+          Material.builder().setTransparency(i < 3 ? 1.0 : 0).setRefractiveIndex(1.5 + i).build());
+      g.add(s);
+    }
+
+    for (double z = -4; z < 5; z += 0.5) {
+      Ray r = Ray.create(Tuple.point(0, 0, z), Tuple.vector(0, 0, 1));
+      Optional<Intersection> expected = Intersections.create(g.intersectStream(r)).hit();
+      Optional<Intersection> actual = Intersections.createHit(g.intersectStream(r));
+      assertThat(actual.isPresent()).isEqualTo(expected.isPresent());
+      if (expected.isPresent()) {
+        assertThat(actual.get().t()).isEqualTo(expected.get().t());
+        assertThat(actual.get().n1()).isEqualTo(expected.get().n1());
+        assertThat(actual.get().n2()).isEqualTo(expected.get().n2());
+      }
+    }
+  }
+
+  @Test
+  // Scenario: Distinct shapes have distinct shape ids
+  public void distinctShapeIds() {
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    Shape a = Sphere.create();
+    Shape b = Sphere.create();
+    Intersections xa = a.intersect(r);
+    Intersections xb = b.intersect(r);
+    assertThat(xa.get(0).shapeId()).isEqualTo(xa.get(1).shapeId());
+    assertThat(xa.get(0).shapeId()).isNotEqualTo(xb.get(0).shapeId());
+  }
+
   @Test
   // Scenario: The Schlick approximation under total internal reflection
   public void schlickWithTotalInternalReflection() {
@@ -0,0 +1,119 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static raytracer.MatrixSubject.assertThat;
+import static raytracer.Testing.EPSILON;
+import static raytracer.TupleSubject.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: 4x4 transform matrices
+public class Matrix4Test {
+
+  private static Matrix4 create(double... values) {
+    return Matrix4.from(Matrix.create(4, 4, values));
+  }
+
+  @Test
+  // Scenario: Converting to and from Matrix
+  public void roundTrip() {
+    Matrix m = Matrix.create(4, 4, new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 8, 7, 6, 5, 4, 3, 2});
+    assertThat(Matrix4.from(m).toMatrix()).isEqualTo(m);
+    assertThat(Matrix4.IDENTITY.toMatrix()).isEqualTo(Matrix.identity());
+  }
+
+  @Test
+  // Scenario: A matrix multiplied by a tuple
+  public void timesTuple() {
+    Matrix4 a = create(1, 2, 3, 4, 2, 4, 4, 2, 8, 6, 4, 1, 0, 0, 0, 1);
+    Tuple b = Tuple.create(1, 2, 3, 1);
+    assertThat(a.times(b)).isEqualTo(Tuple.create(18, 24, 33, 1));
+  }
+
+  @Test
+  // Scenario: Multiplying two matrices
+  public void timesMatrix() {
+    Matrix a = Matrix.create(4, 4, new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 8, 7, 6, 5, 4, 3, 2});
+    Matrix b = Matrix.create(4, 4, new double[] {-2, 1, 2, 3, 3, 2, 1, -1, 4, 3, 6, 5, 1, 2, 7, 8});
+    assertThat(Matrix4.from(a).times(Matrix4.from(b)).toMatrix()).isEqualTo(a.times(b));
+  }
+
+  @Test
+  // Scenario: Transposing a matrix
+  public void transpose() {
+    Matrix a = Matrix.create(4, 4, new double[] {0, 9, 3, 0, 9, 8, 0, 8, 1, 8, 5, 3, 0, 0, 5, 8});
+    assertThat(Matrix4.from(a).transpose().toMatrix()).isEqualTo(a.transpose());
+  }
+
+  @Test
+  // Scenario: Calculating the determinant of a 4x4 matrix
+  public void determinant() {
+    Matrix4 a = create(-2, -8, 3, 5, -3, 1, 7, 3, 1, 2, -9, 6, -6, 7, 7, -9);
+    assertThat(a.determinant()).isWithin(EPSILON).of(-4071);
+    assertThat(a.isInvertible()).isTrue();
+
+    Matrix4 b = create(-4, 2, -2, -3, 9, 6, 2, 6, 0, -5, 1, -5, 0, 0, 0, 0);
+    assertThat(b.determinant()).isWithin(EPSILON).of(0);
+    assertThat(b.isInvertible()).isFalse();
+  }
+
+  @Test
+  // Scenario: Calculating the inverse of a matrix matches Matrix.invert()
+  public void inverse() {
+    double[][] cases = {
+      {-5, 2, 6, -8, 1, -5, 1, 8, 7, 7, -6, -7, 1, -3, 7, 4},
+      {8, -5, 9, 2, 7, 5, 6, 1, -6, 0, 9, 6, -3, 0, -9, -4},
+      {9, 3, 0, 9, -5, -2, -6, -3, -4, 9, 6, 4, -7, 6, 6, 2}
+    };
+    for (double[] values : cases) {
+      Matrix a = Matrix.create(4, 4, values);
+      assertThat(Matrix4.from(a).inverse().toMatrix()).isApproximatelyEqualTo(a.invert());
+    }
+  }
+
+  @Test
+  // Scenario: The inverse of the inverse is the original matrix
+  public void inverseOfInverse() {
+    Matrix4 a = Matrix4.from(Matrix.rotationX(0.3).scale(2, 3, 4).translate(1, 2, 3));
+    assertThat(a.inverse().inverse()).isSameAs(a);
+    assertThat(a.times(a.inverse()).toMatrix()).isApproximatelyEqualTo(Matrix.identity());
+  }
+
+  @Test
+  // Scenario: The inverse of an affine transform keeps points as points
+  public void inverseAffine() {
+    Matrix m =
+        Matrix.rotationX(0.7)
+            .rotateY(-1.3)
+            .rotateZ(0.4)
+            .scale(0.3, 1.7, 0.9)
+            .translate(2.6, -1.9, -4.5);
+    Matrix4 inverse = Matrix4.from(m).inverse();
+    for (int i = 0; i < 100; ++i) {
+      Tuple p = inverse.times(Tuple.point(i * 0.37 - 5, i * 0.11, 7 - i * 0.23));
+      assertThat(p.isPoint()).isTrue();
+    }
+    assertThat(inverse.times(Tuple.vector(1.3, -0.2, 0.7)).isVector()).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  // Scenario: A noninvertible matrix can't be inverted
+  public void inverseNotInvertible() {
+    create(-4, 2, -2, -3, 9, 6, 2, 6, 0, -5, 1, -5, 0, 0, 0, 0).inverse();
+  }
+
+  @Test
+  // Scenario: The normal transform is the inverse transpose without a w row
+  public void normalTransform() {
+    Matrix m = Matrix.scaling(1, 0.5, 1).rotateZ(Math.PI / 5).translate(0, 1, 0);
+    Matrix expected = m.invert().transpose().zeroRow(3);
+    assertThat(Matrix4.from(m).normalTransform().toMatrix()).isApproximatelyEqualTo(expected);
+
+    Tuple n = Matrix4.from(m).normalTransform().times(Tuple.vector(0, 1, 0));
+    assertThat(n.isVector()).isTrue();
+    assertThat(n).isApproximatelyEqualTo(expected.times(Tuple.vector(0, 1, 0)));
+  }
+}
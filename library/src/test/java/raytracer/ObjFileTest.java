@@ -2,8 +2,13 @@ package raytracer;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -110,26 +115,21 @@ public class ObjFileTest {
   }
 
   @Test
-  // Scenario: Converting an OBJ file to a group
+  // Scenario: Converting an OBJ file to a mesh
   public void asShape() throws Exception {
     ObjFile objFile = ObjFile.parseResource("/triangles.obj");
     assertThat(objFile.ignoredCommandCount()).isEqualTo(0);
     Shape topShape = objFile.asShape();
-    // peek inside topShape
-    assertThat(topShape).isInstanceOf(Group.class);
-    List<Shape> innerShapes = ((Group) topShape).shapes();
-    assertThat(innerShapes.size()).isEqualTo(2);
-    assertSingleTriangleGroup(innerShapes.get(0));
-    assertSingleTriangleGroup(innerShapes.get(1));
-  }
+    assertThat(topShape).isInstanceOf(TriangleMesh.class);
+    TriangleMesh mesh = (TriangleMesh) topShape;
+    assertThat(mesh.getTriangleCount()).isEqualTo(2);
+    assertThat(ImmutableList.of(mesh.getTriangle(0), mesh.getTriangle(1)))
+        .containsExactly(
+            objFile.getGroup("FirstGroup").getTriangle(1),
+            objFile.getGroup("SecondGroup").getTriangle(1));
 
-  public void assertSingleTriangleGroup(Shape shape) {
-    assertThat(shape).isInstanceOf(Group.class);
-    List<Shape> innerShapes = ((Group) shape).shapes();
-    assertThat(innerShapes.size()).isEqualTo(1);
-    assertThat(innerShapes.get(0)).isInstanceOf(GeometryShape.class);
-    GeometryShape geometryShape = (GeometryShape) innerShapes.get(0);
-    assertThat(geometryShape.geometry()).isInstanceOf(Triangle.class);
+    Shape groupShape = objFile.getGroup("SecondGroup").asShape();
+    assertThat(((TriangleMesh) groupShape).getTriangleCount()).isEqualTo(1);
   }
 
   @Test
@@ -182,6 +182,91 @@ public class ObjFileTest {
     assertThat(triangle2.n3()).isEqualTo(objFile.getNormal(2));
   }
 
+  // Asserts that the byte and reader parsers produce the same model for the given content.
+  private static void assertParsersAgree(String content, String... groupNames) throws Exception {
+    ObjFile bytes = ObjFile.parse(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    ObjFile reader = ObjFile.parse(new StringReader(content));
+    assertThat(bytes.ignoredCommandCount()).isEqualTo(reader.ignoredCommandCount());
+    assertThat(bytes.getVertexCount()).isEqualTo(reader.getVertexCount());
+    for (int i = 1; i <= reader.getVertexCount(); ++i) {
+      assertThat(bytes.getVertex(i)).isEqualTo(reader.getVertex(i));
+    }
+    assertThat(bytes.getNormalCount()).isEqualTo(reader.getNormalCount());
+    for (int i = 1; i <= reader.getNormalCount(); ++i) {
+      assertThat(bytes.getNormal(i)).isEqualTo(reader.getNormal(i));
+    }
+    assertThat(bytes.getGroupCount()).isEqualTo(reader.getGroupCount());
+    for (String name : groupNames) {
+      assertThat(describe(bytes.getGroup(name))).isEqualTo(describe(reader.getGroup(name)));
+    }
+  }
+
+  private static List<String> describe(ObjFile.TriangleGroup group) {
+    return group
+        .triangles()
+        .map(
+            t ->
+                String.join(
+                    " ",
+                    "" + t.p1(),
+                    "" + t.p2(),
+                    "" + t.p3(),
+                    "" + t.n1(),
+                    "" + t.n2(),
+                    "" + t.n3()))
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  // Scenario: Parsing bytes matches parsing characters
+  public void bytesMatchReader() throws Exception {
+    String input =
+        String.join(
+            "\r\n",
+            "# A comment",
+            "#not a comment",
+            "mtllib teapot.mtl",
+            "v -1 1 0",
+            "v\t-1.5e0  0.25E+1 1e-3",
+            "v 1.0000000000000000001 -.5 3.",
+            "v 0x1.8p1 12345678901234567890 1e300",
+            "  v 7 7 7",
+            "vt 0.5 0.5",
+            "vn 0 0 1",
+            "vn -0 1e-400 0.707",
+            "vn 1 2 3",
+            "",
+            "g First",
+            "f 1 2 3",
+            "f 1//3 2/7/1 3//2 4//1",
+            "g Second",
+            "f 4/1/2 2/1/2 3/1/2",
+            "usemtl red");
+    assertParsersAgree(input, ObjFile.DEFAULT_GROUP_NAME, "First", "Second");
+    assertThat(ObjFile.parseContent(input).getVertex(2)).isEqualTo(Tuple.point(-1.5, 2.5, 0.001));
+  }
+
+  @Test
+  // Scenario: Parsing a memory-mapped file
+  public void parseMappedFile() throws Exception {
+    ObjFile objFile = ObjFile.parseFile(getClass().getResource("/triangles.obj").getPath());
+    assertThat(objFile.getVertexCount()).isEqualTo(4);
+    assertThat(objFile.getGroup("FirstGroup").getTriangleCount()).isEqualTo(1);
+    assertThat(objFile.getGroup("SecondGroup").getTriangleCount()).isEqualTo(1);
+  }
+
+  @Test(expected = ObjFile.ParsingException.class)
+  // Scenario: Malformed numbers are reported
+  public void malformedNumber() throws Exception {
+    ObjFile.parseContent("v 1 2 3e");
+  }
+
+  @Test(expected = ObjFile.ParsingException.class)
+  // Scenario: Malformed face corners are reported
+  public void malformedCorner() throws Exception {
+    ObjFile.parseContent(String.join("\n", "v 1 2 3", "vn 0 1 0", "f 1/1/ 1 1"));
+  }
+
   /*
   @Test
   // Scenario: Bounding box
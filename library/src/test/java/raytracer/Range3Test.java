@@ -2,6 +2,7 @@ package raytracer;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
+import static raytracer.Range3Subject.assertThat;
 import static raytracer.TupleSubject.assertThat;
 
 import com.google.common.collect.Range;
@@ -114,4 +115,30 @@ public class Range3Test {
     assertThat(range.transform(Matrix.scaling(0, 1, 2)))
         .isEqualTo(Range3.create(0, 0, 2, 3, 8, 10));
   }
+
+  @Test
+  // Scenario: A rotated range covers all of its transformed corners
+  public void transformRotated() {
+    Range3 range = Range3.create(-1, 2, 0, 1, 3, 4);
+    Matrix m = Matrix.rotationY(0.5).rotateZ(-1.2).scale(2, 1, 0.5).translate(1, -2, 3);
+    Range3 expected = Range3.createEmpty();
+    for (double x : new double[] {-1, 2}) {
+      for (double y : new double[] {0, 1}) {
+        for (double z : new double[] {3, 4}) {
+          Tuple p = m.times(Tuple.point(x, y, z));
+          expected = expected.span(Range3.create(p.x(), p.x(), p.y(), p.y(), p.z(), p.z()));
+        }
+      }
+    }
+    assertThat(range.transform(m)).isApproximatelyEqualTo(expected);
+  }
+
+  @Test
+  // Scenario: Empty and unbounded ranges keep their kind when transformed
+  public void transformEmptyAndUnbounded() {
+    Range3 unbounded = Range3.create(Range.atLeast(0.0), Range.closed(0.0, 1.0), Range.all());
+    assertThat(unbounded.isUnbounded()).isTrue();
+    assertThat(unbounded.transform(Matrix.scaling(0, 1, 1))).isEqualTo(Range3.createUnbounded());
+    assertThat(Range3.createEmpty().transform(Matrix.translation(1, 2, 3)).isEmpty()).isTrue();
+  }
 }
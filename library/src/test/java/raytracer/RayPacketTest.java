@@ -0,0 +1,109 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static raytracer.TupleSubject.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Ray packets
+public class RayPacketTest {
+
+  // Returns a transformed group of spheres, cubes and a mesh, intersected through a hierarchy.
+  private static Group createScene() {
+    Group g = Group.create();
+    g.setHierarchyThreshold(0);
+    for (int i = 0; i < 12; ++i) {
+      Shape s = (i % 2 == 0) ? Sphere.create() : Cube.create();
+      s.setTransform(Matrix.scaling(0.4, 0.4, 0.4).translate(i % 4 - 1.5, i / 4 - 1, i % 3));
+      g.add(s);
+    }
+    TriangleMesh mesh = TriangleMeshTest.createGrid();
+    mesh.setTransform(Matrix.translation(-2, -1.5, -1));
+    g.add(mesh);
+    g.setTransform(Matrix.rotationY(0.2).translate(0, 0, 1));
+    return g;
+  }
+
+  // Returns rays from a common origin through a grid of points.
+  private static Ray[] createRays(int size) {
+    Ray[] rays = new Ray[size * size];
+    Tuple origin = Tuple.point(0.1, 0.2, -6);
+    for (int y = 0; y < size; ++y) {
+      for (int x = 0; x < size; ++x) {
+        Tuple target = Tuple.point(-3 + 6.0 * x / size, -3 + 6.0 * y / size, 0);
+        rays[y * size + x] = Ray.create(origin, target.minus(origin).normalize());
+      }
+    }
+    return rays;
+  }
+
+  @Test
+  // Scenario: A packet records the same closest hits as its rays do one by one
+  public void intersectClosest() {
+    Group g = createScene();
+    Ray[] rays = createRays(16);
+    RayPacket packet = RayPacket.create(rays);
+    g.intersectClosest(packet);
+    int hitCount = 0;
+    for (int i = 0; i < rays.length; ++i) {
+      HitRecord expected = new HitRecord();
+      g.intersectClosest(rays[i], expected);
+      HitRecord actual = packet.record(i);
+      assertThat(actual.isHit()).isEqualTo(expected.isHit());
+      if (expected.isHit()) {
+        ++hitCount;
+        assertThat(actual.t()).isEqualTo(expected.t());
+        assertThat(actual.shapeId()).isEqualTo(expected.shapeId());
+        assertThat(actual.normalv()).isEqualTo(expected.normalv());
+      }
+    }
+    assertThat(hitCount).isGreaterThan(rays.length / 8);
+    assertThat(hitCount).isLessThan(rays.length);
+  }
+
+  @Test
+  // Scenario: Shadowed rays of a packet are terminated
+  public void terminateShadowed() {
+    Group g = createScene();
+    Ray[] rays = createRays(16);
+    HitRecord[] records = new HitRecord[rays.length];
+    for (int i = 0; i < rays.length; ++i) {
+      records[i] = new HitRecord(4 + (i % 5));
+    }
+    RayPacket packet = RayPacket.create(rays, records);
+    g.terminateShadowed(packet, false);
+    for (int i = 0; i < rays.length; ++i) {
+      boolean expected = g.hitsShadowCaster(rays[i], 4 + (i % 5), false);
+      assertThat(packet.isTerminated(i)).isEqualTo(expected);
+      assertThat(packet.isActive(i)).isEqualTo(!expected);
+    }
+  }
+
+  @Test
+  // Scenario: A packet transform moves every ray as Ray.transform() does
+  public void transform() {
+    Ray[] rays = createRays(3);
+    Matrix4 m = Matrix4.from(Matrix.rotationX(0.4).scale(1, 2, 3).translate(1, -2, 0.5));
+    RayPacket packet = RayPacket.create(rays).transform(m);
+    for (int i = 0; i < rays.length; ++i) {
+      Ray expected = rays[i].transform(m);
+      assertThat(packet.ray(i).origin()).isEqualTo(expected.origin());
+      assertThat(packet.ray(i).direction()).isEqualTo(expected.direction());
+    }
+  }
+
+  @Test
+  // Scenario: World colors for a packet match those of its rays
+  public void colorAt() {
+    World w = WorldTest.createDefaultWorld();
+    w.addShape(createScene());
+    Ray[] rays = createRays(8);
+    Color[] colors = w.colorAt(rays);
+    for (int i = 0; i < rays.length; ++i) {
+      assertThat(colors[i]).isEqualTo(w.colorAt(rays[i]));
+    }
+  }
+}
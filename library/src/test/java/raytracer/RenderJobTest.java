@@ -0,0 +1,150 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Background render jobs
+public class RenderJobTest {
+
+  private static Camera createCamera(int size) {
+    return Camera.create(
+        size,
+        size,
+        Math.PI / 2,
+        Tuple.point(0, 0, -5),
+        Tuple.point(0, 0, 0),
+        Tuple.vector(0, 1, 0));
+  }
+
+  @Test
+  // Scenario: A render job renders as renderWithReport() does
+  public void startRender() throws Exception {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createCamera(21);
+    RenderOptions options = RenderOptions.builder().setThreadCount(2).setTileSize(4).build();
+    RenderJob job = camera.startRender(w, options);
+    RenderResult result = job.get();
+    assertThat(job.isDone()).isTrue();
+    assertThat(job.isCancelled()).isFalse();
+    assertThat(job.tileCount()).isEqualTo(36);
+    assertThat(job.completedTileCount()).isEqualTo(36);
+    assertThat(result.isComplete()).isTrue();
+    assertThat(result.coverage().coveredPixelCount()).isEqualTo(21 * 21);
+
+    Canvas expected = camera.render(w, options);
+    for (int y = 0; y < 21; ++y) {
+      for (int x = 0; x < 21; ++x) {
+        assertThat(result.canvas().pixel(x, y)).isEqualTo(expected.pixel(x, y));
+      }
+    }
+  }
+
+  @Test
+  // Scenario: A render out of time returns the tiles done so far
+  public void timeLimit() throws Exception {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createCamera(21);
+    RenderOptions options = RenderOptions.builder().setThreadCount(2).setTileSize(4).build();
+    RenderResult none =
+        camera.startRender(w, options.toBuilder().setTimeLimit(Duration.ZERO).build()).get();
+    assertThat(none.isComplete()).isFalse();
+    assertThat(none.coverage().coveredPixelCount()).isEqualTo(0);
+    assertThat(none.sampleCount()).isEqualTo(0);
+
+    Canvas expected = camera.render(w, options);
+    RenderResult partial =
+        camera.renderWithReport(
+            w, options.toBuilder().setTimeLimit(Duration.ofNanos(200_000)).build());
+    CoverageMask coverage = partial.coverage();
+    for (int y = 0; y < 21; ++y) {
+      for (int x = 0; x < 21; ++x) {
+        Color c = partial.canvas().pixel(x, y);
+        assertThat(c).isEqualTo(coverage.isCovered(x, y) ? expected.pixel(x, y) : Color.BLACK);
+      }
+    }
+  }
+
+  @Test
+  // Scenario: A render out of time during antialiasing is incomplete
+  public void timeLimitAntialiased() throws Exception {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createCamera(41);
+    RenderOptions options =
+        RenderOptions.builder().setThreadCount(2).setTileSize(4).setAntialiasingDepth(4).build();
+    RenderResult full = camera.renderWithReport(w, options);
+    Canvas aliased = camera.render(w, options.toBuilder().setAntialiasingDepth(0).build());
+    assertThat(full.isComplete()).isTrue();
+    assertThat(full.coverage().antialiasedPixelCount()).isEqualTo(41 * 41);
+
+    for (long limitNanos = 100_000; limitNanos < 200_000_000; limitNanos = limitNanos * 3 / 2) {
+      RenderResult partial =
+          camera
+              .startRender(
+                  w, options.toBuilder().setTimeLimit(Duration.ofNanos(limitNanos)).build())
+              .get();
+      CoverageMask coverage = partial.coverage();
+      int refinedPixelCount = 0;
+      for (int y = 0; y < 41; ++y) {
+        for (int x = 0; x < 41; ++x) {
+          Color c = partial.canvas().pixel(x, y);
+          if (coverage.isAntialiased(x, y)) {
+            assertThat(c).isEqualTo(full.canvas().pixel(x, y));
+            refinedPixelCount += c.equals(aliased.pixel(x, y)) ? 0 : 1;
+          } else {
+            assertThat(c).isEqualTo(coverage.isCovered(x, y) ? aliased.pixel(x, y) : Color.BLACK);
+          }
+        }
+      }
+      assertThat(partial.isComplete()).isEqualTo(coverage.antialiasedPixelCount() == 41 * 41);
+      // Only pixels in antialiased tiles are counted, some of which may keep their color.
+      assertThat(partial.supersampledPixelCount()).isAtLeast(refinedPixelCount);
+      assertThat(partial.supersampledPixelCount()).isAtMost(full.supersampledPixelCount());
+    }
+  }
+
+  @Test
+  // Scenario: A render stopped before antialiasing is incomplete
+  public void stoppedBeforeAntialiasing() {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera = createCamera(21);
+    RenderOptions options =
+        RenderOptions.builder().setThreadCount(2).setTileSize(4).setAntialiasingDepth(2).build();
+    Canvas aliased = camera.render(w, options.toBuilder().setAntialiasingDepth(0).build());
+    TileRenderer renderer = new TileRenderer(camera, w.freeze(), options);
+    RenderResult result =
+        renderer.renderProgressively(
+            (snapshot, pass, passCount) -> {
+              if (pass == passCount - 2) {
+                renderer.cancel();
+              }
+              return true;
+            });
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.coverage().coveredPixelCount()).isEqualTo(21 * 21);
+    assertThat(result.coverage().antialiasedPixelCount()).isEqualTo(0);
+    assertThat(result.supersampledPixelCount()).isEqualTo(0);
+    for (int y = 0; y < 21; ++y) {
+      for (int x = 0; x < 21; ++x) {
+        assertThat(result.canvas().pixel(x, y)).isEqualTo(aliased.pixel(x, y));
+      }
+    }
+  }
+
+  @Test(expected = CancellationException.class)
+  // Scenario: A cancelled render job has no result
+  public void cancel() throws Exception {
+    World w = WorldTest.createDefaultWorld();
+    RenderOptions options = RenderOptions.builder().setThreadCount(1).setTileSize(8).build();
+    RenderJob job = createCamera(400).startRender(w, options);
+    assertThat(job.cancel(false)).isTrue();
+    assertThat(job.isCancelled()).isTrue();
+    assertThat(job.isDone()).isTrue();
+    job.get();
+  }
+}
@@ -0,0 +1,85 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Render statistics
+public class RenderStatisticsTest {
+
+  @Test
+  // Scenario: Merging the counters of render threads
+  public void merge() {
+    Tile tile1 = Tile.create(0, 0, 4, 4);
+    Tile tile2 = Tile.create(4, 0, 4, 4);
+    RenderCounters a = new RenderCounters();
+    a.primaryRays = 16;
+    a.shadowRays = 10;
+    a.reflectionRays = 3;
+    a.boundingBoxHits = 7;
+    a.boundingBoxMisses = 2;
+    a.intersectionTests.put(Sphere.class, new long[] {20});
+    a.intersectionTests.put(
+        Triangle.createRaw(Tuple.point(0, 1, 0), Tuple.point(-1, 0, 0), Tuple.point(1, 0, 0))
+            .getClass(),
+        new long[] {5});
+    a.addTileNanos(tile1, 100);
+    a.addTileNanos(tile1, 50);
+    RenderCounters b = new RenderCounters();
+    b.primaryRays = 16;
+    b.refractionRays = 4;
+    b.boundingBoxMisses = 1;
+    b.intersectionTests.put(Sphere.class, new long[] {12});
+    b.addTileNanos(tile2, 200);
+
+    RenderStatistics statistics = RenderStatistics.merge(ImmutableList.of(a, b));
+    assertThat(statistics.primaryRays()).isEqualTo(32);
+    assertThat(statistics.shadowRays()).isEqualTo(10);
+    assertThat(statistics.reflectionRays()).isEqualTo(3);
+    assertThat(statistics.refractionRays()).isEqualTo(4);
+    assertThat(statistics.boundingBoxHits()).isEqualTo(7);
+    assertThat(statistics.boundingBoxMisses()).isEqualTo(3);
+    assertThat(statistics.boundingBoxTests()).isEqualTo(10);
+    assertThat(statistics.intersectionTests())
+        .containsExactly("Sphere", 32L, "Triangle", 5L)
+        .inOrder();
+    assertThat(statistics.totalIntersectionTests()).isEqualTo(37);
+    assertThat(statistics.tileNanos()).isEqualTo(ImmutableMap.of(tile1, 150L, tile2, 200L));
+  }
+
+  @Test
+  // Scenario: Statistics are reported with a render only when counting is enabled
+  public void renderWithReport() {
+    World w = WorldTest.createDefaultWorld();
+    Camera camera =
+        Camera.create(
+            11,
+            11,
+            Math.PI / 2,
+            Tuple.point(0, 0, -5),
+            Tuple.point(0, 0, 0),
+            Tuple.vector(0, 1, 0));
+    RenderOptions options =
+        RenderOptions.builder().setThreadCount(2).setTileSize(4).setPacketSize(2).build();
+    RenderResult result = camera.renderWithReport(w, options);
+    if (!RenderCounters.ENABLED) {
+      assertThat(result.statistics().isPresent()).isFalse();
+      return;
+    }
+    RenderStatistics statistics = result.statistics().get();
+    assertThat(statistics.primaryRays()).isEqualTo(11L * 11);
+    // One shadow ray to the single light from each hit, and there are no reflective or
+    // transparent surfaces.
+    assertThat(statistics.shadowRays()).isGreaterThan(0L);
+    assertThat(statistics.shadowRays()).isAtMost(11L * 11);
+    assertThat(statistics.reflectionRays()).isEqualTo(0);
+    assertThat(statistics.refractionRays()).isEqualTo(0);
+    assertThat(statistics.intersectionTests()).containsKey("Sphere");
+    assertThat(statistics.tileNanos().keySet()).containsExactlyElementsIn(Tile.split(11, 11, 4));
+  }
+}
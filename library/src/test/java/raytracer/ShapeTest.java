@@ -34,6 +34,27 @@ public class ShapeTest {
     }
   }
 
+  // Intersects rays at t = 4 and 6, counting the normals it computes.
+  private static class CountingGeometry extends Geometry {
+    int normalCount = 0;
+
+    @Override
+    public Range3 getRange() {
+      return Range3.createUnbounded();
+    }
+
+    @Override
+    public DoubleStream intersect(Ray localRay) {
+      return DoubleStream.of(4, 6);
+    }
+
+    @Override
+    public Tuple normalAt(Tuple point) {
+      ++normalCount;
+      return Tuple.vector(0, 0, -1);
+    }
+  }
+
   @Test
   // Scenario: The default transformation
   public void defaultTransform() {
@@ -64,6 +85,23 @@ public class ShapeTest {
     s.setMaterial(m);
     assertThat(s.material()).isEqualTo(m);
   }
+
+  @Test
+  // Scenario: Normals are only computed for intersections that are shaded
+  public void deferredNormals() {
+    CountingGeometry geometry = new CountingGeometry();
+    Shape s = new GeometryShape(geometry);
+    s.setTransform(Matrix.scaling(1, 1, 2));
+    Intersections xs = s.intersect(Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1)));
+    assertThat(xs.length()).isEqualTo(2);
+    assertThat(geometry.normalCount).isEqualTo(0);
+
+    Intersection hit = xs.hit().get();
+    assertThat(hit.point()).isApproximatelyEqualTo(Tuple.point(0, 0, -1));
+    assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+    assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+    assertThat(geometry.normalCount).isEqualTo(1);
+  }
 }
 
 /*
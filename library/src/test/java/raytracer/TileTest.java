@@ -0,0 +1,88 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Tiles
+public class TileTest {
+
+  @Test
+  // Scenario: Splitting a canvas into tiles
+  public void split() {
+    List<Tile> tiles = Tile.split(10, 5, 4);
+    assertThat(tiles)
+        .containsExactly(
+            Tile.create(0, 0, 4, 4),
+            Tile.create(4, 0, 4, 4),
+            Tile.create(8, 0, 2, 4),
+            Tile.create(0, 4, 4, 1),
+            Tile.create(4, 4, 4, 1),
+            Tile.create(8, 4, 2, 1))
+        .inOrder();
+  }
+
+  @Test
+  // Scenario: Visiting the pixels of a tile
+  public void forEachPixel() {
+    Tile tile = Tile.create(3, 5, 2, 2);
+    List<String> pixels = new ArrayList<>();
+    tile.forEachPixel((x, y) -> pixels.add(x + "," + y));
+    assertThat(pixels).containsExactly("3,5", "4,5", "3,6", "4,6").inOrder();
+    assertThat(tile.pixelCount()).isEqualTo(4);
+  }
+
+  @Test
+  // Scenario: Splitting a canvas into tiles in Z-order
+  public void splitMorton() {
+    List<Tile> tiles = Tile.split(10, 5, 4, TraversalOrder.MORTON);
+    assertThat(tiles)
+        .containsExactly(
+            Tile.create(0, 0, 4, 4),
+            Tile.create(4, 0, 4, 4),
+            Tile.create(0, 4, 4, 1),
+            Tile.create(4, 4, 4, 1),
+            Tile.create(8, 0, 2, 4),
+            Tile.create(8, 4, 2, 1))
+        .inOrder();
+  }
+
+  @Test
+  // Scenario: Visiting the pixels of a tile along a Hilbert curve
+  public void forEachPixelHilbert() {
+    Tile tile = Tile.create(3, 5, 2, 2);
+    List<String> pixels = new ArrayList<>();
+    tile.forEachPixel(TraversalOrder.HILBERT, (x, y) -> pixels.add(x + "," + y));
+    assertThat(pixels).containsExactly("3,5", "3,6", "4,6", "4,5").inOrder();
+  }
+
+  @Test
+  // Scenario: Every order visits each cell of a grid once
+  public void traversalOrders() {
+    for (TraversalOrder order : TraversalOrder.values()) {
+      for (int[] size : new int[][] {{1, 1}, {7, 3}, {3, 7}, {8, 8}, {13, 9}}) {
+        int[] cells = order.order(size[0], size[1]);
+        assertThat(Arrays.stream(cells).sorted().toArray())
+            .isEqualTo(IntStream.range(0, size[0] * size[1]).toArray());
+      }
+    }
+  }
+
+  @Test
+  // Scenario: Each cell of a square along a Hilbert curve is next to the one before it
+  public void hilbertOrderIsContinuous() {
+    int[] cells = TraversalOrder.HILBERT.order(16, 16);
+    for (int i = 1; i < cells.length; ++i) {
+      int dx = Math.abs(cells[i] % 16 - cells[i - 1] % 16);
+      int dy = Math.abs(cells[i] / 16 - cells[i - 1] / 16);
+      assertThat(dx + dy).isEqualTo(1);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package raytracer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static raytracer.Testing.EPSILON;
+import static raytracer.TupleSubject.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+// Feature: Triangle meshes
+public class TriangleMeshTest {
+
+  // Returns a 4x4 grid of bumpy squares in the xz plane, each split into two triangles.
+  // Squares in even rows have smooth normals, the others are flat.
+  static TriangleMesh createGrid() {
+    int size = 4;
+    double[] vertices = new double[3 * (size + 1) * (size + 1)];
+    double[] normals = new double[3 * (size + 1) * (size + 1)];
+    for (int z = 0; z <= size; ++z) {
+      for (int x = 0; x <= size; ++x) {
+        int v = 3 * (z * (size + 1) + x);
+        vertices[v] = x;
+        vertices[v + 1] = 0.25 * ((x + z) % 2);
+        vertices[v + 2] = z;
+        Tuple n = Tuple.vector(0.1 * x, 1, -0.1 * z).normalize();
+        normals[v] = n.x();
+        normals[v + 1] = n.y();
+        normals[v + 2] = n.z();
+      }
+    }
+    int[] vertexIndices = new int[6 * size * size];
+    int[] normalIndices = new int[6 * size * size];
+    int c = 0;
+    for (int z = 0; z < size; ++z) {
+      for (int x = 0; x < size; ++x) {
+        int corner = z * (size + 1) + x;
+        int[] corners = {
+          corner, corner + 1, corner + size + 2, corner, corner + size + 2, corner + size + 1
+        };
+        for (int i : corners) {
+          vertexIndices[c] = i;
+          normalIndices[c] = (z % 2 == 0) ? i : TriangleMesh.NO_NORMAL;
+          ++c;
+        }
+      }
+    }
+    return TriangleMesh.create(vertices, vertexIndices, normals, normalIndices);
+  }
+
+  // Returns a group of individual triangles equivalent to the given mesh.
+  private static Group toGroup(TriangleMesh mesh) {
+    Group group = Group.create();
+    for (int i = 0; i < mesh.getTriangleCount(); ++i) {
+      group.add(mesh.getTriangle(i).asShape());
+    }
+    return group;
+  }
+
+  @Test
+  // Scenario: Constructing a mesh
+  public void construct() {
+    TriangleMesh mesh =
+        TriangleMesh.create(
+            new double[] {0, 1, 0, -1, 0, 0, 1, 0, 0},
+            new int[] {0, 1, 2},
+            new double[] {0, 1, 0, -1, 0, 0},
+            new int[] {0, 1, TriangleMesh.NO_NORMAL});
+    assertThat(mesh.getTriangleCount()).isEqualTo(1);
+    Triangle t = mesh.getTriangle(0);
+    assertThat(t.p1()).isEqualTo(Tuple.point(0, 1, 0));
+    assertThat(t.p2()).isEqualTo(Tuple.point(-1, 0, 0));
+    assertThat(t.p3()).isEqualTo(Tuple.point(1, 0, 0));
+    // Without all three normals, the triangle is flat.
+    assertThat(t.n1()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+    assertThat(t.n2()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  // Scenario: Triangles must refer to existing vertices
+  public void vertexIndexOutOfRange() {
+    TriangleMesh.create(
+        new double[] {0, 1, 0, -1, 0, 0, 1, 0, 0},
+        new int[] {0, 1, 3},
+        new double[0],
+        new int[] {-1, -1, -1});
+  }
+
+  @Test
+  // Scenario: Intersecting a mesh matches intersecting its triangles
+  public void intersectMatchesTriangles() {
+    TriangleMesh mesh = createGrid();
+    Group triangles = toGroup(mesh);
+    for (double x = -0.3; x < 4.5; x += 0.37) {
+      for (double z = -0.2; z < 4.5; z += 0.41) {
+        Ray r = Ray.create(Tuple.point(x, 2, z), Tuple.vector(0.1, -1, 0.05));
+        Intersections expected = triangles.intersect(r);
+        Intersections actual = mesh.intersect(r);
+        assertThat(actual.length()).isEqualTo(expected.length());
+        for (int j = 0; j < expected.length(); ++j) {
+          assertThat(actual.get(j).t()).isWithin(EPSILON).of(expected.get(j).t());
+          assertThat(actual.get(j).normalv()).isApproximatelyEqualTo(expected.get(j).normalv());
+        }
+
+        HitRecord hit = new HitRecord();
+        assertThat(mesh.intersectClosest(r, hit)).isEqualTo(expected.hit().isPresent());
+        if (hit.isHit()) {
+          assertThat(hit.t()).isWithin(EPSILON).of(expected.hit().get().t());
+          assertThat(hit.normalv()).isApproximatelyEqualTo(expected.hit().get().normalv());
+        }
+        assertThat(mesh.hitsShadowCaster(r, Double.POSITIVE_INFINITY, false))
+            .isEqualTo(expected.length() > 0);
+      }
+    }
+  }
+
+  @Test
+  // Scenario: Intersecting a transformed mesh
+  public void intersectTransformed() {
+    TriangleMesh mesh = createGrid();
+    mesh.setTransform(Matrix.rotationX(Math.PI / 2).translate(0, 0, 5));
+    // The grid's flat corner at (1, 0, 1) is now at (1, -1, 5).
+    Ray r = Ray.create(Tuple.point(1.01, -1.02, 0), Tuple.vector(0, 0, 1));
+    HitRecord hit = new HitRecord();
+    assertThat(mesh.intersectClosest(r, hit)).isTrue();
+    assertThat(hit.t()).isWithin(0.05).of(5);
+    assertThat(hit.material()).isEqualTo(mesh.material());
+    // The bumps of the grid rise up to 0.25 towards +z.
+    assertThat(mesh.boundingBox().getRange().getMaxPoint_TESTING().z()).isWithin(EPSILON).of(5.25);
+  }
+
+  @Test
+  // Scenario: All triangles of a mesh share a shape id
+  public void sharedShapeId() {
+    TriangleMesh mesh = createGrid();
+    mesh.setTransform(Matrix.rotationZ(Math.PI / 2));
+    // A ray along the folds of the rotated grid passes through several triangles.
+    Ray r = Ray.create(Tuple.point(-0.1, -5, 0.5), Tuple.vector(0, 1, 0));
+    Intersections xs = mesh.intersect(r);
+    assertThat(xs.length()).isAtLeast(2);
+    for (int i = 1; i < xs.length(); ++i) {
+      assertThat(xs.get(i).shapeId()).isEqualTo(xs.get(0).shapeId());
+    }
+  }
+
+  @Test
+  // Scenario: Shadows are cast only by hits within range and by opaque meshes when asked
+  public void hitsShadowCaster() {
+    TriangleMesh mesh = createGrid();
+    Ray r = Ray.create(Tuple.point(1.5, 2, 1.5), Tuple.vector(0, -1, 0));
+    assertThat(mesh.hitsShadowCaster(r, 3, true)).isTrue();
+    assertThat(mesh.hitsShadowCaster(r, 1, true)).isFalse();
+
+    mesh.setMaterial(Material.builder().setTransparency(0.5).build());
+    assertThat(mesh.hitsShadowCaster(r, 3, true)).isFalse();
+    assertThat(mesh.hitsShadowCaster(r, 3, false)).isTrue();
+  }
+}
@@ -114,4 +114,15 @@ public class TriangleTest {
     assertThat(xs.length()).isEqualTo(1);
     assertThat(xs.get(0).normalv()).isApproximatelyEqualTo(Tuple.vector(-0.5547, 0.83205, 0));
   }
+
+  @Test
+  // The closest hit on a smooth triangle carries its interpolated normal.
+  public void smoothNormalClosestHit() {
+    Shape t = testSmoothTriangle();
+    Ray r = Ray.create(Tuple.point(-0.2, 0.3, -2), Tuple.vector(0, 0, 1));
+    HitRecord hit = new HitRecord();
+    assertThat(t.intersectClosest(r, hit)).isTrue();
+    assertThat(hit.t()).isWithin(EPSILON).of(2);
+    assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(-0.5547, 0.83205, 0));
+  }
 }
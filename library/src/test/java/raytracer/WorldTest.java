@@ -7,6 +7,7 @@ import static raytracer.Testing.ISQRT2;
 import static raytracer.Testing.SQRT2;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Range;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -104,6 +105,42 @@ public class WorldTest {
     assertThat(w.shadeHit(i, 0)).isApproximatelyEqualTo(Color.create(0.90498, 0.90498, 0.90498));
   }
 
+  @Test
+  // The closest hit matches the hit of the full set of intersections.
+  public void intersectClosest() {
+    World w = createDefaultWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    Intersection expected = w.intersect(r).hit().get();
+
+    HitRecord hit = new HitRecord();
+    assertThat(w.intersectClosest(r, hit)).isTrue();
+    assertThat(hit.t()).isWithin(EPSILON).of(4);
+    assertThat(hit.shapeId()).isEqualTo(expected.shapeId());
+    assertThat(hit.material()).isEqualTo(expected.material());
+    TupleSubject.assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, -1));
+  }
+
+  @Test
+  // Hits at or beyond the record's current t are ignored.
+  public void intersectClosestBeyondTMax() {
+    World w = createDefaultWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    HitRecord hit = new HitRecord(3.5);
+    assertThat(w.intersectClosest(r, hit)).isFalse();
+    assertThat(hit.isHit()).isFalse();
+  }
+
+  @Test
+  // Rays starting inside a shape hit its far side.
+  public void intersectClosestFromInside() {
+    World w = createDefaultWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, 0), Tuple.vector(0, 0, 1));
+    HitRecord hit = new HitRecord();
+    assertThat(w.intersectClosest(r, hit)).isTrue();
+    assertThat(hit.t()).isWithin(EPSILON).of(0.5);
+    TupleSubject.assertThat(hit.normalv()).isApproximatelyEqualTo(Tuple.vector(0, 0, 1));
+  }
+
   @Test
   // Scenario: The color when a ray misses
   public void colorWhenRayMisses() {
@@ -173,6 +210,82 @@ public class WorldTest {
     assertThat(w.isShadowed(p, l)).isFalse();
   }
 
+  @Test
+  // An opaque object between the point and the light blocks all light.
+  public void visibleLightBlockedByOpaque() {
+    World w = createDefaultWorld();
+    Tuple p = Tuple.point(10, -10, 10);
+    Light l = Iterables.get(w.getLights(), 0);
+    assertThat(w.visibleLightColor(p, l)).isEqualTo(Color.BLACK);
+  }
+
+  @Test
+  // A transparent object between the point and the light tints the light.
+  public void visibleLightThroughTransparent() {
+    World w = new World();
+    Light l = Light.create(Tuple.point(0, 10, 0), Color.WHITE);
+    w.addLight(l);
+    Shape glass = Sphere.create();
+    glass.setMaterial(
+        Material.builder().setColor(Color.create(1, 0.25, 1)).setTransparency(1.0).build());
+    w.addShape(glass);
+
+    Tuple p = Tuple.point(0, -10, 0);
+    assertThat(w.isShadowed(p, l)).isTrue();
+    // Light passes through both surfaces of the sphere.
+    assertThat(w.visibleLightColor(p, l)).isApproximatelyEqualTo(Color.create(1, 0.25, 1));
+
+    Shape wall = Plane.create();
+    wall.setTransform(Matrix.translation(0, -5, 0));
+    w.addShape(wall);
+    assertThat(w.visibleLightColor(p, l)).isEqualTo(Color.BLACK);
+  }
+
+  @Test
+  // A world knows whether any of its shapes, including those in groups, is transparent.
+  public void hasTransparency() {
+    World w = createDefaultWorld();
+    assertThat(w.hasTransparency()).isFalse();
+
+    Group g = Group.create();
+    Shape glass = Sphere.createGlass();
+    g.add(Sphere.create());
+    g.add(CSG.createUnion(Cube.create(), glass));
+    w.addShape(g);
+    assertThat(w.hasTransparency()).isTrue();
+
+    World frozen = w.freeze();
+    glass.setMaterial(Material.create());
+    assertThat(w.hasTransparency()).isFalse();
+    // The frozen copy keeps its own materials.
+    assertThat(frozen.hasTransparency()).isTrue();
+  }
+
+  @Test
+  // Changing a material after shading takes effect in the next shading.
+  public void shadeAfterMaterialChange() {
+    World w = createDefaultWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    Color opaque = w.colorAt(r);
+    Shape outer = w.getShapes().iterator().next();
+    outer.setMaterial(outer.material().toBuilder().setTransparency(1.0).build());
+    assertThat(w.colorAt(r)).isNotEqualTo(opaque);
+    assertThat(w.colorAt(r)).isEqualTo(w.freeze().colorAt(r));
+  }
+
+  @Test
+  // Objects that don't cast shadows let all light through.
+  public void visibleLightPastNonShadowCaster() {
+    World w = createDefaultWorld();
+    for (Shape s : w.getShapes()) {
+      s.setMaterial(s.material().toBuilder().setCastsShadow(false).build());
+    }
+    Tuple p = Tuple.point(10, -10, 10);
+    Light l = Iterables.get(w.getLights(), 0);
+    assertThat(w.isShadowed(p, l)).isFalse();
+    assertThat(w.visibleLightColor(p, l)).isEqualTo(Color.WHITE);
+  }
+
   @Test
   // Scenario: The reflected color for a nonreflective material
   public void reflectedColorForNonreflectiveMaterial() {
@@ -241,6 +354,84 @@ public class WorldTest {
     assertThat(w.reflectedColor(i, 0)).isEqualTo(Color.BLACK);
   }
 
+  // Returns the default world with a half-reflective floor.
+  private static World createReflectiveFloorWorld() {
+    World w = createDefaultWorld();
+    Shape shape = Plane.create();
+    shape.setMaterial(shape.material().toBuilder().setReflectivity(0.5).build());
+    shape.setTransform(Matrix.translation(0, -1, 0));
+    w.addShape(shape);
+    return w;
+  }
+
+  @Test
+  // The maximum number of bounces is a render option.
+  public void colorAtWithMaxBounces() {
+    World w = createReflectiveFloorWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, -3), Tuple.vector(0, -ISQRT2, ISQRT2));
+    assertThat(w.colorAt(r, RenderOptions.create())).isEqualTo(w.colorAt(r));
+    assertThat(w.colorAt(r, RenderOptions.builder().setMaxBounces(0).build()))
+        .isEqualTo(w.colorAt(r, 0));
+    assertThat(w.colorAt(r, RenderOptions.builder().setMaxBounces(1).build()))
+        .isApproximatelyEqualTo(Color.create(0.87676, 0.92434, 0.82917));
+  }
+
+  @Test
+  // Deep ray trees are traced without recursion.
+  public void colorAtManyBounces() {
+    World w = new World();
+    w.addLight(Light.create(Tuple.point(0, 0, 0), Color.WHITE));
+    Shape lower = Plane.create();
+    lower.setMaterial(lower.material().toBuilder().setReflectivity(0.9).build());
+    lower.setTransform(Matrix.translation(0, -1, 0));
+    w.addShape(lower);
+    Shape upper = Plane.create();
+    upper.setMaterial(upper.material().toBuilder().setReflectivity(0.9).build());
+    upper.setTransform(Matrix.translation(0, 1, 0));
+    w.addShape(upper);
+    Ray r = Ray.create(Tuple.point(0, 0, 0), Tuple.vector(0, 1, 0));
+    Color c = w.colorAt(r, RenderOptions.builder().setMaxBounces(100000).build());
+    // Each bounce adds 0.9 times as much light as the one before.
+    assertThat(c).isApproximatelyEqualTo(w.colorAt(r, 0).times(10));
+  }
+
+  @Test
+  // Reflected and refracted rays of less weight than the minimum contribution are not traced.
+  public void colorAtWithMinContribution() {
+    World w = createReflectiveFloorWorld();
+    Ray r = Ray.create(Tuple.point(0, 0, -3), Tuple.vector(0, -ISQRT2, ISQRT2));
+    assertThat(w.colorAt(r, RenderOptions.builder().setMinContribution(0.4).build()))
+        .isEqualTo(w.colorAt(r));
+    assertThat(w.colorAt(r, RenderOptions.builder().setMinContribution(0.6).build()))
+        .isEqualTo(w.colorAt(r, 0));
+  }
+
+  @Test
+  // Under Russian roulette rays of less weight than the minimum contribution are traced at
+  // random with the minimum contribution.
+  public void colorAtWithRussianRoulette() {
+    World w = createReflectiveFloorWorld();
+    RenderOptions options =
+        RenderOptions.builder().setMinContribution(1).setRussianRoulette(true).build();
+    int traced = 0;
+    for (int i = 0; i < 100; ++i) {
+      // Nearby rays, seeding the roulette differently.
+      Ray r = Ray.create(Tuple.point(i * 0.001, 0, -3), Tuple.vector(0, -1, 1));
+      Color unreflected = w.colorAt(r, 0);
+      Color reflected = w.colorAt(r, 1);
+      Color c = w.colorAt(r, options);
+      assertThat(w.colorAt(r, options)).isEqualTo(c);
+      if (c.equals(unreflected)) {
+        continue;
+      }
+      // The reflected light at twice its weight.
+      assertThat(c).isApproximatelyEqualTo(unreflected.plus(reflected.minus(unreflected).times(2)));
+      ++traced;
+    }
+    // About half the reflected rays are traced.
+    assertThat(traced).isIn(Range.closed(25, 75));
+  }
+
   @Test
   // Scenario: The refracted color with an opaque surface
   public void refractedColorOnOpaque() {
@@ -339,6 +530,42 @@ public class WorldTest {
     // assertThat(w.shadeHit(i, 5)).isApproximatelyEqualTo(Color.create(0.93391, 0.69643, 0.69243));
     assertThat(w.shadeHit(i, 5)).isApproximatelyEqualTo(Color.create(1.19001, 0.69643, 0.69243));
   }
+
+  @Test
+  // Scenario: A frozen world renders as the world it was frozen from
+  public void freeze() {
+    World w = createDefaultWorld();
+    World frozen = w.freeze();
+    assertThat(frozen.isFrozen()).isTrue();
+    assertThat(w.isFrozen()).isFalse();
+    assertThat(frozen.freeze()).isSameAs(frozen);
+    assertThat(frozen.getLights()).containsExactlyElementsIn(w.getLights());
+    assertThat(frozen.getShapes()).hasSize(2);
+
+    Ray r = Ray.create(Tuple.point(0, 0, -5), Tuple.vector(0, 0, 1));
+    Color c = w.colorAt(r);
+    assertThat(frozen.colorAt(r)).isEqualTo(c);
+
+    // Changing the original world or its shapes doesn't change the copy.
+    Iterables.get(w.getShapes(), 0).setTransform(Matrix.translation(0, 5, 0));
+    w.addShape(Plane.create());
+    w.clearLights();
+    assertThat(w.colorAt(r)).isNotEqualTo(c);
+    assertThat(frozen.colorAt(r)).isEqualTo(c);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  // Scenario: Shapes can't be added to a frozen world
+  public void addShapeToFrozen() {
+    createDefaultWorld().freeze().addShape(Sphere.create());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  // Scenario: The shapes of a frozen world can't be changed
+  public void setMaterialOfFrozenShape() {
+    World frozen = createDefaultWorld().freeze();
+    Iterables.get(frozen.getShapes(), 0).setMaterial(Material.create());
+  }
 }
 /*
 Scenario: shade_hit() is given an intersection in shadow
@@ -9,6 +9,7 @@ import raytracer.Light;
 import raytracer.Material;
 import raytracer.Matrix;
 import raytracer.Plane;
+import raytracer.RenderOptions;
 import raytracer.Shape;
 import raytracer.Sphere;
 import raytracer.Tuple;
@@ -17,7 +18,7 @@ import raytracer.World;
 public class CoverWorld {
 
   public static void main(String[] args) {
-    Canvas canvas = getCamera().render(getWorld());
+    Canvas canvas = getCamera().render(getWorld(), RenderOptions.create());
     AppUtil.saveCanvasToPng(canvas, "cover");
   }
 
@@ -29,7 +29,7 @@ public class ReflectScene {
     camera = createCamera();
   }
 
-  private static Camera createCamera() {
+  public static Camera createCamera() {
     return Camera.create(
         600,
         300,
@@ -39,7 +39,7 @@ public class ReflectScene {
         Tuple.vector(0, 1, 0));
   }
 
-  private static World createWorld() {
+  public static World createWorld() {
     World w = new World();
     w.addLight(Light.create(Tuple.point(-10, 10, -10), Color.WHITE));
     w.addLight(Light.create(Tuple.point(-10, -3, 10), Color.create(0.3, 0.3, 0.3)));
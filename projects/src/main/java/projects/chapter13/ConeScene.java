@@ -30,7 +30,7 @@ public class ConeScene {
     camera = createCamera();
   }
 
-  private static Camera createCamera() {
+  public static Camera createCamera() {
     return Camera.create(
         600,
         300,
@@ -40,7 +40,7 @@ public class ConeScene {
         Tuple.vector(0, 1, 0));
   }
 
-  private static World createWorld() {
+  public static World createWorld() {
     World w = new World();
     w.addLight(Light.create(Tuple.point(-10, 10, -10), Color.WHITE));
     w.addShape(createFloor());
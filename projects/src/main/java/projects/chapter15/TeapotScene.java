@@ -32,7 +32,7 @@ public class TeapotScene {
     camera = createCamera();
   }
 
-  private static Camera createCamera() {
+  public static Camera createCamera() {
     return Camera.create(
         600,
         300,
@@ -42,11 +42,26 @@ public class TeapotScene {
         Tuple.vector(0, 1, 0));
   }
 
-  private static World createWorld() {
+  public static World createWorld() {
+    return createWorld(
+        createTeapot(
+            "/teapot-low.obj",
+            Matrix.scaling(0.15).rotateX(-Math.PI / 2).rotateY(Math.PI / 6).translate(0, 0, 1)));
+  }
+
+  // Returns the same scene with the high-resolution teapot of 2016 triangles rather than 128.
+  public static World createDetailedWorld() {
+    // This model is y-up, and its base is at y = -9.33.
+    return createWorld(
+        createTeapot(
+            "/teapot.obj", Matrix.scaling(0.1).rotateY(Math.PI / 6).translate(0, 0.933, 1)));
+  }
+
+  private static World createWorld(Shape teapot) {
     World w = new World();
     w.addLight(Light.create(Tuple.point(-10, 10, -10), Color.WHITE));
     w.addShape(createFloor());
-    w.addShape(createTeapot());
+    w.addShape(teapot);
     return w;
   }
 
@@ -65,11 +80,10 @@ public class TeapotScene {
     return p;
   }
 
-  private static Shape createTeapot() {
+  private static Shape createTeapot(String resourceFilename, Matrix transform) {
     try {
-      Shape teapot = ObjFile.parseResource("/teapot-low.obj").asShape();
-      teapot.setTransform(
-          Matrix.scaling(0.15).rotateX(-Math.PI / 2).rotateY(Math.PI / 6).translate(0, 0, 1));
+      Shape teapot = ObjFile.parseResource(resourceFilename).asShape();
+      teapot.setTransform(transform);
       teapot.setMaterial(
           Material.builder()
               .setColor(Color.create(0.8, 0.2, 0.2))